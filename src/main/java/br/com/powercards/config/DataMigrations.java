@@ -0,0 +1,114 @@
+package br.com.powercards.config;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Data backfills that accompany schema changes.
+ * <p>
+ * The schema itself is maintained by Hibernate
+ * ({@code quarkus.hibernate-orm.database.generation=update}), which only adds
+ * new columns and indexes. Every step here must be idempotent, as it runs on
+ * each startup and only touches rows that were not migrated yet. Steps commit
+ * on their own, so a failing one does not roll back those before it.
+ */
+@ApplicationScoped
+public class DataMigrations {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataMigrations.class);
+
+    private static final int NOTE_BATCH = 500;
+
+    @Inject
+    EntityManager entityManager;
+
+    @Inject
+    br.com.powercards.services.WorkspacePartitionService partitionService;
+
+    void onStart(@Observes StartupEvent event) {
+        QuarkusTransaction.requiringNew().run(this::backfillCardWorkspace);
+        QuarkusTransaction.requiringNew().run(this::backfillMediaWorkspace);
+        QuarkusTransaction.requiringNew().run(this::backfillDraftWorkspace);
+        backfillNoteFields();
+        // Runs last: the partition key must be populated before rows are routed.
+        // Manages its own transactions, one per converted table.
+        partitionService.migrate();
+    }
+
+    /**
+     * cards.workspace_id is denormalized from the card's deck, or from its note
+     * when it has none, as Card.syncWorkspace() does.
+     */
+    void backfillCardWorkspace() {
+        int updated = entityManager.createNativeQuery(
+                "UPDATE cards SET workspace_id = COALESCE("
+                        + "(SELECT d.workspace_id FROM decks d WHERE d.id = cards.did), "
+                        + "(SELECT n.workspace_id FROM notes n WHERE n.id = cards.nid)) "
+                        + "WHERE workspace_id IS NULL AND (did IS NOT NULL OR nid IS NOT NULL)")
+                .executeUpdate();
+        if (updated > 0) {
+            LOGGER.info("Backfilled workspace_id on {} cards", updated);
+        }
+    }
+
+    /**
+     * The media's workspace_id is denormalized from its note. Written in JPQL:
+     * the table and id columns of AnkiMedia keep their mapped names. Media of
+     * notes that no longer exist is left without a workspace.
+     */
+    void backfillMediaWorkspace() {
+        int updated = entityManager.createQuery(
+                "update AnkiMedia m set m.workspaceId = (select n.workspace.id from Note n where n.id = m.id.noteId) "
+                        + "where m.workspaceId is null and exists (select n.id from Note n where n.id = m.id.noteId)")
+                .executeUpdate();
+        if (updated > 0) {
+            LOGGER.info("Backfilled workspace_id on {} media entries", updated);
+        }
+    }
+
+    /**
+     * note_drafts.workspace_id is denormalized from the draft's note.
+     */
+    void backfillDraftWorkspace() {
+        int updated = entityManager.createNativeQuery(
+                "UPDATE note_drafts SET workspace_id = (SELECT n.workspace_id FROM notes n WHERE n.id = note_drafts.note_id) "
+                        + "WHERE workspace_id IS NULL")
+                .executeUpdate();
+        if (updated > 0) {
+            LOGGER.info("Backfilled workspace_id on {} note drafts", updated);
+        }
+    }
+
+    /**
+     * notes.sfld, csum and dfld are derived from flds on write; notes written
+     * before that have no display field yet. Processed in pages, each committed
+     * on its own, as each note is loaded to run the derivation.
+     */
+    void backfillNoteFields() {
+        int updated = 0;
+        while (true) {
+            int backfilled = QuarkusTransaction.requiringNew().call(() -> {
+                java.util.List<br.com.powercards.model.Note> notes = entityManager.createQuery(
+                        "select n from Note n where n.displayField is null and n.flds is not null order by n.id",
+                        br.com.powercards.model.Note.class)
+                        .setMaxResults(NOTE_BATCH)
+                        .getResultList();
+                notes.forEach(br.com.powercards.model.Note::syncFields);
+                return notes.size();
+            });
+            if (backfilled == 0) {
+                break;
+            }
+            updated += backfilled;
+        }
+        if (updated > 0) {
+            LOGGER.info("Backfilled sort and display fields on {} notes", updated);
+        }
+    }
+}
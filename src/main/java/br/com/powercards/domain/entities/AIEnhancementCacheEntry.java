@@ -0,0 +1,29 @@
+package br.com.powercards.domain.entities;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A persisted AI enhancement result, see
+ * {@link br.com.powercards.services.EnhancementCache}. Not workspace scoped:
+ * the key is a hash of the content, so only identical content shares it.
+ */
+@Entity
+@Table(name = "ai_enhancement_cache", indexes = @Index(name = "idx_ai_enhancement_cache_created_at", columnList = "created_at"))
+public class AIEnhancementCacheEntry extends PanacheEntityBase {
+
+    // Hex SHA-256 of provider, model, prompt version and normalized fields
+    @Id
+    @Column(name = "cache_key", length = 64)
+    public String key;
+
+    // Enhanced fields as a JSON array
+    @Column(columnDefinition = "TEXT", nullable = false)
+    public String result;
+
+    // When the result was stored; an overwritten result starts a new lifetime
+    @Column(name = "created_at", nullable = false)
+    public LocalDateTime createdAt;
+}
@@ -1,10 +1,20 @@
 package br.com.powercards.domain.entities;
 
+import br.com.powercards.services.ObjectStorageGateway;
 import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.Column;
 import jakarta.persistence.EmbeddedId;
 import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_media_object_key", columnList = "object_key"),
+        @Index(name = "idx_media_display_key", columnList = "display_key"),
+        @Index(name = "idx_media_thumbnail_key", columnList = "thumbnail_key") })
 public class AnkiMedia extends PanacheEntityBase {
 
     @EmbeddedId
@@ -12,6 +22,31 @@ public class AnkiMedia extends PanacheEntityBase {
 
     public String minioUrl;
 
+    @Column(name = "workspace_id")
+    public Long workspaceId;
+
+    // Detected from the content at upload time
+    public String contentType;
+
+    // Hex SHA-256 of the content
+    public String checksum;
+
+    // Size-bounded variants of an image, set once MediaDerivativeService made them
+    public String displayUrl;
+
+    public String thumbnailUrl;
+
+    // Object names behind the URLs above. The URLs keep the base URL they were
+    // written with, so objects are matched to rows on these instead.
+    @Column(name = "object_key")
+    public String objectKey;
+
+    @Column(name = "display_key")
+    public String displayKey;
+
+    @Column(name = "thumbnail_key")
+    public String thumbnailKey;
+
     public AnkiMedia() {
     }
 
@@ -19,4 +54,12 @@ public class AnkiMedia extends PanacheEntityBase {
         this.id = new AnkiMediaId(noteId, originalName);
         this.minioUrl = minioUrl;
     }
+
+    @PrePersist
+    @PreUpdate
+    public void syncObjectKeys() {
+        this.objectKey = ObjectStorageGateway.objectKey(ObjectStorageGateway.MEDIA_BUCKET, minioUrl);
+        this.displayKey = ObjectStorageGateway.objectKey(ObjectStorageGateway.MEDIA_BUCKET, displayUrl);
+        this.thumbnailKey = ObjectStorageGateway.objectKey(ObjectStorageGateway.MEDIA_BUCKET, thumbnailUrl);
+    }
 }
@@ -10,11 +10,13 @@ import java.util.List;
  * @param css       CSS for the model cards.
  * @param fields    List of fields.
  * @param templates List of card templates.
+ * @param sortField Index of the field notes are sorted by.
  */
 public record AnkiModelResponse(
                 Long id,
                 String name,
                 String css,
                 List<AnkiFieldDto> fields,
-                List<AnkiTemplateDto> templates) {
+                List<AnkiTemplateDto> templates,
+                Integer sortField) {
 }
@@ -21,6 +21,10 @@ package br.com.powercards.dto;
  * @param originalDeckId        Original deck ID.
  * @param flags                 Flags.
  * @param customData            Custom data.
+ * @param noteField             The display field of the note.
+ * @param noteTags              Space-separated tags of the note.
+ * @param sortField             The value of the note's sort field.
+ * @param isDraft               Whether the note has a pending draft.
  */
 public record CardResponse(
         Long id,
@@ -43,5 +47,6 @@ public record CardResponse(
         String customData,
         String noteField,
         String noteTags,
-        boolean isDraft) {
+        String sortField,
+        Boolean isDraft) {
 }
@@ -0,0 +1,9 @@
+package br.com.powercards.dto;
+
+/**
+ * Confirms a direct-to-storage upload once the PUT has completed.
+ *
+ * @param objectName object name returned with the upload URL
+ */
+public record ConfirmUploadRequest(String objectName) {
+}
@@ -0,0 +1,18 @@
+package br.com.powercards.dto;
+
+import java.util.List;
+
+/**
+ * Notes of the same model whose first fields have the same text.
+ *
+ * @param modelId    The ID of the AnkiModel the notes share.
+ * @param checksum   Checksum of the shared first field.
+ * @param firstField Plain text of the shared first field.
+ * @param noteIds    IDs of the duplicate notes, oldest first.
+ */
+public record DuplicateGroupResponse(
+        Long modelId,
+        Long checksum,
+        String firstField,
+        List<Long> noteIds) {
+}
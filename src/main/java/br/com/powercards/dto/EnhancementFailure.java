@@ -0,0 +1,12 @@
+package br.com.powercards.dto;
+
+/**
+ * A note a batch enhancement job could not enhance.
+ *
+ * @param noteId The ID of the note.
+ * @param error  Why it failed.
+ */
+public record EnhancementFailure(
+        Long noteId,
+        String error) {
+}
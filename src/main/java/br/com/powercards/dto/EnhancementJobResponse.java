@@ -0,0 +1,28 @@
+package br.com.powercards.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Progress of a batch enhancement job.
+ *
+ * @param id         The job ID.
+ * @param status     RUNNING, COMPLETED, or COMPLETED_WITH_ERRORS when some
+ *                   notes failed.
+ * @param total      Number of notes in the job.
+ * @param succeeded  Notes whose enhancement was saved as a draft.
+ * @param failed     Notes that could not be enhanced.
+ * @param failures   The failed notes, with the reason; capped in size.
+ * @param createdAt  When the job was submitted.
+ * @param finishedAt When the last note was processed; null while running.
+ */
+public record EnhancementJobResponse(
+        String id,
+        String status,
+        int total,
+        int succeeded,
+        int failed,
+        List<EnhancementFailure> failures,
+        Instant createdAt,
+        Instant finishedAt) {
+}
@@ -7,6 +7,8 @@ public class ImportResponse {
     public int importedNotes;
     public int updatedNotes;
     public int skippedNotes;
+    // Imported notes sharing their model and first field with another note
+    public int duplicateNotes;
     public String status;
 
     public ImportResponse() {
@@ -14,6 +14,9 @@ package br.com.powercards.dto;
  * @param checksum              Checksum of the first field.
  * @param flags                 Note flags.
  * @param customData            Custom data.
+ * @param isDraft               Whether the content comes from a draft.
+ * @param duplicateIds          IDs of notes of the same model with the same
+ *                              first field; only set when the note is created.
  */
 public record NoteResponse(
         Long id,
@@ -27,5 +30,6 @@ public record NoteResponse(
         Long checksum,
         Integer flags,
         String customData,
-        Boolean isDraft) {
+        Boolean isDraft,
+        java.util.List<Long> duplicateIds) {
 }
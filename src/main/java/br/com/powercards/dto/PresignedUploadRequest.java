@@ -0,0 +1,9 @@
+package br.com.powercards.dto;
+
+/**
+ * Request for a direct-to-storage upload URL.
+ *
+ * @param filename name of the file to upload
+ */
+public record PresignedUploadRequest(String filename) {
+}
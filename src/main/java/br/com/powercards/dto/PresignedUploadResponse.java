@@ -0,0 +1,17 @@
+package br.com.powercards.dto;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Short-lived form the client POSTs the file to, as multipart/form-data, before
+ * confirming the upload. Storage refuses files over the upload size limit.
+ *
+ * @param uploadUrl  where the form is posted
+ * @param fields     fields to send, in order, before the {@code file} field
+ * @param objectName name to pass back to the confirm endpoint
+ * @param expiresAt  when the form stops being accepted
+ */
+public record PresignedUploadResponse(String uploadUrl, Map<String, String> fields, String objectName,
+        Instant expiresAt) {
+}
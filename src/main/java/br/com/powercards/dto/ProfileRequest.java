@@ -1,5 +1,17 @@
 package br.com.powercards.dto;
 
+/**
+ * @param aiAlternateKeys API keys of providers other than {@code aiProvider},
+ *                        by provider; a blank key removes it
+ * @param aiRouting       "single", or "hedged" to also call the alternate
+ *                        providers when the selected one is slow
+ */
 public record ProfileRequest(String displayName, String description, String colorPalette,
-        Boolean darkMode, String aiProvider, String aiApiKey, String preferences) {
+        Boolean darkMode, String aiProvider, String aiApiKey, String preferences,
+        java.util.Map<String, String> aiAlternateKeys, String aiRouting) {
+
+    public ProfileRequest(String displayName, String description, String colorPalette,
+            Boolean darkMode, String aiProvider, String aiApiKey, String preferences) {
+        this(displayName, description, colorPalette, darkMode, aiProvider, aiApiKey, preferences, null, null);
+    }
 }
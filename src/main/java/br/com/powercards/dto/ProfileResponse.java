@@ -6,10 +6,14 @@ public record ProfileResponse(
                 String displayName,
                 String avatarUrl,
                 String bannerUrl,
+                java.util.Map<Integer, String> avatarVariants,
+                java.util.Map<Integer, String> bannerVariants,
                 String description,
                 String colorPalette,
                 Boolean darkMode,
                 String aiProvider,
                 boolean hasAiApiKey,
-                String preferences) {
+                String preferences,
+                String aiRouting,
+                java.util.List<String> aiAlternateProviders) {
 }
@@ -0,0 +1,6 @@
+package br.com.powercards.dto;
+
+import java.util.List;
+
+public record RenderCardsRequest(List<Long> ids) {
+}
@@ -0,0 +1,14 @@
+package br.com.powercards.dto;
+
+/**
+ * A card rendered from its model's templates, with media references replaced
+ * by URLs.
+ *
+ * @param id       card id
+ * @param noteId   id of the card's note
+ * @param question question side HTML
+ * @param answer   answer side HTML
+ * @param css      styling of the card's model
+ */
+public record RenderedCardResponse(Long id, Long noteId, String question, String answer, String css) {
+}
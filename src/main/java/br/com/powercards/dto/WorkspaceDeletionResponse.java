@@ -0,0 +1,22 @@
+package br.com.powercards.dto;
+
+import java.time.Instant;
+
+/**
+ * Progress of a workspace deletion.
+ *
+ * @param id            workspace id
+ * @param status        {@code IN_PROGRESS} or {@code COMPLETED}
+ * @param purgedRows    database rows removed so far
+ * @param purgedObjects media objects removed from storage so far
+ * @param requestedAt   when the deletion was requested
+ * @param completedAt   when the purge finished, {@code null} while in progress
+ */
+public record WorkspaceDeletionResponse(
+        String id,
+        String status,
+        long purgedRows,
+        long purgedObjects,
+        Instant requestedAt,
+        Instant completedAt) {
+}
@@ -1,13 +1,19 @@
 package br.com.powercards.model;
 
+import br.com.powercards.services.SecondLevelCacheExpiry;
 import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Filter;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
 @Table(name = "anki_models")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(SecondLevelCacheExpiry.Listener.class)
 @Filter(name = "workspaceFilter", condition = "workspace_id = :workspaceId")
 public class AnkiModel extends PanacheEntityBase {
 
@@ -25,10 +31,15 @@ public class AnkiModel extends PanacheEntityBase {
     @Column(columnDefinition = "TEXT")
     public String css;
 
+    // Index of the field notes are sorted by; the first field when null
+    public Integer sortf;
+
     @OneToMany(mappedBy = "model", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.EAGER)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     public List<AnkiField> fields = new ArrayList<>();
 
     @OneToMany(mappedBy = "model", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.EAGER)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     public List<AnkiTemplate> templates = new ArrayList<>();
 
     public AnkiModel() {
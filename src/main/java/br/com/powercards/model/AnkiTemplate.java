@@ -1,10 +1,16 @@
 package br.com.powercards.model;
 
+import br.com.powercards.services.SecondLevelCacheExpiry;
 import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
 @Table(name = "anki_templates")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(SecondLevelCacheExpiry.Listener.class)
 public class AnkiTemplate extends PanacheEntityBase {
 
     @Id
@@ -5,8 +5,8 @@ import jakarta.persistence.*;
 import org.hibernate.annotations.Filter;
 
 @Entity
-@Table(name = "cards")
-@Filter(name = "workspaceFilter", condition = "did IN (SELECT d.id FROM decks d WHERE d.workspace_id = :workspaceId)")
+@Table(name = "cards", indexes = @Index(name = "idx_cards_workspace_deck_queue_due", columnList = "workspace_id, did, queue, due"))
+@Filter(name = "workspaceFilter", condition = "workspace_id = :workspaceId")
 public class Card extends PanacheEntityBase {
 
     @Id
@@ -24,6 +24,15 @@ public class Card extends PanacheEntityBase {
     @com.fasterxml.jackson.annotation.JsonIgnore
     public Deck deck;
 
+    // Denormalized from deck.workspace (or note.workspace for cards without a
+    // deck) so the workspace filter is a plain equality instead of a subquery on
+    // decks. Kept in sync by syncWorkspace() and by the bulk deck moves, which
+    // set it explicitly.
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "workspace_id")
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    public Workspace workspace;
+
     public Integer ord;
 
     public Long mod;
@@ -58,4 +67,14 @@ public class Card extends PanacheEntityBase {
 
     public Card() {
     }
+
+    @PrePersist
+    @PreUpdate
+    public void syncWorkspace() {
+        if (deck != null) {
+            this.workspace = deck.workspace;
+        } else if (note != null) {
+            this.workspace = note.workspace;
+        }
+    }
 }
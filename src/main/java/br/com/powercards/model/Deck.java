@@ -1,11 +1,17 @@
 package br.com.powercards.model;
 
+import br.com.powercards.services.SecondLevelCacheExpiry;
 import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Filter;
 
 @Entity
 @Table(name = "decks")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(SecondLevelCacheExpiry.Listener.class)
 @Filter(name = "workspaceFilter", condition = "workspace_id = :workspaceId")
 public class Deck extends PanacheEntityBase {
 
@@ -5,7 +5,9 @@ import jakarta.persistence.*;
 import org.hibernate.annotations.Filter;
 
 @Entity
-@Table(name = "notes")
+@Table(name = "notes", indexes = {
+        @Index(name = "idx_notes_workspace_sfld", columnList = "workspace_id, sfld"),
+        @Index(name = "idx_notes_workspace_model_csum", columnList = "workspace_id, mid, csum") })
 @Filter(name = "workspaceFilter", condition = "workspace_id = :workspaceId")
 public class Note extends PanacheEntityBase {
 
@@ -33,10 +35,16 @@ public class Note extends PanacheEntityBase {
     @Column(columnDefinition = "TEXT")
     public String flds;
 
+    // Plain text of the model's sort field, for sorting and searching
     public String sfld;
 
+    // Checksum of the first field, see NoteFields.checksum
     public Long csum;
 
+    // Field shown for the note in lists, with its markup
+    @Column(name = "dfld", columnDefinition = "TEXT")
+    public String displayField;
+
     public Integer flags;
 
     @Column(columnDefinition = "TEXT")
@@ -47,4 +55,17 @@ public class Note extends PanacheEntityBase {
 
     public Note() {
     }
+
+    /**
+     * Derives sfld, csum and the display field from flds. Runs on every write;
+     * call it directly when they are read before the next flush.
+     */
+    @PrePersist
+    @PreUpdate
+    public void syncFields() {
+        String[] fields = NoteFields.split(flds);
+        sfld = NoteFields.sortField(fields, model != null && model.sortf != null ? model.sortf : 0);
+        csum = NoteFields.checksum(fields);
+        displayField = NoteFields.displayField(fields);
+    }
 }
@@ -17,6 +17,13 @@ public class NoteDraft extends PanacheEntityBase {
     @JoinColumn(name = "note_id", unique = true, nullable = false)
     public Note note;
 
+    // Denormalized from note.workspace, so the foreign key to a notes table
+    // partitioned by workspace can be kept (see WorkspacePartitionService)
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "workspace_id")
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    public Workspace workspace;
+
     @Column(columnDefinition = "TEXT")
     public String flds;
 
@@ -32,5 +39,8 @@ public class NoteDraft extends PanacheEntityBase {
     @PrePersist
     public void updateTimestamp() {
         this.updatedAt = Instant.now();
+        if (note != null) {
+            this.workspace = note.workspace;
+        }
     }
 }
@@ -0,0 +1,136 @@
+package br.com.powercards.model;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Values derived from a note's fields, following Anki's definitions so that
+ * they match the ones of imported collections.
+ */
+public final class NoteFields {
+
+    public static final String SEPARATOR = "\u001f";
+
+    // Longest sort field kept, the size of the notes.sfld column
+    static final int MAX_SORT_FIELD = 255;
+
+    private static final Pattern COMMENTS = Pattern.compile("<!--.*?-->", Pattern.DOTALL);
+    private static final Pattern STYLE_SCRIPT = Pattern.compile("<(style|script)\\b.*?</\\1>",
+            Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+    private static final Pattern IMAGE = Pattern.compile("<img[^>]*?src=[\"']?([^\"'>\\s]+)[\"']?[^>]*>",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern TAG = Pattern.compile("<[^>]*>");
+    private static final Pattern ENTITY = Pattern.compile("&(#x[0-9a-fA-F]+|#[0-9]+|[a-zA-Z]+);");
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+
+    private NoteFields() {
+    }
+
+    public static String[] split(String flds) {
+        return flds != null ? flds.split(SEPARATOR, -1) : new String[0];
+    }
+
+    /**
+     * The sort field: the plain text of field {@code sortIndex}, or of the first
+     * field when the model has no such field.
+     */
+    static String sortField(String[] fields, int sortIndex) {
+        if (fields.length == 0) {
+            return "";
+        }
+        String text = stripHtmlMedia(fields[sortIndex >= 0 && sortIndex < fields.length ? sortIndex : 0]);
+        return text.length() > MAX_SORT_FIELD ? text.substring(0, MAX_SORT_FIELD) : text;
+    }
+
+    /**
+     * The field shown for the note in lists: the first one that is not a bare
+     * number (imported collections often start with an id), markup included so
+     * its media can still be shown.
+     */
+    static String displayField(String[] fields) {
+        for (String field : fields) {
+            if (!DIGITS.matcher(field.trim()).matches()) {
+                return field.isEmpty() ? fields[0] : field;
+            }
+        }
+        return fields.length > 0 ? fields[0] : "";
+    }
+
+    /**
+     * Anki's duplicate checksum: the first 8 hex digits of the SHA-1 of the
+     * first field's plain text.
+     */
+    static long checksum(String[] fields) {
+        String first = fields.length > 0 ? stripHtmlMedia(fields[0]) : "";
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(first.getBytes(StandardCharsets.UTF_8));
+            return ((digest[0] & 0xFFL) << 24) | ((digest[1] & 0xFFL) << 16) | ((digest[2] & 0xFFL) << 8)
+                    | (digest[3] & 0xFFL);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Plain text of the first field: what the checksum is computed from, and
+     * what two notes must share to be duplicates.
+     */
+    public static String firstFieldText(String flds) {
+        String[] fields = split(flds);
+        return fields.length > 0 ? stripHtmlMedia(fields[0]) : "";
+    }
+
+    /**
+     * Text of a field without markup; images are replaced by their file name.
+     */
+    public static String stripHtmlMedia(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        String text = IMAGE.matcher(value).replaceAll(" $1 ");
+        text = COMMENTS.matcher(text).replaceAll("");
+        text = STYLE_SCRIPT.matcher(text).replaceAll("");
+        text = TAG.matcher(text).replaceAll("");
+        return unescape(text).trim();
+    }
+
+    private static String unescape(String text) {
+        if (text.indexOf('&') < 0) {
+            return text;
+        }
+        Matcher matcher = ENTITY.matcher(text);
+        StringBuilder out = new StringBuilder(text.length());
+        while (matcher.find()) {
+            String entity = matcher.group(1);
+            String replacement = switch (entity) {
+                case "nbsp" -> " ";
+                case "amp" -> "&";
+                case "lt" -> "<";
+                case "gt" -> ">";
+                case "quot" -> "\"";
+                case "apos" -> "'";
+                default -> numeric(entity, matcher.group());
+            };
+            matcher.appendReplacement(out, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(out);
+        return out.toString();
+    }
+
+    // Unknown and invalid entities are kept as they are
+    private static String numeric(String entity, String original) {
+        if (!entity.startsWith("#")) {
+            return original;
+        }
+        try {
+            return Character.toString(entity.startsWith("#x")
+                    ? Integer.parseInt(entity.substring(2), 16)
+                    : Integer.parseInt(entity.substring(1)));
+        } catch (IllegalArgumentException e) {
+            return original;
+        }
+    }
+}
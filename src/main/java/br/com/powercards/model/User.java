@@ -1,14 +1,27 @@
 package br.com.powercards.model;
 
+import br.com.powercards.services.ObjectStorageGateway;
+import br.com.powercards.services.SecondLevelCacheExpiry;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.quarkus.hibernate.orm.panache.PanacheEntity;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import java.util.List;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        @Index(name = "idx_users_avatar_key", columnList = "avatar_key"),
+        @Index(name = "idx_users_banner_key", columnList = "banner_key") })
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NaturalIdCache
+@EntityListeners(SecondLevelCacheExpiry.Listener.class)
 public class User extends PanacheEntity {
 
+    @NaturalId
     @Column(name = "keycloak_id", unique = true, nullable = false)
     public String keycloakId;
 
@@ -21,6 +34,21 @@ public class User extends PanacheEntity {
     @Column(name = "banner_url")
     public String bannerUrl;
 
+    // Comma separated sizes of the avatar variants, null for uploads stored as they are
+    @Column(name = "avatar_variants")
+    public String avatarVariants;
+
+    @Column(name = "banner_variants")
+    public String bannerVariants;
+
+    // Object names behind the image URLs, which keep the base URL they were
+    // written with; the media garbage collector matches objects on these
+    @Column(name = "avatar_key")
+    public String avatarKey;
+
+    @Column(name = "banner_key")
+    public String bannerKey;
+
     @Column(name = "description", columnDefinition = "TEXT")
     public String description;
 
@@ -33,6 +61,18 @@ public class User extends PanacheEntity {
     @Column(name = "ai_provider")
     public String aiProvider; // "openai", "gemini", "deepseek", or null
 
+    // Whether Vault holds the user's AI API key; null until first checked
+    @Column(name = "has_ai_api_key")
+    public Boolean hasAiApiKey;
+
+    // Providers Vault holds an alternate AI key for, comma separated and
+    // sorted; null until first checked
+    @Column(name = "ai_alternate_providers")
+    public String aiAlternateProviders;
+
+    @Column(name = "ai_routing")
+    public String aiRouting; // "single", "hedged", or null for "single"
+
     @Column(name = "preferences", columnDefinition = "TEXT")
     public String preferences;
 
@@ -52,8 +92,18 @@ public class User extends PanacheEntity {
         this.displayName = displayName;
     }
 
+    @PrePersist
+    @PreUpdate
+    public void syncObjectKeys() {
+        this.avatarKey = ObjectStorageGateway.objectKey(ObjectStorageGateway.AVATAR_BUCKET, avatarUrl);
+        this.bannerKey = ObjectStorageGateway.objectKey(ObjectStorageGateway.BANNER_BUCKET, bannerUrl);
+    }
+
+    // Resolved through the natural id cache, without a query once the user is cached
     public static User findByKeycloakId(String keycloakId) {
-        return find("keycloakId", keycloakId).firstResult();
+        return getEntityManager().unwrap(org.hibernate.Session.class)
+                .bySimpleNaturalId(User.class)
+                .load(keycloakId);
     }
 
     public static User findOrCreate(String keycloakId) {
@@ -1,13 +1,19 @@
 package br.com.powercards.model;
 
+import br.com.powercards.services.SecondLevelCacheExpiry;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.quarkus.hibernate.orm.panache.PanacheEntity;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.FilterDef;
 import org.hibernate.annotations.ParamDef;
 
 @Entity
 @Table(name = "workspaces")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(SecondLevelCacheExpiry.Listener.class)
 @FilterDef(name = "workspaceFilter", parameters = @ParamDef(name = "workspaceId", type = Long.class))
 public class Workspace extends PanacheEntity {
 
@@ -18,6 +24,21 @@ public class Workspace extends PanacheEntity {
     @JsonIgnore
     public User user;
 
+    // Set when deletion is requested; from then on the workspace is hidden and
+    // rejected by WorkspaceFilter while its data is purged in the background
+    @JsonIgnore
+    public java.time.Instant deletedAt;
+
+    // Set once the purge removed every row and media object
+    @JsonIgnore
+    public java.time.Instant purgedAt;
+
+    @JsonIgnore
+    public Long purgedRows;
+
+    @JsonIgnore
+    public Long purgedObjects;
+
     public Workspace() {
     }
 
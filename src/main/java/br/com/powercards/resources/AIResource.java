@@ -25,6 +25,13 @@ public class AIResource {
     @Inject
     SecurityIdentity identity;
 
+    @org.eclipse.microprofile.config.inject.ConfigProperty(name = "powercards.ai.batch.max-notes", defaultValue = "1000")
+    int maxEnhanceNotes;
+
+    // Providers fail fast for this long once their circuit breaker opens
+    @org.eclipse.microprofile.config.inject.ConfigProperty(name = "powercards.ai.providers.breaker.open-duration", defaultValue = "PT30S")
+    java.time.Duration providerRetryAfter;
+
     @POST
     @Path("/chat")
     @Consumes(MediaType.TEXT_PLAIN)
@@ -35,6 +42,8 @@ public class AIResource {
 
     @POST
     @Path("/enhance-model")
+    // Provider calls block for as long as the provider takes; keep them off the worker pool
+    @io.smallrye.common.annotation.RunOnVirtualThread
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     public Response enhanceModel(java.util.List<String> contents) {
@@ -52,6 +61,8 @@ public class AIResource {
                     .entity(java.util.Map.of("error", "AI_RESPONSE_MISMATCH",
                             "message", "AI returned " + result.size() + " fields, expected " + contents.size()))
                     .build();
+        } catch (br.com.powercards.services.AIProviderUnavailableException e) {
+            return providerUnavailable(e);
         } catch (RuntimeException e) {
             if (e.getMessage() != null && (e.getMessage().contains("not configured"))) {
                 return Response.status(Response.Status.BAD_REQUEST)
@@ -67,8 +78,64 @@ public class AIResource {
         }
     }
 
+    @POST
+    @Path("/enhance-notes")
+    @io.smallrye.common.annotation.RunOnVirtualThread
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response enhanceNotes(java.util.List<java.util.List<String>> notes) {
+        String keycloakId = identity.getPrincipal().getName();
+        if (notes == null || notes.isEmpty() || notes.size() > maxEnhanceNotes) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(java.util.Map.of("error", "INVALID_REQUEST",
+                            "message", "Between 1 and " + maxEnhanceNotes + " notes can be enhanced at once"))
+                    .build();
+        }
+        io.quarkus.logging.Log.info("Enhancing " + notes.size() + " notes for user: " + keycloakId);
+
+        try {
+            // Notes that could not be enhanced are null, the others are kept
+            return Response.ok(userAIProxyService.enhanceNotes(keycloakId, notes)).build();
+        } catch (br.com.powercards.services.AIProviderUnavailableException e) {
+            return providerUnavailable(e);
+        } catch (RuntimeException e) {
+            if (e.getMessage() != null && (e.getMessage().contains("not configured"))) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity(java.util.Map.of("error", "AI_KEY_NOT_CONFIGURED",
+                                "message", "Please configure your AI API key in Profile Settings."))
+                        .build();
+            }
+            io.quarkus.logging.Log.error("AI enhancement failed: " + e.getMessage(), e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity(java.util.Map.of("error", "AI_ENHANCEMENT_FAILED",
+                            "message", e.getMessage()))
+                    .build();
+        }
+    }
+
+    private Response providerUnavailable(br.com.powercards.services.AIProviderUnavailableException e) {
+        if (e instanceof br.com.powercards.services.AIRateLimitedException rateLimited) {
+            // The user's own key is over its limit, other users are not affected
+            io.quarkus.logging.Log.info("AI key rate limited: " + e.getMessage());
+            java.time.Duration retryAfter = rateLimited.retryAfter() != null ? rateLimited.retryAfter()
+                    : providerRetryAfter;
+            return Response.status(Response.Status.TOO_MANY_REQUESTS)
+                    .header("Retry-After", retryAfter.toSeconds())
+                    .entity(java.util.Map.of("error", "AI_RATE_LIMITED",
+                            "message", e.getMessage()))
+                    .build();
+        }
+        io.quarkus.logging.Log.warn("AI provider unavailable: " + e.getMessage());
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header("Retry-After", providerRetryAfter.toSeconds())
+                .entity(java.util.Map.of("error", "AI_PROVIDER_UNAVAILABLE",
+                        "message", e.getMessage()))
+                .build();
+    }
+
     @POST
     @Path("/test")
+    @io.smallrye.common.annotation.RunOnVirtualThread
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     public Response testConnection(java.util.Map<String, String> settings) {
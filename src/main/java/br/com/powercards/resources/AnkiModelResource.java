@@ -21,6 +21,9 @@ public class AnkiModelResource {
     @jakarta.inject.Inject
     br.com.powercards.security.WorkspaceContext workspaceContext;
 
+    @jakarta.inject.Inject
+    br.com.powercards.services.NoteResyncService noteResyncService;
+
     @GET
     @org.eclipse.microprofile.openapi.annotations.Operation(summary = "List all Anki models")
     public List<AnkiModelResponse> list() {
@@ -55,6 +58,7 @@ public class AnkiModelResource {
         model.workspace = currentWorkspace;
         model.name = modelRequest.name();
         model.css = modelRequest.css();
+        model.sortf = modelRequest.sortField();
         // Mapping fields and templates if provided
         if (modelRequest.fields() != null) {
             model.fields = modelRequest.fields().stream()
@@ -97,6 +101,11 @@ public class AnkiModelResource {
                     .map(t -> new AnkiTemplate(t.name(), t.questionFormat(), t.answerFormat(), t.ordinal(), entity))
                     .toList());
         }
+        if (!java.util.Objects.equals(entity.sortf, modelRequest.sortField())) {
+            entity.sortf = modelRequest.sortField();
+            // The sort field of every note of the model follows, in the background
+            noteResyncService.requestResync(entity);
+        }
         return toResponse(entity);
     }
 
@@ -120,6 +129,7 @@ public class AnkiModelResource {
                 model.name,
                 model.css,
                 model.fields.stream().map(f -> new AnkiFieldDto(f.name, f.ord)).toList(),
-                model.templates.stream().map(t -> new AnkiTemplateDto(t.name, t.qfmt, t.afmt, t.ord)).toList());
+                model.templates.stream().map(t -> new AnkiTemplateDto(t.name, t.qfmt, t.afmt, t.ord)).toList(),
+                model.sortf != null ? model.sortf : 0);
     }
 }
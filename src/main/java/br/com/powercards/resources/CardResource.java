@@ -25,6 +25,76 @@ public class CardResource {
     @jakarta.inject.Inject
     br.com.powercards.services.AnkiService ankiService;
 
+    @jakarta.inject.Inject
+    jakarta.persistence.EntityManager entityManager;
+
+    @jakarta.inject.Inject
+    br.com.powercards.services.CardRenderer cardRenderer;
+
+    @org.eclipse.microprofile.config.inject.ConfigProperty(name = "powercards.templates.max-batch", defaultValue = "500")
+    int maxRenderBatch;
+
+    // Properties that can be requested through "fields=", mapped to the column
+    // backing them. Only these columns are selected, so a sparse listing never
+    // hydrates Card/Note entities nor their AnkiModel.
+    private static final java.util.Map<String, String> PROJECTABLE_COLUMNS = java.util.Map.ofEntries(
+            java.util.Map.entry("id", "c.id"),
+            java.util.Map.entry("noteId", "c.note.id"),
+            java.util.Map.entry("deckId", "c.deck.id"),
+            java.util.Map.entry("ordinal", "c.ord"),
+            java.util.Map.entry("modificationTimestamp", "c.mod"),
+            java.util.Map.entry("updateSequenceNumber", "c.usn"),
+            java.util.Map.entry("type", "c.type"),
+            java.util.Map.entry("queue", "c.queue"),
+            java.util.Map.entry("due", "c.due"),
+            java.util.Map.entry("interval", "c.ivl"),
+            java.util.Map.entry("easeFactor", "c.factor"),
+            java.util.Map.entry("repetitions", "c.reps"),
+            java.util.Map.entry("lapses", "c.lapses"),
+            java.util.Map.entry("remainingSteps", "c.left"),
+            java.util.Map.entry("originalDue", "c.odue"),
+            java.util.Map.entry("originalDeckId", "c.odid"),
+            java.util.Map.entry("flags", "c.flags"),
+            java.util.Map.entry("customData", "c.data"),
+            java.util.Map.entry("noteField", "n.displayField"),
+            java.util.Map.entry("noteTags", "n.tags"),
+            java.util.Map.entry("sortField", "n.sfld"),
+            java.util.Map.entry("isDraft", "c.note.id"));
+
+    // Properties that can be given as "sort=": the projectable ones, and the entity
+    // field names accepted before those existed
+    private static final java.util.Map<String, String> SORTABLE_COLUMNS = java.util.Map.ofEntries(
+            java.util.Map.entry("id", "c.id"),
+            java.util.Map.entry("noteId", "c.note.id"),
+            java.util.Map.entry("deckId", "c.deck.id"),
+            java.util.Map.entry("ordinal", "c.ord"),
+            java.util.Map.entry("modificationTimestamp", "c.mod"),
+            java.util.Map.entry("updateSequenceNumber", "c.usn"),
+            java.util.Map.entry("type", "c.type"),
+            java.util.Map.entry("queue", "c.queue"),
+            java.util.Map.entry("due", "c.due"),
+            java.util.Map.entry("interval", "c.ivl"),
+            java.util.Map.entry("easeFactor", "c.factor"),
+            java.util.Map.entry("repetitions", "c.reps"),
+            java.util.Map.entry("lapses", "c.lapses"),
+            java.util.Map.entry("remainingSteps", "c.left"),
+            java.util.Map.entry("originalDue", "c.odue"),
+            java.util.Map.entry("originalDeckId", "c.odid"),
+            java.util.Map.entry("flags", "c.flags"),
+            java.util.Map.entry("noteField", "n.displayField"),
+            java.util.Map.entry("noteTags", "n.tags"),
+            java.util.Map.entry("sortField", "n.sfld"),
+            java.util.Map.entry("tags", "n.tags"),
+            java.util.Map.entry("ord", "c.ord"),
+            java.util.Map.entry("mod", "c.mod"),
+            java.util.Map.entry("usn", "c.usn"),
+            java.util.Map.entry("ivl", "c.ivl"),
+            java.util.Map.entry("factor", "c.factor"),
+            java.util.Map.entry("reps", "c.reps"),
+            java.util.Map.entry("left", "c.left"),
+            java.util.Map.entry("odue", "c.odue"),
+            java.util.Map.entry("odid", "c.odid"));
+
     @GET
     @org.eclipse.microprofile.openapi.annotations.Operation(summary = "List all cards")
     public PaginatedResponse<CardResponse> list(
@@ -33,6 +103,7 @@ public class CardResource {
             @QueryParam("deckId") Long deckId,
             @QueryParam("search") String search,
             @QueryParam("sort") String sort,
+            @org.eclipse.microprofile.openapi.annotations.parameters.Parameter(description = "Comma separated list of properties to return, e.g. id,sortField,deckId,due") @QueryParam("fields") String fields,
             @Context UriInfo uriInfo) {
 
         if (page < 1)
@@ -40,73 +111,55 @@ public class CardResource {
         if (perPage < 1)
             perPage = 20;
 
-        io.quarkus.panache.common.Sort sortObj = io.quarkus.panache.common.Sort.by("c.id");
-        if (sort != null && !sort.isBlank()) {
-            boolean descending = sort.startsWith("-");
-            String sortField = descending ? sort.substring(1) : sort;
+        SparseFieldset fieldset = SparseFieldset.parse(fields, PROJECTABLE_COLUMNS);
 
-            // Qualify fields with 'c.' to avoid ambiguity with joined Note
-            // Assuming all sortable fields are on Card unless specific override
-            String qualifiedField;
+        SortParameter order = SortParameter.parse(sort, SORTABLE_COLUMNS, "c.id");
 
-            if (sortField.equals("tags")) {
-                qualifiedField = "c.note.tags";
-            } else {
-                qualifiedField = "c." + sortField;
-            }
-
-            if (descending) {
-                sortObj = io.quarkus.panache.common.Sort.descending(qualifiedField);
-            } else {
-                sortObj = io.quarkus.panache.common.Sort.ascending(qualifiedField);
-            }
-        }
-
-        StringBuilder queryBuilder = new StringBuilder("select c from Card c left join fetch c.note n where 1=1");
+        StringBuilder whereBuilder = new StringBuilder(" where 1=1");
         java.util.Map<String, Object> params = new java.util.HashMap<>();
 
         if (deckId != null) {
-            queryBuilder.append(" and c.deck.id = :deckId");
+            whereBuilder.append(" and c.deck.id = :deckId");
             params.put("deckId", deckId);
         }
 
         if (search != null && !search.isBlank()) {
             if (search.toLowerCase().startsWith("tag=")) {
                 String tag = search.substring(4);
-                queryBuilder.append(" and lower(n.tags) like :tag");
+                whereBuilder.append(" and lower(n.tags) like :tag");
                 params.put("tag", "%" + tag.toLowerCase() + "%");
             } else {
-                queryBuilder.append(" and lower(n.flds) like :search");
+                whereBuilder.append(" and lower(n.flds) like :search");
                 params.put("search", "%" + search.toLowerCase() + "%");
             }
         }
 
-        io.quarkus.hibernate.orm.panache.PanacheQuery<Card> query = Card.find(queryBuilder.toString(), sortObj, params);
+        long total;
+        List<CardResponse> data;
+        if (fieldset != null) {
+            String orderBy = order.orderBy();
+            total = countProjection(whereBuilder.toString(), params);
+            data = listProjection(fieldset, whereBuilder + orderBy, params, page, perPage);
+        } else {
+            io.quarkus.hibernate.orm.panache.PanacheQuery<Card> query = Card.find(
+                    "select c from Card c left join fetch c.note n" + whereBuilder, order.toSort(), params);
 
-        long total = query.count();
-        List<Card> cards = query.page(page - 1, perPage).list();
+            total = query.count();
+            List<Card> cards = query.page(page - 1, perPage).list();
 
-        // Optimized: Batch fetch draft existence for linked notes
-        java.util.Set<Long> notesWithDrafts = new java.util.HashSet<>();
-        if (!cards.isEmpty()) {
-            java.util.List<Long> noteIds = cards.stream()
+            // Optimized: Batch fetch draft existence for linked notes
+            java.util.Set<Long> notesWithDrafts = findNotesWithDrafts(cards.stream()
                     .filter(c -> c.note != null)
                     .map(c -> c.note.id)
                     .distinct()
-                    .toList();
+                    .toList());
+            ankiService.preloadMedia(cards.stream().filter(c -> c.note != null).map(c -> c.note.id).toList());
 
-            if (!noteIds.isEmpty()) {
-                // We just need to know if a draft exists for these notes
-                java.util.List<br.com.powercards.model.NoteDraft> drafts = br.com.powercards.model.NoteDraft
-                        .list("note.id in ?1", noteIds);
-                drafts.forEach(d -> notesWithDrafts.add(d.note.id));
-            }
+            data = cards.stream()
+                    .map(c -> toResponse(c, c.note != null && notesWithDrafts.contains(c.note.id)))
+                    .toList();
         }
 
-        List<CardResponse> data = cards.stream()
-                .map(c -> toResponse(c, c.note != null && notesWithDrafts.contains(c.note.id)))
-                .toList();
-
         long totalPages = (total + perPage - 1) / perPage;
         if (totalPages == 0)
             totalPages = 1;
@@ -122,6 +175,8 @@ public class CardResource {
                 builder.queryParam("sort", sort);
             if (deckId != null)
                 builder.queryParam("deckId", deckId);
+            if (fields != null)
+                builder.queryParam("fields", fields);
             nextPageUri = builder.build().toString();
         }
 
@@ -134,12 +189,110 @@ public class CardResource {
             lastPageBuilder.queryParam("sort", sort);
         if (deckId != null)
             lastPageBuilder.queryParam("deckId", deckId);
+        if (fields != null)
+            lastPageBuilder.queryParam("fields", fields);
         String lastPageUri = lastPageBuilder.build().toString();
 
         PaginationMeta meta = new PaginationMeta(total, page, nextPageUri, lastPageUri);
         return new PaginatedResponse<>(meta, data);
     }
 
+    private long countProjection(String where, java.util.Map<String, Object> params) {
+        var query = entityManager.createQuery("select count(c) from Card c left join c.note n" + where, Long.class);
+        params.forEach(query::setParameter);
+        return query.getSingleResult();
+    }
+
+    /**
+     * Sparse listing: selects only the requested columns as a tuple and maps them
+     * onto {@link CardResponse}, leaving the other properties null.
+     */
+    private List<CardResponse> listProjection(SparseFieldset fieldset, String whereAndOrder,
+            java.util.Map<String, Object> params, int page, int perPage) {
+        java.util.Set<String> selected = new java.util.LinkedHashSet<>(fieldset.fields());
+        // Derived properties are computed from the note id
+        if (fieldset.has("noteField") || fieldset.has("isDraft")) {
+            selected.add("noteId");
+        }
+        selected.remove("isDraft");
+
+        var query = entityManager.createQuery(
+                "select " + SparseFieldset.selectList(selected, PROJECTABLE_COLUMNS)
+                        + " from Card c left join c.note n" + whereAndOrder,
+                jakarta.persistence.Tuple.class);
+        params.forEach(query::setParameter);
+        List<jakarta.persistence.Tuple> tuples = query
+                .setFirstResult((page - 1) * perPage)
+                .setMaxResults(perPage)
+                .getResultList();
+
+        List<java.util.Map<String, Object>> rows = new java.util.ArrayList<>(tuples.size());
+        for (jakarta.persistence.Tuple tuple : tuples) {
+            java.util.Map<String, Object> row = new java.util.HashMap<>();
+            int i = 0;
+            for (String property : selected) {
+                row.put(property, tuple.get(i++));
+            }
+            rows.add(row);
+        }
+
+        java.util.Set<Long> notesWithDrafts = fieldset.has("isDraft")
+                ? findNotesWithDrafts(rows.stream()
+                        .map(r -> (Long) r.get("noteId"))
+                        .filter(java.util.Objects::nonNull)
+                        .distinct()
+                        .toList())
+                : java.util.Set.of();
+        if (fieldset.has("noteField")) {
+            ankiService.preloadMedia(rows.stream().map(r -> (Long) r.get("noteId")).toList());
+        }
+
+        return rows.stream().map(row -> {
+            Long noteId = (Long) row.get("noteId");
+            String noteField = null;
+            if (fieldset.has("noteField")) {
+                noteField = noteId != null ? displayField(noteId, (String) row.get("noteField")) : "";
+            }
+            Boolean isDraft = fieldset.has("isDraft") ? noteId != null && notesWithDrafts.contains(noteId) : null;
+            row.keySet().retainAll(fieldset.fields());
+            return new CardResponse(
+                    (Long) row.get("id"),
+                    (Long) row.get("noteId"),
+                    (Long) row.get("deckId"),
+                    (Integer) row.get("ordinal"),
+                    (Long) row.get("modificationTimestamp"),
+                    (Integer) row.get("updateSequenceNumber"),
+                    (Integer) row.get("type"),
+                    (Integer) row.get("queue"),
+                    (Long) row.get("due"),
+                    (Integer) row.get("interval"),
+                    (Integer) row.get("easeFactor"),
+                    (Integer) row.get("repetitions"),
+                    (Integer) row.get("lapses"),
+                    (Integer) row.get("remainingSteps"),
+                    (Long) row.get("originalDue"),
+                    (Long) row.get("originalDeckId"),
+                    (Integer) row.get("flags"),
+                    (String) row.get("customData"),
+                    noteField,
+                    (String) row.get("noteTags"),
+                    (String) row.get("sortField"),
+                    isDraft);
+        }).toList();
+    }
+
+    private java.util.Set<Long> findNotesWithDrafts(List<Long> noteIds) {
+        java.util.Set<Long> notesWithDrafts = new java.util.HashSet<>();
+        if (!noteIds.isEmpty()) {
+            // We just need to know if a draft exists for these notes
+            notesWithDrafts.addAll(entityManager
+                    .createQuery("select d.note.id from NoteDraft d where d.note.id in :ids", Long.class)
+                    .setParameter("ids", noteIds)
+                    .getResultList());
+        }
+        return notesWithDrafts;
+    }
+
     @GET
     @Path("/{id}")
     @org.eclipse.microprofile.openapi.annotations.Operation(summary = "Get a card by ID")
@@ -153,6 +306,63 @@ public class CardResource {
         return toResponse(card, false);
     }
 
+    @GET
+    @Path("/{id}/render")
+    @org.eclipse.microprofile.openapi.annotations.Operation(summary = "Render a card's question and answer")
+    @org.eclipse.microprofile.openapi.annotations.responses.APIResponse(responseCode = "200", description = "Card rendered")
+    @org.eclipse.microprofile.openapi.annotations.responses.APIResponse(responseCode = "404", description = "Card not found")
+    public br.com.powercards.dto.RenderedCardResponse render(@PathParam("id") Long id) {
+        List<br.com.powercards.dto.RenderedCardResponse> rendered = renderCards(List.of(id));
+        if (rendered.isEmpty()) {
+            throw new NotFoundException();
+        }
+        return rendered.get(0);
+    }
+
+    @POST
+    @Path("/render")
+    @org.eclipse.microprofile.openapi.annotations.Operation(summary = "Render a batch of cards, e.g. for a study session")
+    public List<br.com.powercards.dto.RenderedCardResponse> renderBatch(br.com.powercards.dto.RenderCardsRequest request) {
+        if (request == null || request.ids() == null || request.ids().isEmpty()) {
+            return List.of();
+        }
+        if (request.ids().size() > maxRenderBatch) {
+            throw new BadRequestException("At most " + maxRenderBatch + " cards can be rendered at once");
+        }
+        return renderCards(request.ids());
+    }
+
+    /**
+     * Renders the cards of the current workspace among the ids, in the order
+     * requested. Unknown ids are skipped.
+     */
+    private List<br.com.powercards.dto.RenderedCardResponse> renderCards(List<Long> ids) {
+        // The workspace filter applies to this query, unlike findById
+        java.util.Map<Long, Card> byId = new java.util.HashMap<>();
+        entityManager.createQuery("select c from Card c join fetch c.note where c.id in :ids", Card.class)
+                .setParameter("ids", ids)
+                .getResultList()
+                .forEach(c -> byId.put(c.id, c));
+        List<Card> cards = ids.stream().distinct().map(byId::get).filter(java.util.Objects::nonNull).toList();
+
+        ankiService.preloadMedia(cards.stream().map(c -> c.note.id).toList());
+        List<br.com.powercards.services.CardRenderer.Rendered> rendered = cardRenderer.renderAll(cards);
+
+        List<br.com.powercards.dto.RenderedCardResponse> responses = new java.util.ArrayList<>(cards.size());
+        for (int i = 0; i < cards.size(); i++) {
+            Card card = cards.get(i);
+            br.com.powercards.services.CardRenderer.Rendered r = rendered.get(i);
+            if (r == null) {
+                continue;
+            }
+            responses.add(new br.com.powercards.dto.RenderedCardResponse(card.id, card.note.id,
+                    ankiService.replaceMediaWithUrls(card.note.id, r.question()),
+                    ankiService.replaceMediaWithUrls(card.note.id, r.answer()),
+                    r.css()));
+        }
+        return responses;
+    }
+
     @POST
     @Transactional
     @org.eclipse.microprofile.openapi.annotations.Operation(summary = "Create a new card")
@@ -213,7 +423,7 @@ public class CardResource {
             if (deck == null) {
                 throw new NotFoundException("Target deck not found");
             }
-            Card.update("deck = ?1 where id in ?2", deck, request.cardIds());
+            Card.update("deck = ?1, workspace = ?2 where id in ?3", deck, deck.workspace, request.cardIds());
         }
     }
 
@@ -242,6 +452,8 @@ public class CardResource {
         if (entity.note != null) {
             if (request.noteContent() != null) {
                 entity.note.flds = request.noteContent();
+                // The response is built before the flush that would derive them
+                entity.note.syncFields();
             }
             if (request.noteTags() != null) {
                 entity.note.tags = request.noteTags();
@@ -251,20 +463,8 @@ public class CardResource {
 
     private CardResponse toResponse(Card card, boolean isDraft) {
         String noteField = "";
-        if (card.note != null && card.note.flds != null) {
-            String[] fields = card.note.flds.split("\u001f");
-            for (String f : fields) {
-                if (!f.trim().matches("^\\d+$")) {
-                    noteField = f;
-                    break;
-                }
-            }
-            // Fallback to first field if all are numeric or empty
-            if (noteField.isEmpty() && fields.length > 0) {
-                noteField = fields[0];
-            }
-
-            noteField = ankiService.replaceMediaWithUrls(card.note.id, noteField);
+        if (card.note != null) {
+            noteField = displayField(card.note.id, card.note.displayField);
         }
         return new CardResponse(
                 card.id,
@@ -287,6 +487,16 @@ public class CardResource {
                 card.data,
                 noteField,
                 card.note != null ? card.note.tags : "",
+                card.note != null ? card.note.sfld : null,
                 isDraft);
     }
+
+    // The display field is picked from the note's fields when the note is written
+    private String displayField(Long noteId, String displayField) {
+        if (displayField == null) {
+            return "";
+        }
+        // Shown in a table cell: images are served as thumbnails
+        return ankiService.replaceMediaWithUrls(noteId, displayField, true);
+    }
 }
@@ -30,6 +30,15 @@ public class NoteResource {
     @jakarta.inject.Inject
     br.com.powercards.security.WorkspaceContext workspaceContext;
 
+    @jakarta.inject.Inject
+    br.com.powercards.services.CardGenerator cardGenerator;
+
+    @jakarta.inject.Inject
+    br.com.powercards.services.DuplicateDetector duplicateDetector;
+
+    @org.eclipse.microprofile.config.inject.ConfigProperty(name = "powercards.notes.duplicates.max-groups", defaultValue = "1000")
+    int maxDuplicateGroups;
+
     // Helper to ensure Tags exist
     private void syncTags(String tags) {
         if (tags != null && !tags.isBlank()) {
@@ -50,6 +59,42 @@ public class NoteResource {
         }
     }
 
+    // Properties that can be requested through "fields=", mapped to the column
+    // backing them. model is referenced through its foreign key only, so a sparse
+    // listing never loads AnkiModel with its fields and templates.
+    private static final java.util.Map<String, String> PROJECTABLE_COLUMNS = java.util.Map.ofEntries(
+            java.util.Map.entry("id", "n.id"),
+            java.util.Map.entry("guid", "n.guid"),
+            java.util.Map.entry("modelId", "n.model.id"),
+            java.util.Map.entry("modificationTimestamp", "n.mod"),
+            java.util.Map.entry("updateSequenceNumber", "n.usn"),
+            java.util.Map.entry("tags", "n.tags"),
+            java.util.Map.entry("fields", "n.flds"),
+            java.util.Map.entry("sortField", "n.sfld"),
+            java.util.Map.entry("checksum", "n.csum"),
+            java.util.Map.entry("flags", "n.flags"),
+            java.util.Map.entry("customData", "n.data"),
+            java.util.Map.entry("isDraft", "n.id"));
+
+    // Properties that can be given as "sort=": the projectable ones, and the entity
+    // field names accepted before those existed
+    private static final java.util.Map<String, String> SORTABLE_COLUMNS = java.util.Map.ofEntries(
+            java.util.Map.entry("id", "n.id"),
+            java.util.Map.entry("guid", "n.guid"),
+            java.util.Map.entry("modelId", "n.model.id"),
+            java.util.Map.entry("modificationTimestamp", "n.mod"),
+            java.util.Map.entry("updateSequenceNumber", "n.usn"),
+            java.util.Map.entry("tags", "n.tags"),
+            java.util.Map.entry("fields", "n.flds"),
+            java.util.Map.entry("sortField", "n.sfld"),
+            java.util.Map.entry("checksum", "n.csum"),
+            java.util.Map.entry("flags", "n.flags"),
+            java.util.Map.entry("mod", "n.mod"),
+            java.util.Map.entry("usn", "n.usn"),
+            java.util.Map.entry("flds", "n.flds"),
+            java.util.Map.entry("sfld", "n.sfld"),
+            java.util.Map.entry("csum", "n.csum"));
+
     @GET
     @org.eclipse.microprofile.openapi.annotations.Operation(summary = "List all notes")
     public PaginatedResponse<NoteResponse> list(
@@ -58,6 +103,7 @@ public class NoteResource {
             @QueryParam("search") String search,
             @QueryParam("sort") String sort,
             @QueryParam("deckId") Long deckId,
+            @org.eclipse.microprofile.openapi.annotations.parameters.Parameter(description = "Comma separated list of properties to return, e.g. id,sortField,tags") @QueryParam("fields") String fields,
             @Context UriInfo uriInfo) {
 
         if (page < 1)
@@ -65,27 +111,13 @@ public class NoteResource {
         if (perPage < 1)
             perPage = 20;
 
-        io.quarkus.panache.common.Sort sortObj = io.quarkus.panache.common.Sort.by("id");
-        if (sort != null && !sort.isBlank()) {
-            String sortCol = sort;
-            io.quarkus.panache.common.Sort.Direction direction = io.quarkus.panache.common.Sort.Direction.Ascending;
+        SparseFieldset fieldset = SparseFieldset.parse(fields, PROJECTABLE_COLUMNS);
 
-            if (sort.startsWith("-")) {
-                sortCol = sort.substring(1);
-                direction = io.quarkus.panache.common.Sort.Direction.Descending;
-            }
-
-            // Fix for ambiguous columns when joining tables (e.g. id exists in Note and
-            // Card)
-            if (!sortCol.contains(".")) {
-                sortCol = "n." + sortCol;
-            }
-
-            sortObj = io.quarkus.panache.common.Sort.by(sortCol).direction(direction);
-        }
+        SortParameter order = SortParameter.parse(sort, SORTABLE_COLUMNS, "n.id");
 
         io.quarkus.hibernate.orm.panache.PanacheQuery<Note> query;
         StringBuilder queryBuilder = new StringBuilder();
+        StringBuilder whereBuilder = new StringBuilder();
         java.util.Map<String, Object> params = new java.util.HashMap<>();
 
         // Base query
@@ -104,7 +136,7 @@ public class NoteResource {
                 // 2. tag is at the start: "tag %"
                 // 3. tag is at the end: "% tag"
                 // 4. tag is in the middle: "% tag %"
-                queryBuilder.append(
+                whereBuilder.append(
                         " and (n.tags = :tagExact OR n.tags LIKE :tagStart OR n.tags LIKE :tagEnd OR n.tags LIKE :tagMiddle)");
                 params.put("tagExact", tag);
                 params.put("tagStart", tag + " %");
@@ -113,31 +145,40 @@ public class NoteResource {
             } else if (search.toLowerCase().startsWith("tag=")) {
                 // Deprecated but backward compatible partial match
                 String tag = search.substring(4);
-                queryBuilder.append(" and lower(n.tags) like :tag");
+                whereBuilder.append(" and lower(n.tags) like :tag");
                 params.put("tag", "%" + tag.toLowerCase() + "%");
             } else {
-                queryBuilder.append(" and (lower(n.flds) like :search or lower(n.sfld) like :search)");
+                whereBuilder.append(" and (lower(n.flds) like :search or lower(n.sfld) like :search)");
                 params.put("search", "%" + search.toLowerCase() + "%");
             }
         }
 
-        query = Note.find(queryBuilder.toString(), sortObj, params);
+        long total;
+        List<NoteResponse> data;
+        if (fieldset != null) {
+            // A semi-join keeps one row per note without "distinct", which would
+            // otherwise require the sort column to be part of the projection
+            String where = (deckId != null
+                    ? " where n.id in (select c.note.id from Card c where c.deck.id = :deckId)"
+                    : " where 1=1") + whereBuilder;
+            String orderBy = order.orderBy();
+            var countQuery = entityManager.createQuery("select count(n) from Note n" + where, Long.class);
+            params.forEach(countQuery::setParameter);
+            total = countQuery.getSingleResult();
+            data = listProjection(fieldset, where + orderBy, params, page, perPage);
+        } else {
+            query = Note.find(queryBuilder.append(whereBuilder).toString(), order.toSort(), params);
 
-        long total = query.count();
-        List<Note> notes = query.page(page - 1, perPage).list();
-        // Optimized: Batch fetch draft existence
-        java.util.Set<Long> notesWithDrafts = new java.util.HashSet<>();
-        if (!notes.isEmpty()) {
-            java.util.List<Long> ids = notes.stream().map(n -> n.id).toList();
-            // We just need to know if a draft exists
-            java.util.List<br.com.powercards.model.NoteDraft> drafts = br.com.powercards.model.NoteDraft
-                    .list("note.id in ?1", ids);
-            drafts.forEach(d -> notesWithDrafts.add(d.note.id));
-        }
+            total = query.count();
+            List<Note> notes = query.page(page - 1, perPage).list();
+            // Optimized: Batch fetch draft existence
+            java.util.Set<Long> notesWithDrafts = findNotesWithDrafts(notes.stream().map(n -> n.id).toList());
+            ankiService.preloadMedia(notes.stream().map(n -> n.id).toList());
 
-        List<NoteResponse> data = notes.stream()
-                .map(n -> toResponse(n, notesWithDrafts.contains(n.id)))
-                .toList();
+            data = notes.stream()
+                    .map(n -> toResponse(n, notesWithDrafts.contains(n.id)))
+                    .toList();
+        }
 
         long totalPages = (total + perPage - 1) / perPage;
         if (totalPages == 0)
@@ -152,6 +193,8 @@ public class NoteResource {
                 builder.queryParam("search", search);
             if (sort != null)
                 builder.queryParam("sort", sort);
+            if (fields != null)
+                builder.queryParam("fields", fields);
             nextPageUri = builder.build().toString();
         }
 
@@ -162,12 +205,104 @@ public class NoteResource {
             lastPageBuilder.queryParam("search", search);
         if (sort != null)
             lastPageBuilder.queryParam("sort", sort);
+        if (fields != null)
+            lastPageBuilder.queryParam("fields", fields);
         String lastPageUri = lastPageBuilder.build().toString();
 
         PaginationMeta meta = new PaginationMeta(total, page, nextPageUri, lastPageUri);
         return new PaginatedResponse<>(meta, data);
     }
 
+    /**
+     * Sparse listing: selects only the requested columns as a tuple and maps them
+     * onto {@link NoteResponse}, leaving the other properties null.
+     */
+    private List<NoteResponse> listProjection(SparseFieldset fieldset, String whereAndOrder,
+            java.util.Map<String, Object> params, int page, int perPage) {
+        java.util.Set<String> selected = new java.util.LinkedHashSet<>(fieldset.fields());
+        // Media URLs and draft flags are resolved by note id
+        if (fieldset.has("fields") || fieldset.has("isDraft")) {
+            selected.add("id");
+        }
+        selected.remove("isDraft");
+
+        var query = entityManager.createQuery(
+                "select " + SparseFieldset.selectList(selected, PROJECTABLE_COLUMNS) + " from Note n" + whereAndOrder,
+                jakarta.persistence.Tuple.class);
+        params.forEach(query::setParameter);
+        List<jakarta.persistence.Tuple> tuples = query
+                .setFirstResult((page - 1) * perPage)
+                .setMaxResults(perPage)
+                .getResultList();
+
+        List<java.util.Map<String, Object>> rows = new java.util.ArrayList<>(tuples.size());
+        for (jakarta.persistence.Tuple tuple : tuples) {
+            java.util.Map<String, Object> row = new java.util.HashMap<>();
+            int i = 0;
+            for (String property : selected) {
+                row.put(property, tuple.get(i++));
+            }
+            rows.add(row);
+        }
+
+        java.util.Set<Long> notesWithDrafts = fieldset.has("isDraft")
+                ? findNotesWithDrafts(rows.stream().map(r -> (Long) r.get("id")).toList())
+                : java.util.Set.of();
+        if (fieldset.has("fields")) {
+            ankiService.preloadMedia(rows.stream().map(r -> (Long) r.get("id")).toList());
+        }
+
+        return rows.stream().map(row -> {
+            Long id = (Long) row.get("id");
+            String flds = fieldset.has("fields") ? ankiService.replaceMediaWithUrls(id, (String) row.get("fields"))
+                    : null;
+            Boolean isDraft = fieldset.has("isDraft") ? notesWithDrafts.contains(id) : null;
+            row.keySet().retainAll(fieldset.fields());
+            return new NoteResponse(
+                    (Long) row.get("id"),
+                    (String) row.get("guid"),
+                    (Long) row.get("modelId"),
+                    (Long) row.get("modificationTimestamp"),
+                    (Integer) row.get("updateSequenceNumber"),
+                    (String) row.get("tags"),
+                    flds,
+                    (String) row.get("sortField"),
+                    (Long) row.get("checksum"),
+                    (Integer) row.get("flags"),
+                    (String) row.get("customData"),
+                    isDraft,
+                    null);
+        }).toList();
+    }
+
+    private java.util.Set<Long> findNotesWithDrafts(List<Long> noteIds) {
+        java.util.Set<Long> notesWithDrafts = new java.util.HashSet<>();
+        if (!noteIds.isEmpty()) {
+            // We just need to know if a draft exists
+            notesWithDrafts.addAll(entityManager
+                    .createQuery("select d.note.id from NoteDraft d where d.note.id in :ids", Long.class)
+                    .setParameter("ids", noteIds)
+                    .getResultList());
+        }
+        return notesWithDrafts;
+    }
+
+    @GET
+    @Path("/duplicates")
+    @org.eclipse.microprofile.openapi.annotations.Operation(summary = "Find notes of the same model with the same first field")
+    public List<br.com.powercards.dto.DuplicateGroupResponse> duplicates(
+            @QueryParam("modelId") Long modelId,
+            @QueryParam("limit") @DefaultValue("100") int limit) {
+        br.com.powercards.model.Workspace currentWorkspace = workspaceContext.getWorkspace();
+        if (currentWorkspace == null) {
+            throw new BadRequestException("Invalid or missing Workspace ID");
+        }
+        if (limit < 1 || limit > maxDuplicateGroups) {
+            throw new BadRequestException("limit must be between 1 and " + maxDuplicateGroups);
+        }
+        return duplicateDetector.findGroups(currentWorkspace.id, modelId, limit);
+    }
+
     @GET
     @Path("/{id}")
     @org.eclipse.microprofile.openapi.annotations.Operation(summary = "Get a note by ID")
@@ -198,7 +333,8 @@ public class NoteResource {
                         note.csum,
                         note.flags,
                         note.data,
-                        true);
+                        true,
+                        null);
             }
         }
 
@@ -220,24 +356,81 @@ public class NoteResource {
     @Transactional
     @org.eclipse.microprofile.openapi.annotations.Operation(summary = "Create a new note")
     @org.eclipse.microprofile.openapi.annotations.responses.APIResponse(responseCode = "201", description = "Note created")
-    public Response create(NoteRequest noteRequest) {
+    public Response create(NoteRequest noteRequest, @QueryParam("deckId") Long deckId) {
+        ensureFilter();
+        br.com.powercards.model.Workspace currentWorkspace = workspaceContext.getWorkspace();
+        if (currentWorkspace == null) {
+            throw new BadRequestException("Invalid or missing Workspace ID");
+        }
+        Deck deck = findDeck(deckId, currentWorkspace);
+        Note note = newNote(noteRequest, currentWorkspace);
+        note.persist();
+        Note.getEntityManager().flush();
+        cardGenerator.generate(List.of(note), deck);
+        syncTags(note.tags);
+        List<Long> duplicates = duplicateDetector.duplicatesOf(List.of(note)).getOrDefault(note.id, List.of());
+        return Response.status(Response.Status.CREATED).entity(toResponse(note, false, duplicates)).build();
+    }
+
+    @POST
+    @Path("/bulk/create")
+    @Transactional
+    @org.eclipse.microprofile.openapi.annotations.Operation(summary = "Create many notes, with their cards, in one request")
+    @org.eclipse.microprofile.openapi.annotations.responses.APIResponse(responseCode = "201", description = "Notes created")
+    public Response bulkCreate(List<NoteRequest> noteRequests, @QueryParam("deckId") Long deckId) {
         ensureFilter();
         br.com.powercards.model.Workspace currentWorkspace = workspaceContext.getWorkspace();
         if (currentWorkspace == null) {
             throw new BadRequestException("Invalid or missing Workspace ID");
         }
+        if (noteRequests == null || noteRequests.isEmpty()) {
+            throw new BadRequestException("No notes to create");
+        }
+        Deck deck = findDeck(deckId, currentWorkspace);
+        List<Note> notes = new java.util.ArrayList<>(noteRequests.size());
+        java.util.Set<String> tags = new java.util.LinkedHashSet<>();
+        for (NoteRequest noteRequest : noteRequests) {
+            Note note = newNote(noteRequest, currentWorkspace);
+            note.persist();
+            notes.add(note);
+            if (note.tags != null) {
+                tags.add(note.tags);
+            }
+        }
+        Note.getEntityManager().flush();
+        // All cards of the batch are generated with a handful of statements
+        cardGenerator.generate(notes, deck);
+        syncTags(String.join(" ", tags));
+        java.util.Map<Long, List<Long>> duplicates = duplicateDetector.duplicatesOf(notes);
+        return Response.status(Response.Status.CREATED)
+                .entity(notes.stream()
+                        .map(n -> toResponse(n, false, duplicates.getOrDefault(n.id, List.of())))
+                        .toList())
+                .build();
+    }
+
+    private Note newNote(NoteRequest noteRequest, br.com.powercards.model.Workspace workspace) {
         Note note = new Note();
-        note.workspace = currentWorkspace;
+        note.workspace = workspace;
         note.tags = noteRequest.tags();
         note.flds = noteRequest.fields();
         note.data = noteRequest.customData();
         if (noteRequest.modelId() != null) {
             note.model = AnkiModel.findById(noteRequest.modelId());
         }
-        note.persist();
-        syncTags(note.tags);
-        System.out.println("DEBUG: Created note with ID: " + note.id);
-        return Response.status(Response.Status.CREATED).entity(toResponse(note, false)).build();
+        return note;
+    }
+
+    // findById bypasses the workspace filter, so the deck's workspace is checked here
+    private Deck findDeck(Long deckId, br.com.powercards.model.Workspace workspace) {
+        if (deckId == null) {
+            return null;
+        }
+        Deck deck = Deck.findById(deckId);
+        if (deck == null || deck.workspace == null || !deck.workspace.id.equals(workspace.id)) {
+            throw new NotFoundException("Deck not found");
+        }
+        return deck;
     }
 
     @PUT
@@ -260,6 +453,8 @@ public class NoteResource {
         }
         // Force flush to ensure update is visible to cleanup query
         Note.getEntityManager().flush();
+        // Cards follow the new fields: filled templates get a card, emptied ones lose theirs
+        cardGenerator.generate(List.of(entity), null);
         syncTags(entity.tags);
         deleteOrphanTags();
 
@@ -305,6 +500,8 @@ public class NoteResource {
         // Delete draft first
         br.com.powercards.model.NoteDraft.delete("note.id", id);
         br.com.powercards.model.Card.delete("note.id = ?1", id);
+        // The objects themselves are removed by MediaGarbageCollector
+        br.com.powercards.domain.entities.AnkiMedia.delete("id.noteId", id);
         entity.delete();
         deleteOrphanTags();
     }
@@ -356,6 +553,7 @@ public class NoteResource {
             // Also drafts
             br.com.powercards.model.NoteDraft.delete("note.id in ?1", request.ids());
             br.com.powercards.model.Card.delete("note.id in ?1", request.ids());
+            br.com.powercards.domain.entities.AnkiMedia.delete("id.noteId in ?1", request.ids());
             Note.delete("id in ?1", request.ids());
             deleteOrphanTags();
         }
@@ -364,7 +562,6 @@ public class NoteResource {
     @POST
     @Path("/{id}/media")
     @Consumes(MediaType.MULTIPART_FORM_DATA)
-    @Transactional
     @org.eclipse.microprofile.openapi.annotations.Operation(summary = "Upload media for a note")
     public Response uploadMedia(@PathParam("id") Long id,
             @org.jboss.resteasy.reactive.RestForm("file") org.jboss.resteasy.reactive.multipart.FileUpload file) {
@@ -378,88 +575,114 @@ public class NoteResource {
             throw new BadRequestException("File is required");
         }
 
-        try {
-            String filename = file.fileName();
-            // Basic sanitization
-            filename = java.nio.file.Paths.get(filename).getFileName().toString();
+        String filename = file.fileName();
+        // Basic sanitization
+        filename = java.nio.file.Paths.get(filename).getFileName().toString();
 
-            // Read all bytes
-            byte[] data = java.nio.file.Files.readAllBytes(file.uploadedFile());
+        // Streamed from the temporary upload file, never held in memory
+        java.nio.file.Path path = file.uploadedFile();
+        br.com.powercards.domain.entities.AnkiMedia media = ankiService.uploadSingleFile(id, filename,
+                () -> java.nio.file.Files.newInputStream(path), file.size(), file.contentType());
 
-            br.com.powercards.domain.entities.AnkiMedia media = ankiService.uploadSingleFile(id, filename, data,
-                    file.contentType());
+        java.util.Map<String, String> result = new java.util.HashMap<>();
+        result.put("url", ankiService.mediaUrl(media));
+        result.put("filename", filename);
+        result.put("contentType", media.contentType);
+        result.put("checksum", media.checksum);
 
-            java.util.Map<String, String> result = new java.util.HashMap<>();
-            result.put("url", media.minioUrl);
-            result.put("filename", filename);
+        return Response.ok(result).build();
+    }
 
-            return Response.ok(result).build();
-        } catch (java.io.IOException e) {
-            throw new InternalServerErrorException("Failed to process file", e);
+    @POST
+    @Path("/{id}/media/presign")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @org.eclipse.microprofile.openapi.annotations.Operation(summary = "Get a direct upload URL for note media")
+    public br.com.powercards.dto.PresignedUploadResponse presignMedia(@PathParam("id") Long id,
+            br.com.powercards.dto.PresignedUploadRequest request) {
+        ensureFilter();
+        if (Note.findById(id) == null) {
+            throw new NotFoundException();
+        }
+        if (request == null || request.filename() == null || request.filename().isBlank()) {
+            throw new BadRequestException("Filename is required");
         }
+        String filename = java.nio.file.Paths.get(request.filename()).getFileName().toString();
+        return ankiService.presignUpload(id, filename);
+    }
+
+    @POST
+    @Path("/{id}/media/confirm")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @org.eclipse.microprofile.openapi.annotations.Operation(summary = "Register media uploaded through a direct upload URL")
+    public Response confirmMedia(@PathParam("id") Long id, br.com.powercards.dto.ConfirmUploadRequest request) {
+        ensureFilter();
+        if (Note.findById(id) == null) {
+            throw new NotFoundException();
+        }
+        if (request == null || request.objectName() == null || request.objectName().isBlank()) {
+            throw new BadRequestException("Object name is required");
+        }
+        br.com.powercards.domain.entities.AnkiMedia media = ankiService.confirmUpload(id, request.objectName());
+
+        java.util.Map<String, String> result = new java.util.HashMap<>();
+        result.put("url", ankiService.mediaUrl(media));
+        result.put("filename", media.id.originalName);
+        result.put("contentType", media.contentType);
+        return Response.ok(result).build();
     }
 
     @jakarta.inject.Inject
-    br.com.powercards.services.AIEnhancementService aiEnhancementService;
+    br.com.powercards.services.BatchEnhancementService batchEnhancementService;
+
+    @org.eclipse.microprofile.config.inject.ConfigProperty(name = "powercards.ai.batch.max-notes", defaultValue = "1000")
+    int maxEnhanceNotes;
 
     @POST
     @Path("/bulk/enhance")
-    @Transactional
-    @org.eclipse.microprofile.openapi.annotations.Operation(summary = "Batch enhance notes using AI")
-    public void batchEnhance(br.com.powercards.dto.BatchEnhanceRequest request) {
+    @org.eclipse.microprofile.openapi.annotations.Operation(summary = "Start enhancing notes using AI; results are saved as drafts")
+    @org.eclipse.microprofile.openapi.annotations.responses.APIResponse(responseCode = "202", description = "Enhancement job started")
+    public Response batchEnhance(br.com.powercards.dto.BatchEnhanceRequest request, @Context UriInfo uriInfo) {
         ensureFilter();
-        if (request.noteIds() != null && !request.noteIds().isEmpty()) {
-            List<Note> notes = Note.list("id in ?1", request.noteIds());
-            for (Note note : notes) {
-                // Check for existing draft to start from? Or always source from original note?
-                // Plan says "Process AI enhancement. Save results as NoteDrafts."
-                // Usually one enhances the ORIGINAL content.
-                // If a draft exists, should we enhance the draft?
-                // Probably yes, if the user has unsaved edits they want enhanced.
-                // But for bulk, maybe safety first: Enhance original?
-                // Let's enhance ORIGINAL for simplicity in bulk.
-                // Or check draft?
-                // Let's check draft. If draft exists, use it.
-
-                String fieldsToEnhance = note.flds;
-                br.com.powercards.model.NoteDraft existingDraft = br.com.powercards.model.NoteDraft
-                        .find("note.id", note.id).firstResult();
-                if (existingDraft != null) {
-                    fieldsToEnhance = existingDraft.flds;
-                }
+        br.com.powercards.model.Workspace currentWorkspace = workspaceContext.getWorkspace();
+        if (currentWorkspace == null) {
+            throw new BadRequestException("Invalid or missing Workspace ID");
+        }
+        java.util.Set<Long> requested = new java.util.LinkedHashSet<>();
+        if (request.noteIds() != null) {
+            request.noteIds().stream().filter(java.util.Objects::nonNull).forEach(requested::add);
+        }
+        if (requested.size() > maxEnhanceNotes) {
+            throw new BadRequestException("At most " + maxEnhanceNotes + " notes can be enhanced at once");
+        }
+        // Only notes of the workspace; drafts are read and written by the job itself
+        List<Long> noteIds = requested.isEmpty() ? List.of()
+                : entityManager.createQuery("select n.id from Note n where n.id in :ids", Long.class)
+                        .setParameter("ids", requested)
+                        .getResultList();
+        // Missing notes and notes of other workspaces are reported as failed, not dropped
+        java.util.Set<Long> found = new java.util.HashSet<>(noteIds);
+        List<Long> missing = requested.stream().filter(noteId -> !found.contains(noteId)).toList();
+        br.com.powercards.dto.EnhancementJobResponse job = batchEnhancementService.submit(currentWorkspace.id,
+                noteIds, missing);
+        return Response.accepted(job)
+                .location(uriInfo.getAbsolutePathBuilder().path(job.id()).build())
+                .build();
+    }
 
-                // Split fields (Anki uses \u001f separator)
-                // But wait, the AI service expects a List<String>.
-                // Note fields are stored as a single string joined by \u001f?
-                // Accessing `note.flds`: it is a String.
-                // We need to split it.
-                // AnkiSEPARATOR is usually \u001f (Unit Separator).
-
-                String[] fieldsArray = fieldsToEnhance.split("\u001f", -1); // -1 to keep empty trailing fields
-                java.util.List<String> fieldsList = java.util.Arrays.asList(fieldsArray);
-
-                try {
-                    java.util.List<String> enhancedFields = aiEnhancementService.enhanceModel(fieldsList);
-
-                    // Join back
-                    String newFields = String.join("\u001f", enhancedFields);
-
-                    // Create or Update Draft
-                    if (existingDraft == null) {
-                        existingDraft = new br.com.powercards.model.NoteDraft();
-                        existingDraft.note = note;
-                    }
-                    existingDraft.flds = newFields;
-                    // Keep tags as is (or should AI enhance tags? Service doesn't seem to)
-                    existingDraft.tags = (existingDraft.tags != null) ? existingDraft.tags : note.tags;
-                    existingDraft.persist();
-
-                } catch (Exception e) {
-                    System.err.println("Failed to enhance note " + note.id + ": " + e.getMessage());
-                    // Continue with other notes
-                }
-            }
+    @GET
+    @Path("/bulk/enhance/{jobId}")
+    @org.eclipse.microprofile.openapi.annotations.Operation(summary = "Progress of an AI enhancement job")
+    @org.eclipse.microprofile.openapi.annotations.responses.APIResponse(responseCode = "404", description = "Job not found or expired")
+    public br.com.powercards.dto.EnhancementJobResponse batchEnhanceStatus(@PathParam("jobId") String jobId) {
+        br.com.powercards.model.Workspace currentWorkspace = workspaceContext.getWorkspace();
+        if (currentWorkspace == null) {
+            throw new BadRequestException("Invalid or missing Workspace ID");
+        }
+        br.com.powercards.dto.EnhancementJobResponse job = batchEnhancementService.find(currentWorkspace.id, jobId);
+        if (job == null) {
+            throw new NotFoundException();
         }
+        return job;
     }
 
     @DELETE
@@ -510,11 +733,15 @@ public class NoteResource {
                 throw new NotFoundException("Target deck not found");
             }
             // Move all cards belonging to these notes to the target deck
-            Card.update("deck = ?1 where note.id in ?2", deck, request.noteIds());
+            Card.update("deck = ?1, workspace = ?2 where note.id in ?3", deck, deck.workspace, request.noteIds());
         }
     }
 
     private NoteResponse toResponse(Note note, boolean isDraft) {
+        return toResponse(note, isDraft, null);
+    }
+
+    private NoteResponse toResponse(Note note, boolean isDraft, List<Long> duplicateIds) {
         return new NoteResponse(
                 note.id,
                 note.guid,
@@ -527,6 +754,7 @@ public class NoteResource {
                 note.csum,
                 note.flags,
                 note.data,
-                isDraft);
+                isDraft,
+                duplicateIds);
     }
 }
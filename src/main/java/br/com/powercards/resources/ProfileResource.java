@@ -1,5 +1,8 @@
 package br.com.powercards.resources;
 
+import br.com.powercards.dto.ConfirmUploadRequest;
+import br.com.powercards.dto.PresignedUploadRequest;
+import br.com.powercards.dto.PresignedUploadResponse;
 import br.com.powercards.dto.ProfileRequest;
 import br.com.powercards.dto.ProfileResponse;
 import br.com.powercards.model.User;
@@ -11,9 +14,6 @@ import jakarta.ws.rs.core.MediaType;
 import org.jboss.resteasy.reactive.multipart.FileUpload;
 import org.jboss.resteasy.reactive.RestForm;
 
-import java.io.FileInputStream;
-import java.io.IOException;
-
 @Path("/v1/profile")
 @Produces(MediaType.APPLICATION_JSON)
 public class ProfileResource {
@@ -38,6 +38,9 @@ public class ProfileResource {
         // Step 1: Save DB fields (transactional)
         User user = profileService.updateProfile(keycloakId, request.displayName(), request.description(),
                 request.colorPalette(), request.darkMode(), request.aiProvider(), request.preferences());
+        if (request.aiRouting() != null) {
+            user = profileService.updateAiRouting(keycloakId, request.aiRouting());
+        }
 
         // Step 2: Save AI API key to Keycloak (non-transactional, won't roll back DB)
         Boolean explicitHasKey = null;
@@ -54,6 +57,11 @@ public class ProfileResource {
             }
         }
 
+        if (request.aiAlternateKeys() != null && !profileService.saveAiAlternateKeys(keycloakId,
+                request.aiAlternateKeys())) {
+            throw new InternalServerErrorException("Failed to save AI API keys");
+        }
+
         return toResponse(user, explicitHasKey);
     }
 
@@ -67,17 +75,13 @@ public class ProfileResource {
 
         String keycloakId = identity.getPrincipal().getName();
 
-        try (FileInputStream fis = new FileInputStream(file.filePath().toFile())) {
-            User user = profileService.uploadAvatar(
-                    keycloakId,
-                    fis,
-                    file.fileName(),
-                    file.contentType(),
-                    file.size());
-            return toResponse(user);
-        } catch (IOException e) {
-            throw new InternalServerErrorException("Failed to read uploaded file", e);
-        }
+        User user = profileService.uploadAvatar(
+                keycloakId,
+                file.filePath(),
+                file.fileName(),
+                file.contentType(),
+                file.size());
+        return toResponse(user);
     }
 
     @POST
@@ -90,17 +94,51 @@ public class ProfileResource {
 
         String keycloakId = identity.getPrincipal().getName();
 
-        try (FileInputStream fis = new FileInputStream(file.filePath().toFile())) {
-            User user = profileService.uploadBanner(
-                    keycloakId,
-                    fis,
-                    file.fileName(),
-                    file.contentType(),
-                    file.size());
-            return toResponse(user);
-        } catch (IOException e) {
-            throw new InternalServerErrorException("Failed to read uploaded file", e);
+        User user = profileService.uploadBanner(
+                keycloakId,
+                file.filePath(),
+                file.fileName(),
+                file.contentType(),
+                file.size());
+        return toResponse(user);
+    }
+
+    @POST
+    @Path("/avatar/presign")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public PresignedUploadResponse presignAvatar(PresignedUploadRequest request) {
+        return profileService.presignAvatarUpload(identity.getPrincipal().getName(), filenameOf(request));
+    }
+
+    @POST
+    @Path("/avatar/confirm")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public ProfileResponse confirmAvatar(ConfirmUploadRequest request) {
+        if (request == null || request.objectName() == null) {
+            throw new BadRequestException("Object name is required");
         }
+        return toResponse(profileService.confirmAvatarUpload(identity.getPrincipal().getName(), request.objectName()));
+    }
+
+    @POST
+    @Path("/banner/presign")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public PresignedUploadResponse presignBanner(PresignedUploadRequest request) {
+        return profileService.presignBannerUpload(identity.getPrincipal().getName(), filenameOf(request));
+    }
+
+    @POST
+    @Path("/banner/confirm")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public ProfileResponse confirmBanner(ConfirmUploadRequest request) {
+        if (request == null || request.objectName() == null) {
+            throw new BadRequestException("Object name is required");
+        }
+        return toResponse(profileService.confirmBannerUpload(identity.getPrincipal().getName(), request.objectName()));
+    }
+
+    private static String filenameOf(PresignedUploadRequest request) {
+        return request != null ? request.filename() : null;
     }
 
     private ProfileResponse toResponse(User user) {
@@ -120,11 +158,15 @@ public class ProfileResource {
                 user.displayName,
                 user.avatarUrl,
                 user.bannerUrl,
+                ProfileService.variantUrls(user.avatarUrl, user.avatarVariants),
+                ProfileService.variantUrls(user.bannerUrl, user.bannerVariants),
                 user.description,
                 user.colorPalette,
                 user.darkMode,
                 user.aiProvider,
                 hasKey,
-                user.preferences);
+                user.preferences,
+                user.aiRouting != null ? user.aiRouting : "single",
+                profileService.getAiAlternateProviders(user.keycloakId));
     }
 }
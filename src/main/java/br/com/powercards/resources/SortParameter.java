@@ -0,0 +1,51 @@
+package br.com.powercards.resources;
+
+import jakarta.ws.rs.BadRequestException;
+
+import java.util.Map;
+
+/**
+ * Parsed {@code sort=} query parameter of the list endpoints: a property name,
+ * prefixed with {@code -} for descending order.
+ * <p>
+ * Like {@link SparseFieldset}, each resource declares the properties it can
+ * sort by mapped to the JPQL expression backing them; the query only ever gets
+ * one of those expressions, never the text of the request.
+ *
+ * @param column     JPQL expression to order by
+ * @param descending whether the order is descending
+ */
+record SortParameter(String column, boolean descending) {
+
+    /**
+     * @param raw           the parameter, e.g. {@code -due}; blank for the default
+     * @param columns       sortable property names mapped to their JPQL expressions
+     * @param defaultColumn expression used when no sort was requested
+     * @throws BadRequestException for a property that cannot be sorted by
+     */
+    static SortParameter parse(String raw, Map<String, String> columns, String defaultColumn) {
+        if (raw == null || raw.isBlank()) {
+            return new SortParameter(defaultColumn, false);
+        }
+        String property = raw.trim();
+        boolean descending = property.startsWith("-");
+        if (descending) {
+            property = property.substring(1);
+        }
+        String column = columns.get(property);
+        if (column == null) {
+            throw new BadRequestException("Unknown sort property: " + property);
+        }
+        return new SortParameter(column, descending);
+    }
+
+    String orderBy() {
+        return " order by " + column + (descending ? " desc" : " asc");
+    }
+
+    io.quarkus.panache.common.Sort toSort() {
+        return descending
+                ? io.quarkus.panache.common.Sort.descending(column)
+                : io.quarkus.panache.common.Sort.ascending(column);
+    }
+}
@@ -0,0 +1,63 @@
+package br.com.powercards.resources;
+
+import jakarta.ws.rs.BadRequestException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Parsed {@code fields=} query parameter of the list endpoints.
+ * <p>
+ * Each resource declares the response properties it can project together with
+ * the JPQL expression backing them, so only the requested columns are selected
+ * and no entity graph is hydrated.
+ */
+final class SparseFieldset {
+
+    private final Set<String> fields;
+
+    private SparseFieldset(Set<String> fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * @param raw     comma separated property names, e.g. {@code id,sortField,due}
+     * @param columns allowed property names mapped to their JPQL expressions
+     * @return the selection, or {@code null} when no projection was requested
+     */
+    static SparseFieldset parse(String raw, Map<String, String> columns) {
+        if (raw == null || raw.isBlank()) {
+            return null;
+        }
+        Set<String> fields = Arrays.stream(raw.split(","))
+                .map(String::trim)
+                .filter(f -> !f.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        for (String field : fields) {
+            if (!columns.containsKey(field)) {
+                throw new BadRequestException("Unknown field: " + field);
+            }
+        }
+        return new SparseFieldset(Collections.unmodifiableSet(fields));
+    }
+
+    boolean has(String field) {
+        return fields.contains(field);
+    }
+
+    Set<String> fields() {
+        return fields;
+    }
+
+    /**
+     * Builds the select list for the requested properties plus any extra ones the
+     * resource needs internally (ids used to compute derived values).
+     */
+    static String selectList(Set<String> properties, Map<String, String> columns) {
+        return properties.stream().map(columns::get).collect(Collectors.joining(", "));
+    }
+}
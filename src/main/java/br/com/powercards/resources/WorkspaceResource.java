@@ -22,11 +22,17 @@ public class WorkspaceResource {
     @Inject
     SecurityIdentity identity;
 
+    @Inject
+    br.com.powercards.services.WorkspacePartitionService partitionService;
+
+    @Inject
+    br.com.powercards.services.WorkspaceDeletionService deletionService;
+
     @GET
     public List<WorkspaceResponse> list() {
         String keycloakId = identity.getPrincipal().getName();
         // Filter by authenticated user
-        List<Workspace> list = Workspace.find("user.keycloakId = ?1", keycloakId).list();
+        List<Workspace> list = Workspace.find("user.keycloakId = ?1 and deletedAt is null", keycloakId).list();
         return list.stream()
                 .map(w -> new WorkspaceResponse(w.id.toString(), w.name))
                 .collect(Collectors.toList());
@@ -43,6 +49,7 @@ public class WorkspaceResource {
         User user = User.findOrCreate(keycloakId);
         Workspace w = new Workspace(request.name(), user);
         w.persist();
+        partitionService.createPartitions(w.id);
         return Response.status(Response.Status.CREATED)
                 .entity(new WorkspaceResponse(w.id.toString(), w.name))
                 .build();
@@ -56,34 +63,41 @@ public class WorkspaceResource {
             Long longId = Long.parseLong(id);
             String keycloakId = identity.getPrincipal().getName();
             // Verify ownership via User entity
-            Workspace w = Workspace.find("id = ?1 and user.keycloakId = ?2", longId, keycloakId)
+            Workspace w = Workspace
+                    .find("id = ?1 and user.keycloakId = ?2 and deletedAt is null", longId, keycloakId)
                     .firstResult();
 
             if (w == null) {
                 throw new NotFoundException();
             }
 
-            // Delete Cards first (referencing Note and Deck)
-            br.com.powercards.model.Card.delete("deck.workspace.id = ?1", longId);
-
-            // Delete Notes (referencing Workspace and AnkiModel)
-            br.com.powercards.model.Note.delete("workspace.id = ?1", longId);
-
-            // Delete Decks (referencing Workspace)
-            br.com.powercards.model.Deck.delete("workspace.id = ?1", longId);
-
-            // Delete AnkiTemplates and AnkiFields (referencing AnkiModel)
-            br.com.powercards.model.AnkiTemplate.delete("model.workspace.id = ?1", longId);
-            br.com.powercards.model.AnkiField.delete("model.workspace.id = ?1", longId);
-
-            // Delete AnkiModels (referencing Workspace)
-            br.com.powercards.model.AnkiModel.delete("workspace.id = ?1", longId);
-
-            // Delete Tags (referencing Workspace)
-            br.com.powercards.model.Tag.delete("workspace.id = ?1", longId);
+            // Hidden and rejected from now on; rows and media objects are purged
+            // in the background once this transaction commits
+            deletionService.requestDeletion(w);
+        } catch (NumberFormatException e) {
+            throw new NotFoundException();
+        }
+    }
 
-            // Finally, delete the Workspace
-            w.delete();
+    @GET
+    @Path("/{id}/deletion")
+    public br.com.powercards.dto.WorkspaceDeletionResponse deletion(@PathParam("id") String id) {
+        try {
+            Long longId = Long.parseLong(id);
+            String keycloakId = identity.getPrincipal().getName();
+            Workspace w = Workspace
+                    .find("id = ?1 and user.keycloakId = ?2 and deletedAt is not null", longId, keycloakId)
+                    .firstResult();
+            if (w == null) {
+                throw new NotFoundException();
+            }
+            return new br.com.powercards.dto.WorkspaceDeletionResponse(
+                    w.id.toString(),
+                    w.purgedAt != null ? "COMPLETED" : "IN_PROGRESS",
+                    w.purgedRows != null ? w.purgedRows : 0L,
+                    w.purgedObjects != null ? w.purgedObjects : 0L,
+                    w.deletedAt,
+                    w.purgedAt);
         } catch (NumberFormatException e) {
             throw new NotFoundException();
         }
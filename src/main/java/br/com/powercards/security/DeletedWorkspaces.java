@@ -0,0 +1,81 @@
+package br.com.powercards.security;
+
+import br.com.powercards.services.WorkspaceDeletionService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+
+/**
+ * Whether a workspace has been deleted, checked by {@link WorkspaceFilter} on
+ * every request. Deletion is never undone, so a deleted workspace is
+ * remembered until evicted by size; a live one is looked up again after
+ * {@code powercards.workspace-filter.live-ttl}, which bounds how long a
+ * deletion through another instance goes unnoticed here. Deletions through
+ * this instance are seen as soon as they commit.
+ */
+@ApplicationScoped
+public class DeletedWorkspaces {
+
+    @Inject
+    EntityManager entityManager;
+
+    @ConfigProperty(name = "powercards.workspace-filter.live-ttl", defaultValue = "PT10S")
+    Duration liveTtl;
+
+    @ConfigProperty(name = "powercards.workspace-filter.max-entries", defaultValue = "10000")
+    long maxEntries;
+
+    private Cache<Long, Boolean> deleted;
+
+    @PostConstruct
+    void init() {
+        deleted = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new Expiry<Long, Boolean>() {
+                    @Override
+                    public long expireAfterCreate(Long workspaceId, Boolean isDeleted, long currentTime) {
+                        return isDeleted ? Long.MAX_VALUE : liveTtl.toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long workspaceId, Boolean isDeleted, long currentTime,
+                            long currentDuration) {
+                        return expireAfterCreate(workspaceId, isDeleted, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long workspaceId, Boolean isDeleted, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * @throws RuntimeException when the workspace could not be looked up
+     */
+    public boolean isDeleted(long workspaceId) {
+        return deleted.get(workspaceId, this::load);
+    }
+
+    void onDeletionRequested(@Observes(during = TransactionPhase.AFTER_SUCCESS) WorkspaceDeletionService.Requested event) {
+        deleted.put(event.workspaceId(), true);
+    }
+
+    private boolean load(Long workspaceId) {
+        return entityManager.createQuery(
+                "select count(w) from Workspace w where w.id = :id and w.deletedAt is not null", Long.class)
+                .setParameter("id", workspaceId)
+                .getSingleResult() > 0;
+    }
+}
@@ -24,6 +24,9 @@ public class WorkspaceFilter implements ContainerRequestFilter {
     @Inject
     EntityManager entityManager;
 
+    @Inject
+    DeletedWorkspaces deletedWorkspaces;
+
     @Override
     public void filter(ContainerRequestContext requestContext) {
         String path = requestContext.getUriInfo().getPath();
@@ -38,16 +41,30 @@ public class WorkspaceFilter implements ContainerRequestFilter {
 
         if (workspaceId != null && !workspaceId.isBlank()) {
             workspaceContext.setWorkspaceId(workspaceId);
+            long id;
             try {
-                long id = Long.parseLong(workspaceId);
-                Session session = entityManager.unwrap(Session.class);
-                session.enableFilter("workspaceFilter").setParameter("workspaceId", id);
+                id = Long.parseLong(workspaceId);
             } catch (NumberFormatException e) {
                 requestContext.abortWith(Response.status(Response.Status.BAD_REQUEST)
                         .entity("Invalid X-Workspace-Id header format")
                         .build());
+                return;
+            }
+            try {
+                if (deletedWorkspaces.isDeleted(id)) {
+                    requestContext.abortWith(Response.status(Response.Status.GONE)
+                            .entity("Workspace has been deleted")
+                            .build());
+                    return;
+                }
+                Session session = entityManager.unwrap(Session.class);
+                session.enableFilter("workspaceFilter").setParameter("workspaceId", id);
             } catch (Exception e) {
+                // Without the filter the request would see every workspace's rows
                 LOG.error("Failed to enable workspace filter", e);
+                requestContext.abortWith(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                        .entity("Workspace could not be resolved")
+                        .build());
             }
         } else if (path.startsWith("/v1/")) {
             // Enforce workspace for API endpoints
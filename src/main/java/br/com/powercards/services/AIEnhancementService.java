@@ -20,6 +20,7 @@ public interface AIEnhancementService {
         2. Bold (<b>) the primary concept.
         3. Italicize (<i>) secondary context.
         4. Preserve all tags: <img>, <audio>, <video>, <source>.
+        5. Keep every placeholder such as [[m0]] exactly as it is; each stands for media or markup.
         
         # CONSTRAINTS
         - Fix grammar/punctuation only.
@@ -36,4 +37,13 @@ public interface AIEnhancementService {
         Your response must START with [ and END with ] with NO wrapper array.
     """)
     List<String> enhanceModel(@UserMessage List<String> contents);
+
+    /**
+     * Enhances many notes in one call; see {@link EnhancementPacking}.
+     *
+     * @param notes serialized pack of notes
+     * @return the model's raw answer
+     */
+    @SystemMessage(EnhancementPacking.SYSTEM_PROMPT)
+    String enhanceNotes(@UserMessage String notes);
 }
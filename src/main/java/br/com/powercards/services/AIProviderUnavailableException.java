@@ -0,0 +1,19 @@
+package br.com.powercards.services;
+
+/**
+ * An AI provider cannot serve a call right now: it answered with a server
+ * error, did not answer in time, or is shed locally because too many calls are
+ * waiting for it or its circuit breaker is open. Unlike a rejected key, trying
+ * again later can succeed. A rate limited key is reported by the
+ * {@link AIRateLimitedException} subclass.
+ */
+public class AIProviderUnavailableException extends RuntimeException {
+
+    public AIProviderUnavailableException(String message) {
+        super(message);
+    }
+
+    public AIProviderUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
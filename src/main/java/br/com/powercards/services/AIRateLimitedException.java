@@ -0,0 +1,25 @@
+package br.com.powercards.services;
+
+import java.time.Duration;
+
+/**
+ * An AI provider refused a call because the key it was made with is over its
+ * rate limit. The limit belongs to the user's key, not to the provider, so it
+ * does not count towards the provider's circuit breaker shared by all users.
+ */
+public class AIRateLimitedException extends AIProviderUnavailableException {
+
+    private final Duration retryAfter;
+
+    public AIRateLimitedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return how long the provider asked to wait, or null when it did not say
+     */
+    public Duration retryAfter() {
+        return retryAfter;
+    }
+}
@@ -6,7 +6,6 @@ import br.com.powercards.model.Deck;
 import br.com.powercards.model.Note;
 import com.anki4j.Anki4j;
 import jakarta.enterprise.context.RequestScoped;
-import jakarta.transaction.Transactional;
 import jakarta.ws.rs.InternalServerErrorException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,17 +30,35 @@ public class AnkiService {
             .compile("(?:src|img)\\s*=\\s*[\"']?([^\"'>\\s\\u001f]+)[\"']?");
     private static final java.util.regex.Pattern AUDIO_PATTERN = java.util.regex.Pattern
             .compile("\\[(sound|source):([^\\]\\u001f]+)\\]");
+    // Presigned upload names after the workspace and note prefix: <uuid>-<filename>
+    private static final java.util.regex.Pattern UPLOAD_NAME_PATTERN = java.util.regex.Pattern
+            .compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}-([^/]+)");
 
     @jakarta.inject.Inject
-    io.minio.MinioClient minioClient;
+    ObjectStorageGateway storage;
 
     @jakarta.inject.Inject
     br.com.powercards.security.WorkspaceContext workspaceContext;
 
-    @org.eclipse.microprofile.config.inject.ConfigProperty(name = "quarkus.minio.url")
-    String minioUrl;
+    @jakarta.inject.Inject
+    MediaDerivativeService derivatives;
+
+    @jakarta.inject.Inject
+    DuplicateDetector duplicateDetector;
+
+    private static final String BUCKET_NAME = ObjectStorageGateway.MEDIA_BUCKET;
+
+    // Note id -> file name -> media, filled by preloadMedia for the current request
+    private final Map<Long, Map<String, br.com.powercards.domain.entities.AnkiMedia>> preloadedMedia =
+            new java.util.HashMap<>();
+
+    @org.eclipse.microprofile.config.inject.ConfigProperty(name = "powercards.storage.presign-expiry",
+            defaultValue = "PT15M")
+    java.time.Duration presignExpiry;
 
-    private static final String BUCKET_NAME = "anki-media";
+    @org.eclipse.microprofile.config.inject.ConfigProperty(name = "powercards.storage.max-upload-size",
+            defaultValue = "52428800")
+    long maxUploadSize;
 
     private InputStream apkg;
 
@@ -50,14 +67,25 @@ public class AnkiService {
         this.apkg = apkg;
     }
 
-    @Transactional
     public br.com.powercards.dto.ImportResponse getDecks(boolean force) {
         Objects.requireNonNull(apkg, "Arquivo .apkg não foi carregado.");
 
         LOGGER.info("Iniciando leitura do arquivo .apkg...");
         try (Anki4j anki4j = Anki4j.read(apkg)) {
             LOGGER.info("Arquivo .apkg lido com sucesso. Iniciando persistência...");
-            return persistCollection(anki4j, force);
+            // Only the collection rows are written in the transaction; media is
+            // uploaded once it has committed, so no connection is held meanwhile
+            Map<Long, Note> noteMap = new java.util.HashMap<>();
+            br.com.powercards.dto.ImportResponse response = io.quarkus.narayana.jta.QuarkusTransaction.requiringNew()
+                    .call(() -> persistCollection(anki4j, force, noteMap));
+
+            // 5. export midia to minio
+            try {
+                processMedia(anki4j, noteMap);
+            } catch (Exception e) {
+                LOGGER.warn("Erro ao processar mídias. O import continuará sem mídias: {}", e.getMessage());
+            }
+            return response;
         } catch (Exception e) {
             LOGGER.warn("Falha ao processar arquivo Anki: {}", e.getMessage());
             throw new InternalServerErrorException(e);
@@ -67,7 +95,8 @@ public class AnkiService {
     @jakarta.inject.Inject
     jakarta.persistence.EntityManager entityManager;
 
-    private br.com.powercards.dto.ImportResponse persistCollection(Anki4j anki4j, boolean force) {
+    private br.com.powercards.dto.ImportResponse persistCollection(Anki4j anki4j, boolean force,
+            Map<Long, Note> noteMap) {
         LOGGER.info("Persistindo coleção Anki no banco de dados...");
 
         br.com.powercards.model.Workspace currentWorkspace = workspaceContext.getWorkspace();
@@ -127,7 +156,6 @@ public class AnkiService {
         LOGGER.info("Persistidos {} decks.", deckMap.size());
 
         // 3. Persistir Notes
-        Map<Long, Note> noteMap = new java.util.HashMap<>();
         for (com.anki4j.model.Note n : anki4j.getNotes()) {
             Note note = Note.find("guid", n.getGuid()).firstResult();
 
@@ -256,17 +284,14 @@ public class AnkiService {
         }
         LOGGER.info("Processados {} cartões.", processedCards);
 
-        // Ensure all notes are flushed to the database so their IDs are available for
-        // media processing
-        Note.getEntityManager().flush();
+        // Checksums are derived on flush; duplicates may be within the package or already in the workspace
+        entityManager.flush();
+        int duplicateNotes = duplicateDetector.duplicatesOf(noteMap.values()).size();
+        if (duplicateNotes > 0) {
+            LOGGER.info("{} notas importadas têm duplicatas.", duplicateNotes);
+        }
 
         LOGGER.info("Persistência concluída.");
-        // 5. export midia to minio
-        try {
-            processMedia(anki4j, noteMap);
-        } catch (Exception e) {
-            LOGGER.warn("Erro ao processar mídias. O import continuará sem mídias: {}", e.getMessage());
-        }
 
         List<br.com.powercards.dto.DeckResponse> deckResponses = anki4j.getDecks().stream()
                 .map(d -> deckMap.get(d.getId()))
@@ -278,19 +303,16 @@ public class AnkiService {
         String status = (skippedNotes > 0) ? (importedNotes > 0 || updatedNotes > 0 ? "PARTIAL" : "SKIPPED")
                 : "SUCCESS";
 
-        return new br.com.powercards.dto.ImportResponse(deckResponses, importedNotes, updatedNotes, skippedNotes,
-                status);
+        br.com.powercards.dto.ImportResponse response = new br.com.powercards.dto.ImportResponse(deckResponses,
+                importedNotes, updatedNotes, skippedNotes, status);
+        response.duplicateNotes = duplicateNotes;
+        return response;
     }
 
     private void processMedia(Anki4j anki4j, Map<Long, Note> noteMap) {
         LOGGER.info("Escaneando {} notas em busca de mídias...", noteMap.size());
-        try {
-            createBucketIfNotExists();
-        } catch (Exception e) {
-            LOGGER.warn("Erro ao inicializar bucket MinIO. O import continuará sem mídias: {}", e.getMessage());
-            return;
-        }
-
+        Map<br.com.powercards.domain.entities.AnkiMediaId, br.com.powercards.domain.entities.AnkiMedia> uploaded =
+                new java.util.LinkedHashMap<>();
         for (Map.Entry<Long, Note> entry : noteMap.entrySet()) {
             Note note = entry.getValue();
 
@@ -298,67 +320,170 @@ public class AnkiService {
                 continue;
 
             String content = note.flds;
+            Long workspaceId = note.workspace != null ? note.workspace.id : currentWorkspaceId();
 
             // Scan for images (src= or img=)
             java.util.regex.Matcher imgMatcher = IMG_PATTERN.matcher(content);
             while (imgMatcher.find()) {
-                uploadMedia(anki4j, note.id, imgMatcher.group(1));
+                uploadMedia(anki4j, note.id, imgMatcher.group(1), workspaceId, uploaded);
             }
 
             // Scan for sounds ([sound:] or [source:])
             java.util.regex.Matcher audioMatcher = AUDIO_PATTERN.matcher(content);
             while (audioMatcher.find()) {
-                uploadMedia(anki4j, note.id, audioMatcher.group(2));
+                uploadMedia(anki4j, note.id, audioMatcher.group(2), workspaceId, uploaded);
             }
         }
-    }
 
-    public br.com.powercards.domain.entities.AnkiMedia uploadSingleFile(Long noteId, String filename, byte[] data,
-            String contentType) {
+        if (uploaded.isEmpty()) {
+            return;
+        }
+        // Register every uploaded file in one short transaction
         try {
-            createBucketIfNotExists();
+            io.quarkus.narayana.jta.QuarkusTransaction.requiringNew()
+                    .run(() -> uploaded.values().forEach(media -> media.persist()));
+            LOGGER.info("Registradas {} mídias.", uploaded.size());
+        } catch (RuntimeException e) {
+            LOGGER.warn("Falha ao registrar mídias importadas: {}", e.getMessage());
+            removeUnreferencedObjects(uploaded.values());
+            return;
+        }
+        derivatives.schedule(uploaded.values());
+    }
 
-            // Check if already exists
-            br.com.powercards.domain.entities.AnkiMediaId mediaId = new br.com.powercards.domain.entities.AnkiMediaId(
-                    noteId, filename);
-            br.com.powercards.domain.entities.AnkiMedia existing = br.com.powercards.domain.entities.AnkiMedia
-                    .findById(mediaId);
-            if (existing != null) {
-                return existing;
-            }
+    /**
+     * Streams a media file of known size to storage and registers it for the
+     * note, without holding the content in memory.
+     */
+    public br.com.powercards.domain.entities.AnkiMedia uploadSingleFile(Long noteId, String filename,
+            ObjectStorageGateway.Content content, long size, String contentType) {
+        // Check if already exists
+        br.com.powercards.domain.entities.AnkiMediaId mediaId = new br.com.powercards.domain.entities.AnkiMediaId(
+                noteId, filename);
+        br.com.powercards.domain.entities.AnkiMedia existing = br.com.powercards.domain.entities.AnkiMedia
+                .findById(mediaId);
+        if (existing != null) {
+            return existing;
+        }
 
+        // Upload first, outside any transaction, then commit only the metadata row
+        ObjectStorageGateway.StoredObject stored;
+        try {
             LOGGER.info("Uploading single media file: " + filename);
-
-            try (java.io.ByteArrayInputStream bais = new java.io.ByteArrayInputStream(data)) {
-                minioClient.putObject(
-                        io.minio.PutObjectArgs.builder()
-                                .bucket(BUCKET_NAME)
-                                .object(filename)
-                                .stream(bais, data.length, -1)
-                                .contentType(contentType)
-                                .build());
-            }
-
-            br.com.powercards.domain.entities.AnkiMedia media = new br.com.powercards.domain.entities.AnkiMedia(
-                    noteId,
-                    filename,
-                    minioUrl + "/" + BUCKET_NAME + "/" + filename);
-            media.persist();
-            LOGGER.info("Mídia enviada para o MinIO: {}", filename);
-            return media;
-
+            stored = storage.put(BUCKET_NAME, filename, content, size, contentType);
         } catch (Exception e) {
             LOGGER.error("Falha ao fazer upload da mídia {}: {}", filename, e.getMessage());
             throw new RuntimeException("Media upload failed", e);
         }
+
+        br.com.powercards.domain.entities.AnkiMedia media = new br.com.powercards.domain.entities.AnkiMedia(
+                noteId,
+                filename,
+                storage.url(BUCKET_NAME, filename));
+        media.workspaceId = mediaWorkspaceId(noteId);
+        media.contentType = stored.contentType();
+        media.checksum = stored.sha256();
+        try {
+            io.quarkus.narayana.jta.QuarkusTransaction.requiringNew().run(() -> media.persist());
+        } catch (RuntimeException e) {
+            LOGGER.error("Falha ao registrar a mídia {}: {}", filename, e.getMessage());
+            removeUnreferencedObjects(List.of(media));
+            throw new RuntimeException("Media upload failed", e);
+        }
+        LOGGER.info("Mídia enviada para o MinIO: {}", filename);
+        derivatives.schedule(List.of(media));
+        return media;
+    }
+
+    /**
+     * Issues a presigned POST form so the client uploads a note's media file
+     * straight to storage, within the upload size limit; {@link #confirmUpload} registers it afterwards. The
+     * object is named {@code <workspaceId>/<noteId>/<uuid>-<filename>}, so an
+     * upload can neither overwrite another workspace's object nor be confirmed
+     * for another note.
+     */
+    public br.com.powercards.dto.PresignedUploadResponse presignUpload(Long noteId, String filename) {
+        String objectName = uploadPrefix(noteId) + java.util.UUID.randomUUID() + "-" + filename;
+        ObjectStorageGateway.PresignedPost upload = storage.presignedPost(BUCKET_NAME, objectName, presignExpiry,
+                maxUploadSize);
+        return new br.com.powercards.dto.PresignedUploadResponse(upload.url(), upload.fields(), objectName,
+                java.time.Instant.now().plus(presignExpiry));
+    }
+
+    /**
+     * Registers a file uploaded through {@link #presignUpload} once it is in
+     * storage, under the file name it was presigned for. The checksum is not
+     * known here, as the content never passes through this service; its type is
+     * sniffed from the first bytes, as for uploads through this service, and the
+     * object is served with it from then on.
+     *
+     * @throws jakarta.ws.rs.BadRequestException if the object was not presigned
+     *                                            for this note
+     */
+    public br.com.powercards.domain.entities.AnkiMedia confirmUpload(Long noteId, String objectName) {
+        String prefix = uploadPrefix(noteId);
+        java.util.regex.Matcher upload = objectName.startsWith(prefix)
+                ? UPLOAD_NAME_PATTERN.matcher(objectName.substring(prefix.length()))
+                : null;
+        if (upload == null || !upload.matches()) {
+            throw new jakarta.ws.rs.BadRequestException("Unknown upload");
+        }
+        String filename = upload.group(1);
+        br.com.powercards.domain.entities.AnkiMedia existing = br.com.powercards.domain.entities.AnkiMedia
+                .findById(new br.com.powercards.domain.entities.AnkiMediaId(noteId, filename));
+        if (existing != null) {
+            return existing;
+        }
+
+        ObjectStorageGateway.ObjectInfo info = storage.stat(BUCKET_NAME, objectName);
+        if (info == null) {
+            throw new jakarta.ws.rs.BadRequestException("Upload not found");
+        }
+        br.com.powercards.domain.entities.AnkiMedia media = new br.com.powercards.domain.entities.AnkiMedia(
+                noteId,
+                filename,
+                storage.url(BUCKET_NAME, objectName));
+        if (info.size() > maxUploadSize) {
+            removeUnreferencedObjects(List.of(media));
+            throw new jakarta.ws.rs.BadRequestException("Upload too large");
+        }
+        media.workspaceId = mediaWorkspaceId(noteId);
+        // The upload form lets the client set no type, so storage only has its default
+        media.contentType = MediaTypes.detect(storage.header(BUCKET_NAME, objectName), null);
+        if (!media.contentType.equals(info.contentType())) {
+            storage.replaceContentType(BUCKET_NAME, objectName, info.etag(), media.contentType);
+        }
+        io.quarkus.narayana.jta.QuarkusTransaction.requiringNew().run(() -> media.persist());
+        derivatives.schedule(List.of(media));
+        return media;
     }
 
-    private void uploadMedia(Anki4j anki4j, Long noteId, String filename) {
+    /**
+     * Compensates uploads whose rows could not be committed. Imported objects
+     * are keyed by file name, shared by every note, so objects still referenced
+     * are kept.
+     */
+    private void removeUnreferencedObjects(java.util.Collection<br.com.powercards.domain.entities.AnkiMedia> media) {
+        for (br.com.powercards.domain.entities.AnkiMedia m : media) {
+            try {
+                String object = storage.objectName(BUCKET_NAME, m.minioUrl);
+                if (object != null && br.com.powercards.domain.entities.AnkiMedia.count("objectKey", object) == 0) {
+                    storage.remove(BUCKET_NAME, object);
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Falha ao remover mídia órfã {}: {}", m.id.originalName, e.getMessage());
+            }
+        }
+    }
+
+    private void uploadMedia(Anki4j anki4j, Long noteId, String filename, Long workspaceId,
+            Map<br.com.powercards.domain.entities.AnkiMediaId, br.com.powercards.domain.entities.AnkiMedia> uploaded) {
         try {
             // Check if already exists to avoid re-uploading (optional, but good practice)
             br.com.powercards.domain.entities.AnkiMediaId mediaId = new br.com.powercards.domain.entities.AnkiMediaId(
                     noteId, filename);
-            if (br.com.powercards.domain.entities.AnkiMedia.findById(mediaId) != null) {
+            if (uploaded.containsKey(mediaId)
+                    || br.com.powercards.domain.entities.AnkiMedia.findById(mediaId) != null) {
                 return;
             }
 
@@ -377,22 +502,19 @@ public class AnkiService {
                 return;
             }
 
-            try (java.io.ByteArrayInputStream bais = new java.io.ByteArrayInputStream(data)) {
-                minioClient.putObject(
-                        io.minio.PutObjectArgs.builder()
-                                .bucket(BUCKET_NAME)
-                                .object(filename) // Using filename as object key. Could be problematic if duplicates
-                                                  // across decks, but standard for Anki.
-                                .stream(bais, data.length, -1)
-                                .contentType("application/octet-stream")
-                                .build());
-            }
+            // Using filename as object key. Could be problematic if duplicates
+            // across decks, but standard for Anki.
+            ObjectStorageGateway.StoredObject stored = storage.put(BUCKET_NAME, filename,
+                    () -> new java.io.ByteArrayInputStream(data), data.length, "application/octet-stream");
 
             br.com.powercards.domain.entities.AnkiMedia media = new br.com.powercards.domain.entities.AnkiMedia(
                     noteId,
                     filename,
-                    minioUrl + "/" + BUCKET_NAME + "/" + filename);
-            media.persist();
+                    storage.url(BUCKET_NAME, filename));
+            media.workspaceId = workspaceId;
+            media.contentType = stored.contentType();
+            media.checksum = stored.sha256();
+            uploaded.put(mediaId, media);
             LOGGER.info("Mídia enviada para o MinIO: {}", filename);
 
         } catch (Exception e) {
@@ -402,6 +524,15 @@ public class AnkiService {
     }
 
     public String replaceMediaWithUrls(Long noteId, String content) {
+        return replaceMediaWithUrls(noteId, content, false);
+    }
+
+    /**
+     * Replaces media references with URLs. Images point to their display
+     * variant, or to their thumbnail when {@code thumbnails} is set, falling
+     * back to the original while no variant exists.
+     */
+    public String replaceMediaWithUrls(Long noteId, String content, boolean thumbnails) {
         if (content == null || content.isBlank()) {
             return content;
         }
@@ -414,7 +545,7 @@ public class AnkiService {
         int lastEndImg = 0;
         while (imgMatcher.find()) {
             String filename = imgMatcher.group(1);
-            String url = getMediaUrl(noteId, filename);
+            String url = getMediaUrl(noteId, filename, thumbnails ? Variant.THUMBNAIL : Variant.DISPLAY);
             sbImg.append(result, lastEndImg, imgMatcher.start());
             if (url != null) {
                 // Return src="url" even if matched from img=filename
@@ -435,7 +566,7 @@ public class AnkiService {
         int lastEndAudio = 0;
         while (audioMatcher.find()) {
             String filename = audioMatcher.group(2);
-            String url = getMediaUrl(noteId, filename);
+            String url = getMediaUrl(noteId, filename, Variant.ORIGINAL);
             sbAudio.append(result, lastEndAudio, audioMatcher.start());
             if (url != null) {
                 sbAudio.append("<audio controls src=\"").append(url).append("\"></audio>");
@@ -452,47 +583,92 @@ public class AnkiService {
         return result;
     }
 
-    private String getMediaUrl(Long noteId, String filename) {
+    /**
+     * Loads the media of a page of notes with one query, so
+     * {@link #replaceMediaWithUrls} does no lookup per reference.
+     */
+    public void preloadMedia(java.util.Collection<Long> noteIds) {
+        List<Long> missing = noteIds.stream()
+                .filter(id -> id != null && !preloadedMedia.containsKey(id))
+                .distinct()
+                .toList();
+        if (missing.isEmpty()) {
+            return;
+        }
+        missing.forEach(id -> preloadedMedia.put(id, new java.util.HashMap<>()));
+        List<br.com.powercards.domain.entities.AnkiMedia> media = br.com.powercards.domain.entities.AnkiMedia
+                .list("id.noteId in ?1", missing);
+        for (br.com.powercards.domain.entities.AnkiMedia m : media) {
+            preloadedMedia.get(m.id.noteId).put(m.id.originalName, m);
+        }
+    }
+
+    private enum Variant {
+        ORIGINAL, DISPLAY, THUMBNAIL
+    }
+
+    private String getMediaUrl(Long noteId, String filename, Variant variant) {
         if (filename == null || filename.isBlank())
             return null;
-        try {
-            br.com.powercards.domain.entities.AnkiMediaId mediaId = new br.com.powercards.domain.entities.AnkiMediaId(
-                    noteId, filename);
-            br.com.powercards.domain.entities.AnkiMedia media = br.com.powercards.domain.entities.AnkiMedia
-                    .findById(mediaId);
-            return (media != null) ? media.minioUrl : null;
-        } catch (Exception e) {
+        br.com.powercards.domain.entities.AnkiMedia media;
+        Map<String, br.com.powercards.domain.entities.AnkiMedia> preloaded = preloadedMedia.get(noteId);
+        if (preloaded != null) {
+            media = preloaded.get(filename);
+        } else {
+            try {
+                media = br.com.powercards.domain.entities.AnkiMedia
+                        .findById(new br.com.powercards.domain.entities.AnkiMediaId(noteId, filename));
+            } catch (Exception e) {
+                return null;
+            }
+        }
+        if (media == null) {
             return null;
         }
+        String url = switch (variant) {
+            case ORIGINAL -> media.minioUrl;
+            case DISPLAY -> media.displayUrl;
+            case THUMBNAIL -> media.thumbnailUrl != null ? media.thumbnailUrl : media.displayUrl;
+        };
+        return resolveUrl(url != null ? url : media.minioUrl);
     }
 
-    private void createBucketIfNotExists() {
-        try {
-            boolean found = minioClient.bucketExists(io.minio.BucketExistsArgs.builder().bucket(BUCKET_NAME).build());
-            if (!found) {
-                LOGGER.info("Criando bucket de mídias: {}", BUCKET_NAME);
-                minioClient.makeBucket(io.minio.MakeBucketArgs.builder().bucket(BUCKET_NAME).build());
-
-                // Set public read-only policy
-                String policy = "{\n" +
-                        "    \"Version\": \"2012-10-17\",\n" +
-                        "    \"Statement\": [\n" +
-                        "        {\n" +
-                        "            \"Effect\": \"Allow\",\n" +
-                        "            \"Principal\": \"*\",\n" +
-                        "            \"Action\": [\"s3:GetObject\"],\n" +
-                        "            \"Resource\": [\"arn:aws:s3:::" + BUCKET_NAME + "/*\"]\n" +
-                        "        }\n" +
-                        "    ]\n" +
-                        "}";
-                minioClient.setBucketPolicy(
-                        io.minio.SetBucketPolicyArgs.builder().bucket(BUCKET_NAME).config(policy).build());
-                LOGGER.info("Política de acesso público (read-only) aplicada ao bucket: {}", BUCKET_NAME);
-            }
-        } catch (Exception e) {
-            LOGGER.warn("Erro ao inicializar bucket MinIO: {}", e.getMessage());
-            throw new RuntimeException("Could not initialize MinIO bucket", e);
+    /**
+     * URL a client can load the media from, the same one note reads render.
+     */
+    public String mediaUrl(br.com.powercards.domain.entities.AnkiMedia media) {
+        return resolveUrl(media.minioUrl);
+    }
+
+    // Media in a private bucket is served through a (cached) presigned URL
+    private String resolveUrl(String url) {
+        String object = storage.objectName(BUCKET_NAME, url);
+        if (object == null || !storage.isPrivate(BUCKET_NAME)) {
+            return url;
+        }
+        return storage.presignedGet(BUCKET_NAME, object);
+    }
+
+    private String uploadPrefix(Long noteId) {
+        return mediaWorkspaceId(noteId) + "/" + noteId + "/";
+    }
+
+    // The note's workspace, so media written outside a request context gets one too
+    private Long mediaWorkspaceId(Long noteId) {
+        Long workspaceId = currentWorkspaceId();
+        if (workspaceId != null) {
+            return workspaceId;
         }
+        return entityManager.createQuery("select n.workspace.id from Note n where n.id = :id", Long.class)
+                .setParameter("id", noteId)
+                .getResultStream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    private Long currentWorkspaceId() {
+        br.com.powercards.model.Workspace workspace = workspaceContext.getWorkspace();
+        return workspace != null ? workspace.id : null;
     }
 
     public java.io.File exportDecks(List<Long> deckIds) {
@@ -669,13 +845,7 @@ public class AnkiService {
     private void addMediaSafe(Long noteId, String filename, Anki4j ankiExport) {
         // Fetch from MinIO
         try {
-            InputStream stream = minioClient.getObject(
-                    io.minio.GetObjectArgs.builder()
-                            .bucket(BUCKET_NAME)
-                            .object(filename)
-                            .build());
-            byte[] data = stream.readAllBytes();
-            stream.close();
+            byte[] data = storage.get(BUCKET_NAME, filename);
 
             // Assume addMedia exists
             ankiExport.addMedia(filename, data);
@@ -0,0 +1,314 @@
+package br.com.powercards.services;
+
+import br.com.powercards.dto.EnhancementFailure;
+import br.com.powercards.dto.EnhancementJobResponse;
+import br.com.powercards.model.Note;
+import br.com.powercards.model.NoteDraft;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.arc.Arc;
+import io.quarkus.arc.ManagedContext;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.context.ManagedExecutor;
+import org.eclipse.microprofile.context.ThreadContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs AI enhancement of many notes as a background job.
+ * <p>
+ * Notes are enhanced by a dedicated pool whose size is the number of
+ * concurrent calls made to the model backend, shared by all jobs, several
+ * notes per call (see {@link EnhancementPacking}). No transaction is held
+ * during a call: notes are read in one short transaction and each draft is
+ * written in its own, so a failure only affects its note. Notes whose fields
+ * were enhanced before are served from the {@link EnhancementCache} without a
+ * call. Job progress is kept in memory for
+ * {@code powercards.ai.batch.retention} once the job finishes.
+ */
+@ApplicationScoped
+public class BatchEnhancementService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchEnhancementService.class);
+
+    private static final String SEPARATOR = "\u001f";
+
+    // Provider of the server model, as named by the enhancement cache
+    private static final String PROVIDER = "ollama";
+
+    // Failures reported per job; the count is always exact
+    private static final int MAX_REPORTED_FAILURES = 100;
+
+    @Inject
+    AIEnhancementService aiEnhancementService;
+
+    @Inject
+    EnhancementCache enhancementCache;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "quarkus.langchain4j.ollama.generalista.chat-model.model-id", defaultValue = "default")
+    String model;
+
+    @ConfigProperty(name = "powercards.ai.batch.concurrency", defaultValue = "4")
+    int concurrency;
+
+    @ConfigProperty(name = "powercards.ai.batch.queue-size", defaultValue = "10000")
+    int queueSize;
+
+    @ConfigProperty(name = "powercards.ai.batch.retention", defaultValue = "PT1H")
+    Duration retention;
+
+    // Notes sent in one call; 1 disables packing
+    @ConfigProperty(name = "powercards.ai.batch.pack-max-notes", defaultValue = "25")
+    int packMaxNotes;
+
+    // Estimated input tokens of one call, leaving the rest of the context to the answer
+    @ConfigProperty(name = "powercards.ai.batch.pack-token-budget", defaultValue = "2000")
+    int packTokenBudget;
+
+    private ManagedExecutor executor;
+
+    private Cache<String, Job> jobs;
+
+    @PostConstruct
+    void init() {
+        executor = ManagedExecutor.builder()
+                .maxAsync(concurrency)
+                .maxQueued(queueSize)
+                .propagated(ThreadContext.NONE)
+                .cleared(ThreadContext.ALL_REMAINING)
+                .build();
+        jobs = Caffeine.newBuilder()
+                .expireAfterWrite(retention)
+                .build();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Starts enhancing the given notes. The caller checks they belong to the
+     * workspace; requested notes it did not find are given as {@code missing}
+     * and reported as failed.
+     */
+    public EnhancementJobResponse submit(Long workspaceId, Collection<Long> noteIds, Collection<Long> missing) {
+        Job job = new Job(UUID.randomUUID().toString(), workspaceId, noteIds.size() + missing.size());
+        jobs.put(job.id, job);
+        missing.forEach(noteId -> job.fail(noteId, "Note not found"));
+        // One task per group of notes: a group is packed into as few calls as its size allows
+        List<Long> ids = new ArrayList<>(noteIds);
+        for (int i = 0; i < ids.size(); i += packMaxNotes) {
+            List<Long> group = ids.subList(i, Math.min(ids.size(), i + packMaxNotes));
+            try {
+                executor.runAsync(() -> enhance(job, group));
+            } catch (RejectedExecutionException e) {
+                group.forEach(noteId -> job.fail(noteId, "Enhancement queue is full"));
+            }
+        }
+        LOGGER.info("Enhancement job {} started for {} notes", job.id, job.total);
+        finished(job);
+        return job.toResponse();
+    }
+
+    /**
+     * @return the job, or {@code null} if it is unknown, expired or belongs to
+     *         another workspace
+     */
+    public EnhancementJobResponse find(Long workspaceId, String jobId) {
+        Job job = jobs.getIfPresent(jobId);
+        return job != null && job.workspaceId.equals(workspaceId) ? job.toResponse() : null;
+    }
+
+    void enhance(Job job, List<Long> noteIds) {
+        // The AI service may be request scoped; workers have no request of their own
+        ManagedContext requestContext = Arc.container().requestContext();
+        requestContext.activate();
+        try {
+            Map<Long, String> sources = QuarkusTransaction.requiringNew().call(() -> sources(noteIds));
+            List<EnhancementPacking.Item> items = new ArrayList<>();
+            for (Long noteId : noteIds) {
+                String source = sources.get(noteId);
+                if (source == null) {
+                    job.fail(noteId, "Note not found");
+                    continue;
+                }
+                List<String> fields = Arrays.asList(source.split(SEPARATOR, -1));
+                List<String> cached = enhancementCache.get(PROVIDER, model, fields);
+                if (cached != null && cached.size() == fields.size()) {
+                    save(job, noteId, cached);
+                } else {
+                    items.add(new EnhancementPacking.Item(noteId.toString(), fields));
+                }
+            }
+            for (List<EnhancementPacking.Item> pack : EnhancementPacking.pack(items, packTokenBudget, packMaxNotes)) {
+                enhancePack(job, pack);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Failed to enhance notes of job {}: {}", job.id, e.getMessage());
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            noteIds.stream().filter(job::pending).forEach(noteId -> job.fail(noteId, error));
+        } finally {
+            requestContext.terminate();
+            finished(job);
+        }
+    }
+
+    private void enhancePack(Job job, List<EnhancementPacking.Item> pack) {
+        Timer.Sample sample = Timer.start(registry);
+        EnhancementPacking.Outcome outcome = EnhancementPacking.enhance(pack,
+                aiEnhancementService::enhanceNotes, aiEnhancementService::enhanceModel);
+        sample.stop(registry.timer("powercards.ai.batch.enhance",
+                "outcome", outcome.failures().isEmpty() ? "success" : outcome.enhanced().isEmpty() ? "error" : "partial"));
+        registry.counter("powercards.ai.batch.fallbacks").increment(outcome.fallbacks());
+
+        outcome.failures().forEach((id, error) -> job.fail(Long.valueOf(id), error));
+        for (EnhancementPacking.Item item : pack) {
+            List<String> fields = outcome.enhanced().get(item.id());
+            if (fields != null) {
+                enhancementCache.put(PROVIDER, model, item.fields(), fields);
+                save(job, Long.valueOf(item.id()), fields);
+            }
+        }
+    }
+
+    private void save(Job job, Long noteId, List<String> fields) {
+        try {
+            // Each draft is committed on its own
+            if (QuarkusTransaction.requiringNew().call(() -> saveDraft(noteId, fields))) {
+                job.succeed(noteId);
+            } else {
+                job.fail(noteId, "Note not found");
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Failed to save the enhancement of note {} of job {}: {}", noteId, job.id, e.getMessage());
+            job.fail(noteId, "Could not save the draft");
+        }
+    }
+
+    // Fields to enhance by note id: the draft's when there is one, as it holds the latest edits
+    private static Map<Long, String> sources(List<Long> noteIds) {
+        Map<Long, String> sources = new HashMap<>();
+        Note.<Note>list("id in ?1", noteIds).forEach(note -> sources.put(note.id, note.flds));
+        NoteDraft.<NoteDraft>list("note.id in ?1", noteIds).forEach(draft -> {
+            if (draft.flds != null) {
+                sources.put(draft.note.id, draft.flds);
+            }
+        });
+        return sources;
+    }
+
+    private static boolean saveDraft(Long noteId, List<String> fields) {
+        Note note = Note.findById(noteId);
+        if (note == null) {
+            return false;
+        }
+        NoteDraft draft = NoteDraft.find("note.id", noteId).firstResult();
+        if (draft == null) {
+            draft = new NoteDraft();
+            draft.note = note;
+            draft.tags = note.tags;
+        }
+        draft.flds = String.join(SEPARATOR, fields);
+        draft.persist();
+        return true;
+    }
+
+    private void finished(Job job) {
+        if (job.isFinished() && job.reported.compareAndSet(false, true)) {
+            // Retention counts from the end of the job
+            jobs.put(job.id, job);
+            LOGGER.info("Enhancement job {} finished: {} succeeded, {} failed", job.id, job.succeeded.get(),
+                    job.failed.get());
+        }
+    }
+
+    static final class Job {
+
+        final String id;
+        final Long workspaceId;
+        final int total;
+        final Instant createdAt = Instant.now();
+        final AtomicInteger succeeded = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final Queue<EnhancementFailure> failures = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean reported = new AtomicBoolean();
+        volatile Instant finishedAt;
+
+        Job(String id, Long workspaceId, int total) {
+            this.id = id;
+            this.workspaceId = workspaceId;
+            this.total = total;
+            if (total == 0) {
+                finishedAt = createdAt;
+            }
+        }
+
+        // Notes processed, so that a note is counted once even when a failure follows a result
+        private final Set<Long> processed = ConcurrentHashMap.newKeySet();
+
+        boolean pending(Long noteId) {
+            return !processed.contains(noteId);
+        }
+
+        void succeed(Long noteId) {
+            if (processed.add(noteId)) {
+                done(succeeded.incrementAndGet() + failed.get());
+            }
+        }
+
+        void fail(Long noteId, String error) {
+            if (!processed.add(noteId)) {
+                return;
+            }
+            if (failed.get() < MAX_REPORTED_FAILURES) {
+                failures.add(new EnhancementFailure(noteId, error));
+            }
+            done(failed.incrementAndGet() + succeeded.get());
+        }
+
+        private void done(int count) {
+            if (count >= total && finishedAt == null) {
+                finishedAt = Instant.now();
+            }
+        }
+
+        boolean isFinished() {
+            return finishedAt != null;
+        }
+
+        EnhancementJobResponse toResponse() {
+            int failedCount = failed.get();
+            String status = !isFinished() ? "RUNNING" : failedCount > 0 ? "COMPLETED_WITH_ERRORS" : "COMPLETED";
+            return new EnhancementJobResponse(id, status, total, succeeded.get(), failedCount,
+                    new ArrayList<>(failures), createdAt, finishedAt);
+        }
+    }
+}
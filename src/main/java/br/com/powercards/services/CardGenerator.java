@@ -0,0 +1,200 @@
+package br.com.powercards.services;
+
+import br.com.powercards.model.Card;
+import br.com.powercards.model.Deck;
+import br.com.powercards.model.Note;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.query.NativeQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedSet;
+
+/**
+ * Keeps the cards of notes in line with their model's templates.
+ * <p>
+ * Existing cards are read with one query per chunk of notes, and missing
+ * cards are inserted with one {@code insert ... select} per ordinal and deck
+ * rather than one insert per card. Cards whose template is gone are deleted,
+ * as are cards of templates that now render empty, unless they were already
+ * studied: review history is never dropped because a field was cleared.
+ * Every card gets a deck: cards of notes that have none yet and were given
+ * no default deck go to their workspace's "Default" deck, created on first
+ * use as in Anki. Must be called inside a transaction, after the notes are
+ * flushed.
+ */
+@ApplicationScoped
+public class CardGenerator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CardGenerator.class);
+
+    // Keeps "in" lists well below database parameter limits
+    private static final int CHUNK_SIZE = 1000;
+
+    // Name of Anki's deck for cards that were given no other
+    static final String DEFAULT_DECK = "Default";
+
+    @Inject
+    EntityManager entityManager;
+
+    @Inject
+    CardRenderer renderer;
+
+    /**
+     * @param defaultDeck deck of the cards of notes that have none yet; when
+     *                    {@code null}, their workspace's default deck
+     */
+    public void generate(List<Note> notes, Deck defaultDeck) {
+        if (notes.isEmpty()) {
+            return;
+        }
+        Map<Long, SortedSet<Integer>> wanted = renderer.cardOrdinals(notes);
+        Map<Long, Note> byId = new HashMap<>();
+        notes.forEach(n -> byId.put(n.id, n));
+
+        // Existing cards: note id -> ordinal -> card row
+        Map<Long, Map<Integer, Object[]>> existing = new HashMap<>();
+        for (List<Long> chunk : chunks(new ArrayList<>(byId.keySet()))) {
+            entityManager.createQuery(
+                    "select c.note.id, c.ord, c.id, c.deck.id, c.reps from Card c where c.note.id in :ids",
+                    Object[].class)
+                    .setParameter("ids", chunk)
+                    .getResultList()
+                    .forEach(row -> existing.computeIfAbsent((Long) row[0], k -> new HashMap<>())
+                            .put(row[1] != null ? (Integer) row[1] : 0, row));
+        }
+
+        // (ordinal, deck id) -> notes missing that card
+        Map<List<Object>, List<Long>> inserts = new LinkedHashMap<>();
+        // Workspace id -> its default deck id, resolved once per call
+        Map<Long, Long> workspaceDecks = new HashMap<>();
+        List<Long> deletes = new ArrayList<>();
+        for (Note note : notes) {
+            // Without a model there is nothing to derive cards from: leave them as they are
+            if (note.model == null) {
+                continue;
+            }
+            Map<Integer, Object[]> cards = existing.getOrDefault(note.id, Map.of());
+            SortedSet<Integer> ords = wanted.get(note.id);
+            Long deckId = cards.values().stream()
+                    .map(row -> (Long) row[3])
+                    .filter(Objects::nonNull)
+                    .findFirst()
+                    .orElse(defaultDeck != null ? defaultDeck.id : null);
+            for (Integer ord : ords) {
+                if (!cards.containsKey(ord)) {
+                    if (deckId == null && note.workspace != null) {
+                        deckId = workspaceDecks.computeIfAbsent(note.workspace.id, id -> workspaceDeck(note));
+                    }
+                    inserts.computeIfAbsent(Arrays.asList(ord, deckId), k -> new ArrayList<>())
+                            .add(note.id);
+                }
+            }
+            for (Map.Entry<Integer, Object[]> card : cards.entrySet()) {
+                Integer reps = (Integer) card.getValue()[4];
+                boolean orphan = isOrphan(note, card.getKey());
+                boolean unstudied = reps == null || reps == 0;
+                if (!ords.contains(card.getKey()) && (orphan || unstudied)) {
+                    deletes.add((Long) card.getValue()[2]);
+                }
+            }
+        }
+
+        for (List<Long> chunk : chunks(deletes)) {
+            entityManager.createQuery("delete from Card c where c.id in :ids")
+                    .setParameter("ids", chunk)
+                    .executeUpdate();
+        }
+        long inserted = 0;
+        long now = System.currentTimeMillis() / 1000;
+        for (Map.Entry<List<Object>, List<Long>> insert : inserts.entrySet()) {
+            for (List<Long> chunk : chunks(insert.getValue())) {
+                inserted += insertCards((Integer) insert.getKey().get(0), (Long) insert.getKey().get(1), chunk,
+                        now);
+            }
+        }
+        if (inserted > 0 || !deletes.isEmpty()) {
+            LOGGER.debug("Generated {} cards and removed {} for {} notes", inserted, deletes.size(), notes.size());
+        }
+    }
+
+    /**
+     * Id of the default deck of the note's workspace, created when missing.
+     */
+    private Long workspaceDeck(Note note) {
+        List<Long> decks = entityManager.createQuery(
+                "select d.id from Deck d where d.workspace.id = :ws and d.name = :name order by d.id", Long.class)
+                .setParameter("ws", note.workspace.id)
+                .setParameter("name", DEFAULT_DECK)
+                .setMaxResults(1)
+                .getResultList();
+        if (!decks.isEmpty()) {
+            return decks.get(0);
+        }
+        Deck deck = new Deck();
+        deck.name = DEFAULT_DECK;
+        deck.workspace = note.workspace;
+        deck.persist();
+        // The cards are inserted with native statements, which must see the deck
+        entityManager.flush();
+        return deck.id;
+    }
+
+    /**
+     * Whether a card of the note with this ordinal has no template. The cloze
+     * numbers of a cloze model are open ended, so none of its cards is.
+     */
+    private boolean isOrphan(Note note, int ord) {
+        if (renderer.compiled(note.model).cloze) {
+            return ord < 0;
+        }
+        return note.model.templates.stream().noneMatch(t -> (t.ord != null ? t.ord : 0) == ord);
+    }
+
+    /**
+     * Inserts one new card per note with a single statement. Ids come from the
+     * card sequence; new cards are due in note order, like Anki's new queue.
+     */
+    private int insertCards(Integer ord, Long deckId, List<Long> noteIds, long now) {
+        Dialect dialect = entityManager.unwrap(Session.class).getSessionFactory()
+                .unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        String nextId = dialect.getSequenceSupport().getSelectSequenceNextValString("cards_seq");
+        String workspace = deckId != null
+                ? "(select d.workspace_id from decks d where d.id = :did)"
+                : "n.workspace_id";
+        String sql = "insert into cards (id, nid, did, workspace_id, ord, mod, usn, type, queue, due, ivl, factor,"
+                + " reps, lapses, \"left\", odue, odid, flags, data)"
+                + " select " + nextId + ", n.id, :did, " + workspace + ", :ord, :mod, -1, 0, 0, n.id, 0, 0,"
+                + " 0, 0, 0, 0, 0, 0, ''"
+                + " from notes n where n.id in (:ids)";
+        return entityManager.createNativeQuery(sql)
+                .unwrap(NativeQuery.class)
+                // Only the cards table changes: keep the other second-level cache regions
+                .addSynchronizedEntityClass(Card.class)
+                .setParameter("did", deckId, Long.class)
+                .setParameter("ord", ord)
+                .setParameter("mod", now)
+                .setParameter("ids", noteIds)
+                .executeUpdate();
+    }
+
+    private static <T> List<List<T>> chunks(List<T> items) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < items.size(); i += CHUNK_SIZE) {
+            chunks.add(items.subList(i, Math.min(items.size(), i + CHUNK_SIZE)));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,218 @@
+package br.com.powercards.services;
+
+import br.com.powercards.model.AnkiField;
+import br.com.powercards.model.AnkiModel;
+import br.com.powercards.model.AnkiTemplate;
+import br.com.powercards.model.Card;
+import br.com.powercards.model.Note;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Renders cards from their model's templates.
+ * <p>
+ * Templates are compiled once per model version and cached. A model has no
+ * version column, so its version is its content: a cached entry is checked
+ * against the model's name, CSS, field names and template sources once per
+ * batch, and recompiled when any of them changed.
+ */
+@ApplicationScoped
+public class CardRenderer {
+
+    /**
+     * Question and answer HTML of a card, with the model's CSS.
+     */
+    public record Rendered(String question, String answer, String css) {
+    }
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "powercards.templates.cache-size", defaultValue = "1000")
+    long cacheSize;
+
+    private Cache<Long, CompiledModel> compiled;
+
+    @PostConstruct
+    void init() {
+        compiled = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .recordStats()
+                .build();
+        registry.gauge("powercards.templates.cache.hit-rate", compiled, cache -> cache.stats().hitRate());
+    }
+
+    /**
+     * @return the rendered card, or {@code null} when its note, model or
+     *         template is missing
+     */
+    public Rendered render(Card card) {
+        return renderAll(List.of(card)).get(0);
+    }
+
+    /**
+     * Renders cards in order, looking up each distinct model once.
+     *
+     * @return one entry per card, {@code null} where {@link #render} would be
+     */
+    public List<Rendered> renderAll(List<Card> cards) {
+        Map<Long, CompiledModel> models = new HashMap<>();
+        List<Rendered> rendered = new ArrayList<>(cards.size());
+        for (Card card : cards) {
+            Note note = card.note;
+            if (note == null || note.model == null) {
+                rendered.add(null);
+                continue;
+            }
+            rendered.add(render(card, models.computeIfAbsent(note.model.id, id -> compiled(note.model))));
+        }
+        return rendered;
+    }
+
+    /**
+     * Ordinals of the cards each note should have, by note id. A cloze note
+     * gets one card per cloze number; a standard note gets one card per
+     * template whose question renders differently than with every field empty,
+     * which is Anki's rule. Notes without a model get none.
+     */
+    public Map<Long, SortedSet<Integer>> cardOrdinals(List<Note> notes) {
+        Map<Long, CompiledModel> models = new HashMap<>();
+        Map<Long, SortedSet<Integer>> ordinals = new HashMap<>();
+        for (Note note : notes) {
+            SortedSet<Integer> ords = new TreeSet<>();
+            ordinals.put(note.id, ords);
+            if (note.model == null) {
+                continue;
+            }
+            CompiledModel model = models.computeIfAbsent(note.model.id, id -> compiled(note.model));
+            String[] fields = note.flds != null ? note.flds.split("\u001f", -1) : new String[0];
+            if (model.cloze) {
+                Set<Integer> numbers = new TreeSet<>();
+                for (String field : fields) {
+                    CardTemplate.clozeNumbers(field, numbers);
+                }
+                numbers.forEach(n -> ords.add(n - 1));
+                continue;
+            }
+            for (Map.Entry<Integer, CompiledTemplate> entry : model.byOrd.entrySet()) {
+                CompiledTemplate template = entry.getValue();
+                String question = template.question.render(new CardTemplate.Context(fields, null, null, null, null,
+                        0, false, null));
+                if (!question.equals(template.emptyQuestion)) {
+                    ords.add(entry.getKey());
+                }
+            }
+        }
+        return ordinals;
+    }
+
+    private Rendered render(Card card, CompiledModel model) {
+        Note note = card.note;
+        int ord = card.ord != null ? card.ord : 0;
+        // Every card of a cloze model uses the first template; its ordinal is the cloze number - 1
+        CompiledTemplate template = model.cloze ? model.first : model.byOrd.get(ord);
+        if (template == null) {
+            return null;
+        }
+
+        String[] fields = note.flds != null ? note.flds.split("\u001f", -1) : new String[0];
+        String deck = card.deck != null ? card.deck.name : null;
+        int cloze = model.cloze ? ord + 1 : 0;
+        String question = template.question.render(new CardTemplate.Context(fields, note.tags, deck,
+                template.name, model.name, cloze, false, null));
+        String answer = template.answer.render(new CardTemplate.Context(fields, note.tags, deck,
+                template.name, model.name, cloze, true, question));
+        return new Rendered(question, answer, model.css);
+    }
+
+    CompiledModel compiled(AnkiModel model) {
+        CompiledModel cached = compiled.getIfPresent(model.id);
+        if (cached != null && cached.matches(model)) {
+            return cached;
+        }
+        CompiledModel fresh = new CompiledModel(model);
+        compiled.put(model.id, fresh);
+        return fresh;
+    }
+
+    // emptyQuestion: the question rendered with every field empty
+    private record CompiledTemplate(String name, CardTemplate question, CardTemplate answer, String emptyQuestion) {
+    }
+
+    static final class CompiledModel {
+
+        final String name;
+        final String css;
+        final boolean cloze;
+        final Map<Integer, CompiledTemplate> byOrd = new HashMap<>();
+        final CompiledTemplate first;
+
+        // Sources the templates were compiled from
+        private final List<String> fieldNames;
+        private final List<String> sources;
+
+        CompiledModel(AnkiModel model) {
+            this.name = model.name;
+            this.css = model.css;
+            this.fieldNames = fieldNames(model);
+            List<AnkiTemplate> templates = model.templates.stream()
+                    .sorted(Comparator.comparing(t -> t.ord != null ? t.ord : 0))
+                    .toList();
+            this.sources = sources(model);
+
+            CompiledTemplate firstTemplate = null;
+            boolean isCloze = false;
+            for (AnkiTemplate t : templates) {
+                CardTemplate question = CardTemplate.compile(t.qfmt, fieldNames);
+                String emptyQuestion = question.render(new CardTemplate.Context(new String[0], null, null, null,
+                        null, 0, false, null));
+                CompiledTemplate compiledTemplate = new CompiledTemplate(t.name, question,
+                        CardTemplate.compile(t.afmt, fieldNames), emptyQuestion);
+                byOrd.put(t.ord != null ? t.ord : 0, compiledTemplate);
+                if (firstTemplate == null) {
+                    firstTemplate = compiledTemplate;
+                    isCloze = compiledTemplate.question().isCloze();
+                }
+            }
+            this.first = firstTemplate;
+            this.cloze = isCloze;
+        }
+
+        boolean matches(AnkiModel model) {
+            return Objects.equals(name, model.name)
+                    && Objects.equals(css, model.css)
+                    && fieldNames.equals(fieldNames(model))
+                    && sources.equals(sources(model));
+        }
+
+        private static List<String> fieldNames(AnkiModel model) {
+            return model.fields.stream()
+                    .sorted(Comparator.comparing((AnkiField f) -> f.ord != null ? f.ord : 0))
+                    .map(f -> f.name)
+                    .toList();
+        }
+
+        private static List<String> sources(AnkiModel model) {
+            return model.templates.stream()
+                    .sorted(Comparator.comparing((AnkiTemplate t) -> t.ord != null ? t.ord : 0))
+                    .flatMap(t -> Stream.of(String.valueOf(t.ord), t.name, t.qfmt, t.afmt))
+                    .toList();
+        }
+    }
+}
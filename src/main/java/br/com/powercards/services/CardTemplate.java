@@ -0,0 +1,347 @@
+package br.com.powercards.services;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An Anki card template, parsed once into a tree of nodes.
+ * <p>
+ * Supports field references ({@code {{Field}}}), filters applied right to left
+ * ({@code text}, {@code cloze}, {@code hint}, {@code type}; unknown filters are
+ * ignored), sections ({@code {{#Field}}...{{/Field}}} and
+ * {@code {{^Field}}...{{/Field}}}) and the special fields {@code FrontSide},
+ * {@code Tags}, {@code Deck}, {@code Subdeck}, {@code Card} and {@code Type}.
+ * Field names are resolved to indexes at compile time, so rendering is a walk
+ * over the nodes appending to one buffer.
+ */
+public final class CardTemplate {
+
+    /**
+     * Values a template is rendered against.
+     *
+     * @param fields    note fields, in model order
+     * @param tags      note tags
+     * @param deck      full deck name
+     * @param card      template name
+     * @param type      model name
+     * @param cloze     cloze number being studied, 0 for standard cards
+     * @param answer    whether the answer side is rendered
+     * @param frontSide rendered question, for {@code {{FrontSide}}}
+     */
+    public record Context(String[] fields, String tags, String deck, String card, String type, int cloze,
+            boolean answer, String frontSide) {
+    }
+
+    private static final int FRONT_SIDE = -1;
+    private static final int TAGS = -2;
+    private static final int DECK = -3;
+    private static final int SUBDECK = -4;
+    private static final int CARD = -5;
+    private static final int TYPE = -6;
+    private static final int UNKNOWN = -100;
+
+    private enum Filter {
+        TEXT, CLOZE, HINT, TYPE
+    }
+
+    private sealed interface Node permits Text, FieldRef, Section {
+    }
+
+    private record Text(String text) implements Node {
+    }
+
+    // Filters are stored in the order they apply
+    private record FieldRef(int field, Filter[] filters) implements Node {
+    }
+
+    private record Section(int field, boolean inverted, Node[] body) implements Node {
+    }
+
+    private static final Node[] NO_NODES = new Node[0];
+    private static final Filter[] NO_FILTERS = new Filter[0];
+
+    private final Node[] nodes;
+    private final boolean cloze;
+
+    private CardTemplate(Node[] nodes, boolean cloze) {
+        this.nodes = nodes;
+        this.cloze = cloze;
+    }
+
+    /**
+     * @param fieldNames field names of the model, in field order
+     */
+    public static CardTemplate compile(String source, List<String> fieldNames) {
+        Deque<List<Node>> open = new ArrayDeque<>();
+        Deque<Integer> openFields = new ArrayDeque<>();
+        Deque<Boolean> openInverted = new ArrayDeque<>();
+        List<Node> current = new ArrayList<>();
+        boolean cloze = false;
+
+        String text = source != null ? source : "";
+        int position = 0;
+        while (position < text.length()) {
+            int start = text.indexOf("{{", position);
+            int end = start < 0 ? -1 : text.indexOf("}}", start + 2);
+            if (end < 0) {
+                current.add(new Text(text.substring(position)));
+                break;
+            }
+            if (start > position) {
+                current.add(new Text(text.substring(position, start)));
+            }
+            String tag = text.substring(start + 2, end).trim();
+            position = end + 2;
+            if (tag.isEmpty()) {
+                continue;
+            }
+
+            char kind = tag.charAt(0);
+            if (kind == '#' || kind == '^') {
+                open.push(current);
+                openFields.push(resolve(tag.substring(1).trim(), fieldNames));
+                openInverted.push(kind == '^');
+                current = new ArrayList<>();
+            } else if (kind == '/') {
+                // A stray closing tag is dropped
+                if (!open.isEmpty()) {
+                    Node section = new Section(openFields.pop(), openInverted.pop(), current.toArray(NO_NODES));
+                    current = open.pop();
+                    current.add(section);
+                }
+            } else {
+                String[] parts = tag.split(":");
+                int field = resolve(parts[parts.length - 1].trim(), fieldNames);
+                List<Filter> filters = new ArrayList<>();
+                for (int i = parts.length - 2; i >= 0; i--) {
+                    Filter filter = filter(parts[i].trim());
+                    if (filter != null) {
+                        filters.add(filter);
+                        cloze |= filter == Filter.CLOZE;
+                    }
+                }
+                current.add(new FieldRef(field, filters.toArray(NO_FILTERS)));
+            }
+        }
+        // Unclosed sections keep their content
+        while (!open.isEmpty()) {
+            Node section = new Section(openFields.pop(), openInverted.pop(), current.toArray(NO_NODES));
+            current = open.pop();
+            current.add(section);
+        }
+        return new CardTemplate(current.toArray(NO_NODES), cloze);
+    }
+
+    /**
+     * Whether the template uses the cloze filter, making its model a cloze model.
+     */
+    public boolean isCloze() {
+        return cloze;
+    }
+
+    public String render(Context context) {
+        StringBuilder out = new StringBuilder(256);
+        render(nodes, context, out);
+        return out.toString();
+    }
+
+    private static void render(Node[] nodes, Context context, StringBuilder out) {
+        for (Node node : nodes) {
+            switch (node) {
+                case Text text -> out.append(text.text());
+                case FieldRef ref -> appendField(ref, context, out);
+                case Section section -> {
+                    boolean empty = isEmpty(value(section.field(), context));
+                    if (empty == section.inverted()) {
+                        render(section.body(), context, out);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void appendField(FieldRef ref, Context context, StringBuilder out) {
+        String value = value(ref.field(), context);
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        if (ref.filters().length == 0) {
+            out.append(value);
+            return;
+        }
+        for (Filter filter : ref.filters()) {
+            value = switch (filter) {
+                case TEXT -> stripHtml(value);
+                case CLOZE -> cloze(value, context.cloze(), context.answer());
+                case HINT -> "<a class=\"hint\" href=\"#\" onclick=\"this.style.display='none';"
+                        + "this.nextElementSibling.style.display='block';return false;\">Show</a>"
+                        + "<div class=\"hint\" style=\"display: none\">" + value + "</div>";
+                case TYPE -> context.answer() ? "<span class=\"typeans\">" + value + "</span>"
+                        : "<input type=\"text\" class=\"typeans\">";
+            };
+        }
+        out.append(value);
+    }
+
+    private static String value(int field, Context context) {
+        return switch (field) {
+            case FRONT_SIDE -> context.answer() ? context.frontSide() : "";
+            case TAGS -> context.tags() != null ? context.tags().trim() : "";
+            case DECK -> context.deck();
+            case SUBDECK -> {
+                String deck = context.deck();
+                int separator = deck == null ? -1 : deck.lastIndexOf("::");
+                yield separator < 0 ? deck : deck.substring(separator + 2);
+            }
+            case CARD -> context.card();
+            case TYPE -> context.type();
+            case UNKNOWN -> null;
+            default -> field < context.fields().length ? context.fields()[field] : null;
+        };
+    }
+
+    private static int resolve(String name, List<String> fieldNames) {
+        int index = fieldNames.indexOf(name);
+        if (index >= 0) {
+            return index;
+        }
+        return switch (name) {
+            case "FrontSide" -> FRONT_SIDE;
+            case "Tags" -> TAGS;
+            case "Deck" -> DECK;
+            case "Subdeck" -> SUBDECK;
+            case "Card" -> CARD;
+            case "Type" -> TYPE;
+            default -> UNKNOWN;
+        };
+    }
+
+    private static Filter filter(String name) {
+        return switch (name) {
+            case "text" -> Filter.TEXT;
+            case "cloze" -> Filter.CLOZE;
+            case "hint" -> Filter.HINT;
+            case "type" -> Filter.TYPE;
+            default -> null;
+        };
+    }
+
+    /**
+     * Renders the cloze deletions of a field for one card: the deletions of
+     * {@code ordinal} are hidden on the question and highlighted on the answer,
+     * all others show their text.
+     */
+    static String cloze(String value, int ordinal, boolean answer) {
+        StringBuilder out = new StringBuilder(value.length());
+        int position = 0;
+        while (true) {
+            int start = value.indexOf("{{c", position);
+            if (start < 0) {
+                break;
+            }
+            int digits = start + 3;
+            int number = 0;
+            while (digits < value.length() && Character.isDigit(value.charAt(digits))) {
+                number = number * 10 + (value.charAt(digits) - '0');
+                digits++;
+            }
+            int end = digits == start + 3 || !value.startsWith("::", digits) ? -1 : value.indexOf("}}", digits + 2);
+            if (end < 0) {
+                out.append(value, position, start + 3);
+                position = start + 3;
+                continue;
+            }
+            out.append(value, position, start);
+
+            String body = value.substring(digits + 2, end);
+            int hintAt = body.indexOf("::");
+            String text = hintAt < 0 ? body : body.substring(0, hintAt);
+            if (number != ordinal) {
+                out.append(text);
+            } else if (answer) {
+                out.append("<span class=\"cloze\">").append(text).append("</span>");
+            } else {
+                out.append("<span class=\"cloze\">[").append(hintAt < 0 ? "..." : body.substring(hintAt + 2))
+                        .append("]</span>");
+            }
+            position = end + 2;
+        }
+        out.append(value, position, value.length());
+        return out.toString();
+    }
+
+    /**
+     * Adds the cloze numbers used in a field, e.g. 1 and 3 for
+     * {@code {{c1::a}} {{c3::b}}}.
+     */
+    static void clozeNumbers(String value, Set<Integer> into) {
+        if (value == null) {
+            return;
+        }
+        int position = 0;
+        while ((position = value.indexOf("{{c", position)) >= 0) {
+            int digits = position + 3;
+            int number = 0;
+            while (digits < value.length() && Character.isDigit(value.charAt(digits))) {
+                number = number * 10 + (value.charAt(digits) - '0');
+                digits++;
+            }
+            if (digits > position + 3 && value.startsWith("::", digits) && number > 0) {
+                into.add(number);
+            }
+            position = digits;
+        }
+    }
+
+    /**
+     * Anki's notion of an empty field: nothing but whitespace, line breaks,
+     * empty divs and non-breaking spaces.
+     */
+    static boolean isEmpty(String value) {
+        if (value == null) {
+            return true;
+        }
+        int i = 0;
+        int length = value.length();
+        while (i < length) {
+            char c = value.charAt(i);
+            if (Character.isWhitespace(c) || c == '\u00a0') {
+                i++;
+            } else if (value.regionMatches(true, i, "&nbsp;", 0, 6)) {
+                i += 6;
+            } else if (value.regionMatches(true, i, "<div>", 0, 5)) {
+                i += 5;
+            } else if (value.regionMatches(true, i, "</div>", 0, 6)) {
+                i += 6;
+            } else if (value.regionMatches(true, i, "<br", 0, 3)) {
+                int close = value.indexOf('>', i);
+                if (close < 0 || !value.substring(i + 3, close).replace("/", "").isBlank()) {
+                    return false;
+                }
+                i = close + 1;
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String stripHtml(String value) {
+        StringBuilder out = new StringBuilder(value.length());
+        boolean inTag = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '<') {
+                inTag = true;
+            } else if (c == '>' && inTag) {
+                inTag = false;
+            } else if (!inTag) {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,141 @@
+package br.com.powercards.services;
+
+import br.com.powercards.dto.DuplicateGroupResponse;
+import br.com.powercards.model.Note;
+import br.com.powercards.model.NoteFields;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Finds notes of the same model whose first fields have the same text, as
+ * Anki does.
+ * <p>
+ * Candidates are looked up by checksum through the
+ * {@code (workspace_id, mid, csum)} index, and compared by text only within a
+ * checksum, so the cost grows with the number of notes involved rather than
+ * with the square of the collection. Callers must flush new notes first, as
+ * their checksums are derived on write.
+ */
+@ApplicationScoped
+public class DuplicateDetector {
+
+    // Keeps "in" lists well below database parameter limits
+    private static final int CHUNK_SIZE = 1000;
+
+    @Inject
+    EntityManager entityManager;
+
+    /**
+     * @return for each given note that has duplicates, the ids of the other
+     *         notes sharing its first field, by note id
+     */
+    public Map<Long, List<Long>> duplicatesOf(Collection<Note> notes) {
+        Map<Long, List<Long>> duplicates = new HashMap<>();
+        List<Long> checksums = notes.stream()
+                .map(n -> n.csum)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        if (checksums.isEmpty()) {
+            return duplicates;
+        }
+        Long workspaceId = notes.iterator().next().workspace.id;
+
+        Map<String, List<Long>> groups = new HashMap<>();
+        for (Object[] row : candidates(workspaceId, null, checksums)) {
+            groups.computeIfAbsent(key(row), k -> new ArrayList<>()).add((Long) row[0]);
+        }
+        for (Note note : notes) {
+            if (note.csum == null || note.model == null) {
+                continue;
+            }
+            List<Long> group = groups.getOrDefault(
+                    key(note.model.id, note.csum, NoteFields.firstFieldText(note.flds)), List.of());
+            List<Long> others = group.stream().filter(id -> !id.equals(note.id)).toList();
+            if (!others.isEmpty()) {
+                duplicates.put(note.id, others);
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * Duplicate groups of a workspace, optionally of one model, at most
+     * {@code limit} checksums' worth.
+     */
+    public List<DuplicateGroupResponse> findGroups(Long workspaceId, Long modelId, int limit) {
+        // Checksums shared by several notes of a model: answered from the index alone
+        TypedQuery<Object[]> sharedQuery = entityManager.createQuery(
+                "select n.model.id, n.csum from Note n where n.workspace.id = :workspaceId"
+                        + (modelId != null ? " and n.model.id = :modelId" : "")
+                        + " and n.csum is not null group by n.model.id, n.csum having count(n) > 1"
+                        + " order by n.model.id, n.csum",
+                Object[].class)
+                .setParameter("workspaceId", workspaceId)
+                .setMaxResults(limit);
+        if (modelId != null) {
+            sharedQuery.setParameter("modelId", modelId);
+        }
+        List<Object[]> shared = sharedQuery.getResultList();
+        if (shared.isEmpty()) {
+            return List.of();
+        }
+
+        // Within a checksum, notes are grouped by their actual text: a collision is not a duplicate
+        Map<String, List<Long>> groups = new LinkedHashMap<>();
+        Map<String, Object[]> firstRows = new HashMap<>();
+        List<Long> checksums = shared.stream().map(row -> (Long) row[1]).distinct().toList();
+        for (Object[] row : candidates(workspaceId, modelId, checksums)) {
+            String key = key(row);
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add((Long) row[0]);
+            firstRows.putIfAbsent(key, row);
+        }
+
+        List<DuplicateGroupResponse> result = new ArrayList<>();
+        groups.forEach((key, ids) -> {
+            if (ids.size() > 1) {
+                Object[] row = firstRows.get(key);
+                result.add(new DuplicateGroupResponse((Long) row[1], (Long) row[2],
+                        NoteFields.firstFieldText((String) row[3]), ids));
+            }
+        });
+        return result;
+    }
+
+    // Rows of id, model id, checksum and fields, oldest note first
+    private List<Object[]> candidates(Long workspaceId, Long modelId, List<Long> checksums) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < checksums.size(); i += CHUNK_SIZE) {
+            TypedQuery<Object[]> query = entityManager.createQuery(
+                    "select n.id, n.model.id, n.csum, n.flds from Note n where n.workspace.id = :workspaceId"
+                            + (modelId != null ? " and n.model.id = :modelId" : "")
+                            + " and n.csum in :checksums order by n.id",
+                    Object[].class)
+                    .setParameter("workspaceId", workspaceId)
+                    .setParameter("checksums", checksums.subList(i, Math.min(checksums.size(), i + CHUNK_SIZE)));
+            if (modelId != null) {
+                query.setParameter("modelId", modelId);
+            }
+            rows.addAll(query.getResultList());
+        }
+        return rows;
+    }
+
+    private static String key(Object[] row) {
+        return key((Long) row[1], (Long) row[2], NoteFields.firstFieldText((String) row[3]));
+    }
+
+    private static String key(Long modelId, Long checksum, String text) {
+        return modelId + ":" + checksum + ":" + text;
+    }
+}
@@ -0,0 +1,195 @@
+package br.com.powercards.services;
+
+import br.com.powercards.domain.entities.AIEnhancementCacheEntry;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Results of AI enhancement by content, shared by the server model and the
+ * users' own providers.
+ * <p>
+ * A result is keyed by provider, model, {@link #PROMPT_VERSION} and a hash of
+ * the fields, normalized so that whitespace and Unicode composition do not
+ * matter. The same fields enhanced twice, by one user or in decks imported
+ * into several workspaces, cost one call. Entries live in a bounded in-memory
+ * cache and, with {@code powercards.ai.cache.persistent}, in the database so
+ * that they survive restarts and are shared between instances.
+ */
+@ApplicationScoped
+public class EnhancementCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EnhancementCache.class);
+
+    /**
+     * Version of the enhancement prompts; change it whenever one of them
+     * changes, so that results of the old prompt are not served.
+     */
+    public static final String PROMPT_VERSION = "2";
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final TypeReference<List<String>> FIELDS = new TypeReference<>() {
+    };
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "powercards.ai.cache.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "powercards.ai.cache.max-entries", defaultValue = "10000")
+    long maxEntries;
+
+    @ConfigProperty(name = "powercards.ai.cache.ttl", defaultValue = "P30D")
+    Duration ttl;
+
+    @ConfigProperty(name = "powercards.ai.cache.persistent", defaultValue = "false")
+    boolean persistent;
+
+    private Cache<String, List<String>> results;
+
+    @PostConstruct
+    void init() {
+        results = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        registry.gauge("powercards.ai.cache.hit-rate", results, cache -> cache.stats().hitRate());
+    }
+
+    /**
+     * @return the cached enhancement of the fields, or {@code null}
+     */
+    public List<String> get(String provider, String model, List<String> fields) {
+        if (!enabled) {
+            return null;
+        }
+        String key = key(provider, model, fields);
+        List<String> cached = results.getIfPresent(key);
+        if (cached == null && persistent) {
+            cached = load(key);
+            if (cached != null) {
+                results.put(key, cached);
+            }
+        }
+        registry.counter("powercards.ai.cache.lookups", "provider", provider,
+                "outcome", cached != null ? "hit" : "miss").increment();
+        return cached;
+    }
+
+    /**
+     * Caches an enhancement. Only results with one field per input field
+     * should be given.
+     */
+    public void put(String provider, String model, List<String> fields, List<String> enhanced) {
+        if (!enabled) {
+            return;
+        }
+        String key = key(provider, model, fields);
+        List<String> result = List.copyOf(enhanced);
+        results.put(key, result);
+        if (persistent) {
+            store(key, result);
+        }
+    }
+
+    @Scheduled(every = "{powercards.ai.cache.purge-every}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void purge() {
+        if (!persistent) {
+            return;
+        }
+        long removed = QuarkusTransaction.requiringNew().call(
+                () -> AIEnhancementCacheEntry.delete("createdAt < ?1", LocalDateTime.now().minus(ttl)));
+        if (removed > 0) {
+            LOGGER.info("Removed {} expired AI enhancement results", removed);
+        }
+    }
+
+    private List<String> load(String key) {
+        try {
+            AIEnhancementCacheEntry entry = QuarkusTransaction.requiringNew()
+                    .call(() -> AIEnhancementCacheEntry.findById(key));
+            if (entry == null || entry.createdAt.isBefore(LocalDateTime.now().minus(ttl))) {
+                return null;
+            }
+            return List.copyOf(objectMapper.readValue(entry.result, FIELDS));
+        } catch (Exception e) {
+            LOGGER.warn("Failed to read cached AI enhancement: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void store(String key, List<String> result) {
+        try {
+            String json = objectMapper.writeValueAsString(result);
+            QuarkusTransaction.requiringNew().run(() -> {
+                AIEnhancementCacheEntry entry = AIEnhancementCacheEntry.findById(key);
+                if (entry == null) {
+                    entry = new AIEnhancementCacheEntry();
+                    entry.key = key;
+                }
+                entry.result = json;
+                entry.createdAt = LocalDateTime.now();
+                entry.persist();
+            });
+        } catch (Exception e) {
+            // The in-memory entry is enough to serve it; another instance may have stored it concurrently
+            LOGGER.warn("Failed to persist AI enhancement: {}", e.getMessage());
+        }
+    }
+
+    static String key(String provider, String model, List<String> fields) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, provider);
+            update(digest, model);
+            update(digest, PROMPT_VERSION);
+            for (String field : fields) {
+                update(digest, normalize(field));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Length-prefixed, so that field boundaries are part of the hash
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.US_ASCII));
+        digest.update((byte) ':');
+        digest.update(bytes);
+    }
+
+    static String normalize(String field) {
+        if (field == null) {
+            return "";
+        }
+        String composed = Normalizer.normalize(field, Normalizer.Form.NFC);
+        return WHITESPACE.matcher(composed).replaceAll(" ").strip();
+    }
+}
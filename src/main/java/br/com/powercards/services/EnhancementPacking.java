@@ -0,0 +1,209 @@
+package br.com.powercards.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Packs the fields of many notes into one enhancement request.
+ * <p>
+ * The system prompt is most of a single-note request, so notes are sent
+ * together as {@code [{"id": ..., "fields": [...]}]}, in packs bounded by an
+ * estimated token budget. Every note of the answer is checked against its
+ * input; a note whose fields do not match one to one, or that is missing, is
+ * enhanced again on its own, so a pack costs one call plus one per mismatch.
+ * Fields are sent compacted, see {@link PromptCompaction}.
+ */
+public final class EnhancementPacking {
+
+    public static final String SYSTEM_PROMPT = """
+            # ROLE
+            Text Refinement Engine for Flashcards.
+
+            # TASK
+            Refine the fields of every note of the provided JSON array. Each note has an "id" and a "fields" array of strings.
+            Return every note with the same "id" and a "fields" array of exactly the same size as the input, containing only strings.
+
+            # FORMATTING
+            1. Wrap every field in <div>.
+            2. Bold (<b>) the primary concept.
+            3. Italicize (<i>) secondary context.
+            4. Preserve all tags: <img>, <audio>, <video>, <source>.
+            5. Keep every placeholder such as [[m0]] exactly as it is; each stands for media or markup.
+
+            # CONSTRAINTS
+            - Fix grammar/punctuation only.
+            - Maintain a formal, academic tone.
+            - NEVER merge, split, drop or reorder fields or notes.
+            - NO preamble, NO markdown blocks, NO commentary.
+            - Return ONLY a raw JSON array of note objects at the TOP LEVEL.
+
+            # EXAMPLE
+            Input: [{"id": "1", "fields": ["Hadoop ecosistem", "Map Reduce"]}, {"id": "2", "fields": ["HDFS"]}]
+            Output: [{"id": "1", "fields": ["<div><b>Hadoop ecosystem</b></div>", "<div><b>MapReduce</b></div>"]}, {"id": "2", "fields": ["<div><b>HDFS</b></div>"]}]
+            """;
+
+    // Rough size of the JSON around a note and of a field's quotes and comma, in tokens
+    private static final int NOTE_OVERHEAD = 8;
+    private static final int FIELD_OVERHEAD = 2;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Fields of one note. The id only has to be unique within a pack and is
+     * echoed back by the model.
+     */
+    public record Item(String id, List<String> fields) {
+    }
+
+    /**
+     * Enhanced fields by item id, and why the others could not be enhanced.
+     */
+    public record Outcome(Map<String, List<String>> enhanced, Map<String, String> failures, int fallbacks) {
+    }
+
+    private EnhancementPacking() {
+    }
+
+    /**
+     * Splits items into packs of at most {@code maxItems} items and, unless a
+     * single item exceeds it alone, {@code tokenBudget} estimated tokens.
+     */
+    public static List<List<Item>> pack(List<Item> items, int tokenBudget, int maxItems) {
+        List<List<Item>> packs = new ArrayList<>();
+        List<Item> current = new ArrayList<>();
+        int tokens = 0;
+        for (Item item : items) {
+            int size = estimateTokens(item);
+            if (!current.isEmpty() && (current.size() >= maxItems || tokens + size > tokenBudget)) {
+                packs.add(current);
+                current = new ArrayList<>();
+                tokens = 0;
+            }
+            current.add(item);
+            tokens += size;
+        }
+        if (!current.isEmpty()) {
+            packs.add(current);
+        }
+        return packs;
+    }
+
+    /**
+     * Approximates the tokens of an item, once compacted, as one per four
+     * characters, the usual ratio for English text and markup.
+     */
+    static int estimateTokens(Item item) {
+        int tokens = NOTE_OVERHEAD;
+        for (String field : PromptCompaction.compact(item.fields()).fields()) {
+            tokens += FIELD_OVERHEAD + (field != null ? field.length() : 0) / 4;
+        }
+        return tokens;
+    }
+
+    /**
+     * Enhances a pack with one packed call, falling back to single-note calls
+     * for the notes it did not answer correctly. A pack of one note goes
+     * straight to a single-note call.
+     *
+     * @param packedCall takes the serialized pack, returns the model's answer
+     * @param singleCall the regular one-note enhancement
+     */
+    public static Outcome enhance(List<Item> pack, Function<String, String> packedCall,
+            Function<List<String>, List<String>> singleCall) {
+        Map<String, PromptCompaction.Compacted> compacted = new HashMap<>();
+        List<Item> sent = new ArrayList<>(pack.size());
+        for (Item item : pack) {
+            PromptCompaction.Compacted fields = PromptCompaction.compact(item.fields());
+            compacted.put(item.id(), fields);
+            sent.add(new Item(item.id(), fields.fields()));
+        }
+
+        Map<String, List<String>> answered = Map.of();
+        if (pack.size() > 1) {
+            try {
+                answered = parse(packedCall.apply(serialize(sent)));
+            } catch (RuntimeException e) {
+                // Every note is retried on its own below
+            }
+        }
+
+        Map<String, List<String>> enhanced = new LinkedHashMap<>();
+        Map<String, String> failures = new LinkedHashMap<>();
+        int fallbacks = 0;
+        for (Item item : pack) {
+            PromptCompaction.Compacted sentFields = compacted.get(item.id());
+            List<String> fields = sentFields.restore(answered.get(item.id()));
+            if (fields != null && fields.size() == item.fields().size()) {
+                enhanced.put(item.id(), fields);
+                continue;
+            }
+            if (pack.size() > 1) {
+                fallbacks++;
+            }
+            try {
+                fields = sentFields.restore(singleCall.apply(sentFields.fields()));
+                if (fields != null && fields.size() == item.fields().size()) {
+                    enhanced.put(item.id(), fields);
+                } else {
+                    failures.put(item.id(), "Expected " + item.fields().size() + " fields, got "
+                            + (fields == null ? 0 : fields.size()));
+                }
+            } catch (RuntimeException e) {
+                failures.put(item.id(), e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            }
+        }
+        return new Outcome(enhanced, failures, fallbacks);
+    }
+
+    static String serialize(List<Item> pack) {
+        ArrayNode notes = MAPPER.createArrayNode();
+        for (Item item : pack) {
+            ObjectNode note = notes.addObject();
+            note.put("id", item.id());
+            ArrayNode fields = note.putArray("fields");
+            item.fields().forEach(fields::add);
+        }
+        return notes.toString();
+    }
+
+    /**
+     * Reads the notes of a packed answer, by id, repairing it if needed (see
+     * {@link JsonRepair}). Notes that are not an id and an array of strings
+     * are left out.
+     *
+     * @throws IllegalArgumentException if the answer holds no JSON array
+     */
+    static Map<String, List<String>> parse(String answer) {
+        JsonNode root = JsonRepair.array(JsonRepair.parse(answer));
+
+        Map<String, List<String>> notes = new HashMap<>();
+        for (JsonNode note : root) {
+            JsonNode id = note.path("id");
+            JsonNode fields = note.path("fields");
+            if (!id.isValueNode() || !fields.isArray()) {
+                continue;
+            }
+            List<String> values = new ArrayList<>(fields.size());
+            for (JsonNode field : fields) {
+                if (!field.isTextual()) {
+                    values = null;
+                    break;
+                }
+                values.add(field.asText());
+            }
+            if (values != null) {
+                notes.put(id.asText(), values);
+            }
+        }
+        return notes;
+    }
+}
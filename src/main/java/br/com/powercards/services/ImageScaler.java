@@ -0,0 +1,173 @@
+package br.com.powercards.services;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Decoding, downscaling and re-encoding of raster images with ImageIO.
+ * <p>
+ * Opaque images are written as WebP when a WebP writer is registered and as
+ * JPEG otherwise; images with transparency are written as PNG.
+ */
+public final class ImageScaler {
+
+    /**
+     * An encoded image.
+     *
+     * @param data        encoded bytes
+     * @param contentType MIME type of the encoding
+     * @param extension   file extension matching the encoding, without the dot
+     * @param width       width in pixels
+     * @param height      height in pixels
+     */
+    public record Encoded(byte[] data, String contentType, String extension, int width, int height) {
+    }
+
+    private static final boolean WEBP = ImageIO.getImageWritersByMIMEType("image/webp").hasNext();
+
+    private ImageScaler() {
+    }
+
+    /**
+     * Whether the content type is one {@link #decode} can read.
+     */
+    public static boolean isScalable(String contentType) {
+        return "image/png".equals(contentType) || "image/jpeg".equals(contentType);
+    }
+
+    /**
+     * Decodes an image, refusing those with more than {@code maxPixels} pixels
+     * before any pixel data is read.
+     *
+     * @return the image, or {@code null} when the data is not a readable image
+     * @throws IOException when the image is too large or cannot be decoded
+     */
+    public static BufferedImage decode(byte[] data, long maxPixels) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    throw new IOException("Image too large: " + reader.getWidth(0) + "x" + reader.getHeight(0));
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scales the image down so neither side exceeds {@code maxSide}, keeping
+     * its aspect ratio. Smaller images are returned as they are.
+     */
+    public static BufferedImage fit(BufferedImage image, int maxSide) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (width <= maxSide && height <= maxSide) {
+            return image;
+        }
+        double scale = (double) maxSide / Math.max(width, height);
+        return scale(image, Math.max(1, (int) Math.round(width * scale)),
+                Math.max(1, (int) Math.round(height * scale)));
+    }
+
+    /**
+     * Scales and center-crops the image to exactly {@code width} x {@code height}.
+     */
+    public static BufferedImage cover(BufferedImage image, int width, int height) {
+        double scale = Math.max((double) width / image.getWidth(), (double) height / image.getHeight());
+        int scaledWidth = Math.max(width, (int) Math.round(image.getWidth() * scale));
+        int scaledHeight = Math.max(height, (int) Math.round(image.getHeight() * scale));
+        BufferedImage scaled = scale(image, scaledWidth, scaledHeight);
+        return scaled.getSubimage((scaledWidth - width) / 2, (scaledHeight - height) / 2, width, height);
+    }
+
+    /**
+     * Encodes the image compactly for the web.
+     *
+     * @param quality lossy compression quality between 0 and 1
+     */
+    public static Encoded encode(BufferedImage image, float quality) throws IOException {
+        if (image.getColorModel().hasAlpha()) {
+            return write(image, "image/png", "png", null);
+        }
+        BufferedImage rgb = toRgb(image);
+        return WEBP ? write(rgb, "image/webp", "webp", quality) : write(rgb, "image/jpeg", "jpg", quality);
+    }
+
+    private static Encoded write(BufferedImage image, String contentType, String extension, Float quality)
+            throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByMIMEType(contentType).next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (quality != null && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                if (param.getCompressionType() == null) {
+                    param.setCompressionType(param.getCompressionTypes()[0]);
+                }
+                param.setCompressionQuality(quality);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return new Encoded(out.toByteArray(), contentType, extension, image.getWidth(), image.getHeight());
+    }
+
+    private static BufferedImage scale(BufferedImage image, int width, int height) {
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        int currentHeight = image.getHeight();
+        // Halve repeatedly before the last step: a single bilinear pass loses detail on large reductions
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private static BufferedImage toRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+            return image;
+        }
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+}
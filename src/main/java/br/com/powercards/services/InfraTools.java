@@ -29,13 +29,13 @@ public class InfraTools {
     @Tool("Get a complete overview of the user's study workspace including statistics and recommendations")
     public String showMyWorkspace() {
         long deckCount = Deck.count("workspace.id = ?1", getWorkspaceId());
-        long cardCount = Card.count("deck.workspace.id = ?1", getWorkspaceId());
+        long cardCount = Card.count("workspace.id = ?1", getWorkspaceId());
         long noteCount = Note.count("workspace.id = ?1", getWorkspaceId());
         long tagCount = Tag.count("workspace.id = ?1", getWorkspaceId());
 
-        long newCards = Card.count("deck.workspace.id = ?1 and queue = 0", getWorkspaceId());
-        long learningCards = Card.count("deck.workspace.id = ?1 and (queue = 1 or queue = 3)", getWorkspaceId());
-        long dueCards = Card.count("deck.workspace.id = ?1 and queue = 2 and due <= ?2", getWorkspaceId(),
+        long newCards = Card.count("workspace.id = ?1 and queue = 0", getWorkspaceId());
+        long learningCards = Card.count("workspace.id = ?1 and (queue = 1 or queue = 3)", getWorkspaceId());
+        long dueCards = Card.count("workspace.id = ?1 and queue = 2 and due <= ?2", getWorkspaceId(),
                 System.currentTimeMillis() / 1000);
 
         StringBuilder sb = new StringBuilder();
@@ -66,10 +66,10 @@ public class InfraTools {
 
     @Tool("Show what the user should study right now based on their cards and priorities")
     public String whatShouldIStudy() {
-        long dueCards = Card.count("deck.workspace.id = ?1 and queue = 2 and due <= ?2",
+        long dueCards = Card.count("workspace.id = ?1 and queue = 2 and due <= ?2",
                 getWorkspaceId(), System.currentTimeMillis() / 1000);
-        long learningCards = Card.count("deck.workspace.id = ?1 and (queue = 1 or queue = 3)", getWorkspaceId());
-        long newCards = Card.count("deck.workspace.id = ?1 and queue = 0", getWorkspaceId());
+        long learningCards = Card.count("workspace.id = ?1 and (queue = 1 or queue = 3)", getWorkspaceId());
+        long newCards = Card.count("workspace.id = ?1 and queue = 0", getWorkspaceId());
 
         StringBuilder sb = new StringBuilder();
         sb.append("🎯 Study Recommendation:\n\n");
@@ -337,7 +337,7 @@ public class InfraTools {
             deckFilter = " in '" + deck.name + "'";
         } else {
             cards = Card.<Card>find(
-                    "deck.workspace.id = ?1 and queue = 2 and due <= ?2 order by due",
+                    "workspace.id = ?1 and queue = 2 and due <= ?2 order by due",
                     getWorkspaceId(), System.currentTimeMillis() / 1000)
                     .page(0, 20)
                     .list();
@@ -392,7 +392,7 @@ public class InfraTools {
             deckInfo = String.format(" in '%s'", deck.name);
         } else {
             cards = Card.<Card>find(
-                    "(lower(note.flds) like ?1 or lower(note.sfld) like ?1) and deck.workspace.id = ?2",
+                    "(lower(note.flds) like ?1 or lower(note.sfld) like ?1) and workspace.id = ?2",
                     "%" + searchText.toLowerCase() + "%", getWorkspaceId())
                     .page(0, 15)
                     .list();
@@ -457,7 +457,7 @@ public class InfraTools {
             sourceInfo = String.format(" from '%s'", sourceDeck.name);
         } else {
             cards = Card.<Card>find(
-                    "(lower(note.flds) like ?1 or lower(note.sfld) like ?1) and deck.workspace.id = ?2",
+                    "(lower(note.flds) like ?1 or lower(note.sfld) like ?1) and workspace.id = ?2",
                     "%" + contentToFind.toLowerCase() + "%", getWorkspaceId())
                     .list();
         }
@@ -547,7 +547,7 @@ public class InfraTools {
             limit = 50;
 
         List<Note> notes = Note.<Note>find(
-                "select distinct c.note from Card c where c.deck.id = ?1 and c.deck.workspace.id = ?2",
+                "select distinct c.note from Card c where c.deck.id = ?1 and c.workspace.id = ?2",
                 deck.id, getWorkspaceId())
                 .page(0, limit)
                 .list();
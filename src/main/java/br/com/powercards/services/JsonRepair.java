@@ -0,0 +1,200 @@
+package br.com.powercards.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * Reads the JSON a model answered, salvaging what it can.
+ * <p>
+ * Answers often come wrapped in a markdown code block or in prose, with
+ * trailing commas, raw line breaks inside strings, or cut short by the token
+ * limit. Instead of failing the call, and making the user pay for another
+ * one, the first JSON value of the answer is read in a single pass that
+ * skips what surrounds it, drops trailing commas, escapes control characters
+ * in strings and closes whatever is still open at the end. When the cut left
+ * a value that cannot be completed, such as a key without its value, the
+ * answer is read up to its last complete element instead.
+ */
+public final class JsonRepair {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private JsonRepair() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if the text holds no JSON array or
+     *                                  object, or it cannot be repaired
+     */
+    public static JsonNode parse(String text) {
+        if (text == null) {
+            throw new IllegalArgumentException("Empty AI response");
+        }
+        int start = firstContainer(text);
+        if (start < 0) {
+            throw new IllegalArgumentException("AI response holds no JSON");
+        }
+        Repair repair = new Repair(text, start);
+        try {
+            return MAPPER.readTree(repair.completed);
+        } catch (Exception e) {
+            if (repair.salvaged != null) {
+                try {
+                    return MAPPER.readTree(repair.salvaged);
+                } catch (Exception ignored) {
+                    // Reported below, with the error of the whole answer
+                }
+            }
+            throw new IllegalArgumentException("AI response is not valid JSON: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The array an answer holds: the root when it is one, or the array
+     * structured output modes wrap in an object, such as
+     * {@code {"result": [...]}}.
+     *
+     * @throws IllegalArgumentException if there is none
+     */
+    public static JsonNode array(JsonNode root) {
+        if (root.isArray()) {
+            return root;
+        }
+        for (Iterator<JsonNode> values = root.elements(); values.hasNext();) {
+            JsonNode value = values.next();
+            if (value.isArray()) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("AI response is not a JSON array");
+    }
+
+    // The first [ or {, skipping a code block's language tag and any prose
+    private static int firstContainer(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '[' || c == '{') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * One pass over an answer: the repaired value and, when the answer was cut
+     * short, the value up to its last complete element.
+     */
+    static final class Repair {
+
+        final String completed;
+        final String salvaged;
+
+        Repair(String text, int start) {
+            StringBuilder out = new StringBuilder(text.length() + 8);
+            Deque<Character> open = new ArrayDeque<>();
+            // Output length and open containers after the last complete element
+            int safeLength = -1;
+            Deque<Character> safeOpen = null;
+            boolean inString = false;
+            boolean escaped = false;
+            for (int i = start; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                        out.append(c);
+                    } else if (c == '\\') {
+                        escaped = true;
+                        out.append(c);
+                    } else if (c == '"') {
+                        inString = false;
+                        out.append(c);
+                    } else if (c < 0x20) {
+                        out.append(switch (c) {
+                            case '\n' -> "\\n";
+                            case '\r' -> "\\r";
+                            case '\t' -> "\\t";
+                            default -> String.format("\\u%04x", (int) c);
+                        });
+                    } else {
+                        out.append(c);
+                    }
+                    continue;
+                }
+                switch (c) {
+                    case '"' -> {
+                        inString = true;
+                        out.append(c);
+                    }
+                    case '[', '{' -> {
+                        open.push(c == '[' ? ']' : '}');
+                        out.append(c);
+                    }
+                    case ']', '}' -> {
+                        if (open.isEmpty() || open.peek() != c) {
+                            // A closer with nothing to close is dropped
+                            continue;
+                        }
+                        dropTrailingComma(out);
+                        out.append(open.pop());
+                        if (open.isEmpty()) {
+                            // Whatever follows the value, such as a closing code fence, is ignored
+                            completed = out.toString();
+                            salvaged = null;
+                            return;
+                        }
+                    }
+                    case ',' -> {
+                        safeLength = out.length();
+                        safeOpen = new ArrayDeque<>(open);
+                        out.append(c);
+                    }
+                    default -> out.append(c);
+                }
+            }
+
+            // Cut short: finish the string and close what is open
+            if (inString) {
+                if (escaped) {
+                    out.setLength(out.length() - 1);
+                }
+                out.append('"');
+            }
+            dropTrailingComma(out);
+            int last = lastNonWhitespace(out);
+            if (last >= 0 && out.charAt(last) == ':') {
+                out.append("null");
+            }
+            completed = close(out.toString(), open);
+            salvaged = safeLength >= 0 ? close(out.substring(0, safeLength), safeOpen) : null;
+        }
+
+        private static String close(String value, Deque<Character> open) {
+            StringBuilder closed = new StringBuilder(value);
+            for (char closer : open) {
+                dropTrailingComma(closed);
+                closed.append(closer);
+            }
+            return closed.toString();
+        }
+    }
+
+    private static void dropTrailingComma(StringBuilder out) {
+        int last = lastNonWhitespace(out);
+        if (last >= 0 && out.charAt(last) == ',') {
+            out.setLength(last);
+        }
+    }
+
+    private static int lastNonWhitespace(StringBuilder out) {
+        int i = out.length() - 1;
+        while (i >= 0 && Character.isWhitespace(out.charAt(i))) {
+            i--;
+        }
+        return i;
+    }
+}
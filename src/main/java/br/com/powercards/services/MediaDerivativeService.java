@@ -0,0 +1,180 @@
+package br.com.powercards.services;
+
+import br.com.powercards.domain.entities.AnkiMedia;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.context.ManagedExecutor;
+import org.eclipse.microprofile.context.ThreadContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Produces size-bounded variants of note images.
+ * <p>
+ * Once an image's row is committed, a worker of a small dedicated pool
+ * downloads it and stores a display variant (longest side at most
+ * {@code powercards.media.derivatives.max-dimension}) and a thumbnail. Variants
+ * are named after the hash of the original content, so an image shared by many
+ * notes is processed once, and are stored with an immutable cache header.
+ * Originals are kept untouched for export. The variant URLs are written back
+ * to every row pointing to the original; until then the original is served.
+ */
+@ApplicationScoped
+public class MediaDerivativeService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MediaDerivativeService.class);
+
+    private static final String BUCKET = ObjectStorageGateway.MEDIA_BUCKET;
+    private static final String PREFIX = "derived/";
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    @Inject
+    ObjectStorageGateway storage;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "powercards.media.derivatives.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "powercards.media.derivatives.workers", defaultValue = "2")
+    int workers;
+
+    @ConfigProperty(name = "powercards.media.derivatives.queue-size", defaultValue = "1000")
+    int queueSize;
+
+    @ConfigProperty(name = "powercards.media.derivatives.max-dimension", defaultValue = "1600")
+    int maxDimension;
+
+    @ConfigProperty(name = "powercards.media.derivatives.thumbnail-size", defaultValue = "256")
+    int thumbnailSize;
+
+    @ConfigProperty(name = "powercards.media.derivatives.quality", defaultValue = "0.8")
+    float quality;
+
+    // Images under this size and within max-dimension are served as they are
+    @ConfigProperty(name = "powercards.media.derivatives.min-bytes", defaultValue = "131072")
+    long minBytes;
+
+    @ConfigProperty(name = "powercards.media.derivatives.max-pixels", defaultValue = "50000000")
+    long maxPixels;
+
+    private ManagedExecutor executor;
+
+    @PostConstruct
+    void init() {
+        // Decoding is CPU and memory heavy: keep it off the shared pool, with a bounded queue
+        executor = ManagedExecutor.builder()
+                .maxAsync(workers)
+                .maxQueued(queueSize)
+                .propagated(ThreadContext.NONE)
+                .cleared(ThreadContext.ALL_REMAINING)
+                .build();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queues variant generation for the images among the given media. Must be
+     * called after their rows are committed.
+     */
+    public void schedule(Collection<AnkiMedia> media) {
+        if (!enabled) {
+            return;
+        }
+        Set<String> urls = new LinkedHashSet<>();
+        for (AnkiMedia m : media) {
+            if (ImageScaler.isScalable(m.contentType) && m.displayUrl == null && m.thumbnailUrl == null) {
+                urls.add(m.minioUrl);
+            }
+        }
+        for (String url : urls) {
+            try {
+                executor.runAsync(() -> derive(url));
+            } catch (RejectedExecutionException e) {
+                LOGGER.warn("Derivative queue full, serving original of {}", url);
+            }
+        }
+    }
+
+    void derive(String url) {
+        Timer.Sample sample = Timer.start(registry);
+        String outcome = "error";
+        try {
+            String object = storage.objectName(BUCKET, url);
+            if (object == null) {
+                outcome = "skipped";
+                return;
+            }
+            byte[] data = storage.get(BUCKET, object);
+            BufferedImage image = ImageScaler.decode(data, maxPixels);
+            if (image == null) {
+                outcome = "skipped";
+                return;
+            }
+            String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+            int longest = Math.max(image.getWidth(), image.getHeight());
+
+            String displayUrl = null;
+            if (longest > maxDimension || data.length > minBytes) {
+                ImageScaler.Encoded display = ImageScaler.encode(ImageScaler.fit(image, maxDimension), quality);
+                // Re-encoding an already compact image can make it bigger
+                if (display.data().length < data.length) {
+                    displayUrl = store(hash + "-" + maxDimension, display);
+                }
+            }
+            String thumbnailUrl = null;
+            if (longest > thumbnailSize) {
+                thumbnailUrl = store(hash + "-" + thumbnailSize,
+                        ImageScaler.encode(ImageScaler.fit(image, thumbnailSize), quality));
+            }
+            if (displayUrl == null && thumbnailUrl == null) {
+                outcome = "skipped";
+                return;
+            }
+
+            String display = displayUrl;
+            String thumbnail = thumbnailUrl;
+            // The object may have been replaced meanwhile: only rows of this content get the variants
+            QuarkusTransaction.requiringNew().run(() -> AnkiMedia.update(
+                    "displayUrl = ?1, thumbnailUrl = ?2, displayKey = ?3, thumbnailKey = ?4"
+                            + " where minioUrl = ?5 and (checksum is null or checksum = ?6)",
+                    display, thumbnail, storage.objectName(BUCKET, display), storage.objectName(BUCKET, thumbnail),
+                    url, hash));
+            outcome = "success";
+        } catch (Exception e) {
+            LOGGER.warn("Failed to derive variants of {}: {}", url, e.getMessage());
+        } finally {
+            sample.stop(registry.timer("powercards.media.derivatives", "outcome", outcome));
+        }
+    }
+
+    private String store(String name, ImageScaler.Encoded encoded) {
+        String object = PREFIX + name + "." + encoded.extension();
+        // Content-addressed: an existing variant is the same variant
+        if (storage.stat(BUCKET, object) == null) {
+            byte[] data = encoded.data();
+            storage.put(BUCKET, object, () -> new ByteArrayInputStream(data), data.length, encoded.contentType(),
+                    IMMUTABLE);
+        }
+        return storage.url(BUCKET, object);
+    }
+}
@@ -0,0 +1,218 @@
+package br.com.powercards.services;
+
+import io.minio.messages.Item;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Removes storage objects nothing points to anymore.
+ * <p>
+ * Each run first drops {@code AnkiMedia} rows whose note is gone, then walks
+ * every bucket a few pages at a time, resuming where the previous run stopped,
+ * and checks each page of object names against the database in a single query.
+ * Objects are matched on the object names rows keep next to their URLs, never
+ * on the URLs: those carry the base URL they were written with, which may not
+ * be the current one. Rows written without them are given theirs at the start
+ * of each run. Objects younger than the grace period are never touched, so
+ * uploads whose row is not committed yet survive. Unreferenced objects are
+ * removed with one batch request per page.
+ */
+@ApplicationScoped
+public class MediaGarbageCollector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MediaGarbageCollector.class);
+
+    // Bucket -> query returning which of the given object names are still referenced
+    private static final Map<String, String> REFERENCES = Map.of(
+            ObjectStorageGateway.MEDIA_BUCKET, "select m.objectKey from AnkiMedia m where m.objectKey in :keys"
+                    + " union select m.displayKey from AnkiMedia m where m.displayKey in :keys"
+                    + " union select m.thumbnailKey from AnkiMedia m where m.thumbnailKey in :keys",
+            ObjectStorageGateway.AVATAR_BUCKET, "select u.avatarKey from User u where u.avatarKey in :keys",
+            ObjectStorageGateway.BANNER_BUCKET, "select u.bannerKey from User u where u.bannerKey in :keys");
+
+    // Entity, URL attribute, object name attribute and bucket of every stored object reference
+    private static final List<String[]> KEYS = List.of(
+            new String[] { "AnkiMedia", "minioUrl", "objectKey", ObjectStorageGateway.MEDIA_BUCKET },
+            new String[] { "AnkiMedia", "displayUrl", "displayKey", ObjectStorageGateway.MEDIA_BUCKET },
+            new String[] { "AnkiMedia", "thumbnailUrl", "thumbnailKey", ObjectStorageGateway.MEDIA_BUCKET },
+            new String[] { "User", "avatarUrl", "avatarKey", ObjectStorageGateway.AVATAR_BUCKET },
+            new String[] { "User", "bannerUrl", "bannerKey", ObjectStorageGateway.BANNER_BUCKET });
+
+    private static final Pattern VARIANT_SUFFIX = Pattern.compile("@\\d+(\\.[^./]+)$");
+
+    @Inject
+    ObjectStorageGateway storage;
+
+    @Inject
+    EntityManager entityManager;
+
+    @ConfigProperty(name = "powercards.media-gc.page-size", defaultValue = "1000")
+    int pageSize;
+
+    @ConfigProperty(name = "powercards.media-gc.pages-per-run", defaultValue = "10")
+    int pagesPerRun;
+
+    @ConfigProperty(name = "powercards.media-gc.grace-period", defaultValue = "PT24H")
+    Duration gracePeriod;
+
+    // Last object name visited per bucket; a run continues after it
+    private final Map<String, String> cursors = new ConcurrentHashMap<>();
+
+    @Scheduled(every = "{powercards.media-gc.every}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void run() {
+        long rows = purgeOrphanRows();
+        try {
+            fillObjectKeys();
+        } catch (Exception e) {
+            // Without them, referenced objects would look unreferenced
+            LOGGER.warn("Media GC skipped, object names of rows could not be filled: {}", e.getMessage());
+            return;
+        }
+        for (Map.Entry<String, String> bucket : REFERENCES.entrySet()) {
+            try {
+                long removed = collect(bucket.getKey(), bucket.getValue());
+                if (removed > 0) {
+                    LOGGER.info("Media GC removed {} objects from {}", removed, bucket.getKey());
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Media GC skipped bucket {}: {}", bucket.getKey(), e.getMessage());
+            }
+        }
+        if (rows > 0) {
+            LOGGER.info("Media GC removed {} media rows of deleted notes", rows);
+        }
+    }
+
+    /**
+     * Deletes media rows whose note no longer exists, a page at a time.
+     */
+    long purgeOrphanRows() {
+        long total = 0;
+        int deleted;
+        do {
+            deleted = QuarkusTransaction.requiringNew().call(() -> {
+                List<Long> noteIds = entityManager.createQuery(
+                        "select distinct m.id.noteId from AnkiMedia m "
+                                + "where not exists (select 1 from Note n where n.id = m.id.noteId)",
+                        Long.class)
+                        .setMaxResults(pageSize)
+                        .getResultList();
+                if (noteIds.isEmpty()) {
+                    return 0;
+                }
+                return entityManager.createQuery("delete from AnkiMedia m where m.id.noteId in :ids")
+                        .setParameter("ids", noteIds)
+                        .executeUpdate();
+            });
+            total += deleted;
+        } while (deleted > 0);
+        return total;
+    }
+
+    /**
+     * Sets the object names of rows written without them, by earlier versions
+     * or instances, from their URLs.
+     */
+    void fillObjectKeys() {
+        for (String[] key : KEYS) {
+            String entity = key[0];
+            String url = "e." + key[1];
+            String marker = "/" + key[3] + "/";
+            String where = " where e." + key[2] + " is null and locate('" + marker + "', " + url + ") > 0";
+            int updated = QuarkusTransaction.requiringNew().call(() -> {
+                // Checked first: a bulk update evicts the entity's whole cache region
+                if (entityManager.createQuery("select count(e) from " + entity + " e" + where, Long.class)
+                        .getSingleResult() == 0) {
+                    return 0;
+                }
+                return entityManager.createQuery("update " + entity + " e set e." + key[2] + " = substring(" + url
+                        + ", locate('" + marker + "', " + url + ") + " + marker.length() + ")" + where)
+                        .executeUpdate();
+            });
+            if (updated > 0) {
+                LOGGER.info("Media GC filled {}.{} on {} rows", entity, key[2], updated);
+            }
+        }
+    }
+
+    /**
+     * Reconciles up to {@code pages-per-run} pages of a bucket.
+     *
+     * @return number of objects removed
+     */
+    long collect(String bucket, String referencedQuery) {
+        Instant cutoff = Instant.now().minus(gracePeriod);
+        long removed = 0;
+
+        for (int page = 0; page < pagesPerRun; page++) {
+            List<Item> items = storage.list(bucket, cursors.get(bucket), pageSize);
+
+            // Object name -> name rows reference it by, for objects past the grace period
+            Map<String, String> candidates = new LinkedHashMap<>();
+            String last = null;
+            for (Item item : items) {
+                last = item.objectName();
+                if (!item.isDir() && item.lastModified().toInstant().isBefore(cutoff)) {
+                    candidates.put(item.objectName(), referenceKey(bucket, item.objectName()));
+                }
+            }
+
+            removed += removeUnreferenced(bucket, referencedQuery, candidates);
+
+            if (items.size() < pageSize) {
+                // End of the bucket: the next run starts over
+                cursors.remove(bucket);
+                break;
+            }
+            cursors.put(bucket, last);
+        }
+        return removed;
+    }
+
+    /**
+     * Object name the database holds for an object: sized variants of a profile
+     * image, named {@code <primary>@<size>.<ext>}, live as long as their primary
+     * does. Note media keeps its original file names, so it is never rewritten.
+     */
+    static String referenceKey(String bucket, String objectName) {
+        if (ObjectStorageGateway.MEDIA_BUCKET.equals(bucket)) {
+            return objectName;
+        }
+        return VARIANT_SUFFIX.matcher(objectName).replaceFirst("$1");
+    }
+
+    private long removeUnreferenced(String bucket, String referencedQuery, Map<String, String> candidates) {
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+        Set<String> referenced = new HashSet<>(QuarkusTransaction.requiringNew().call(() -> entityManager
+                .createQuery(referencedQuery, String.class)
+                .setParameter("keys", candidates.values())
+                .getResultList()));
+
+        List<String> orphans = new ArrayList<>();
+        candidates.forEach((name, key) -> {
+            if (!referenced.contains(key)) {
+                orphans.add(name);
+            }
+        });
+        return orphans.size() - storage.removeAll(bucket, orphans).size();
+    }
+}
@@ -0,0 +1,64 @@
+package br.com.powercards.services;
+
+/**
+ * Content type detection from the first bytes of a file.
+ * <p>
+ * Browsers and .apkg files often report media as
+ * {@code application/octet-stream}; the magic numbers of the formats Anki
+ * notes use are checked so objects are served with a usable type.
+ */
+public final class MediaTypes {
+
+    /** Number of leading bytes {@link #detect} looks at. */
+    public static final int SNIFF_LENGTH = 12;
+
+    private static final String OCTET_STREAM = "application/octet-stream";
+
+    private MediaTypes() {
+    }
+
+    /**
+     * @param header   first bytes of the content, up to {@link #SNIFF_LENGTH}
+     * @param declared type reported by the client, used when nothing matches
+     */
+    public static String detect(byte[] header, String declared) {
+        if (startsWith(header, 0, 0x89, 'P', 'N', 'G')) {
+            return "image/png";
+        }
+        if (startsWith(header, 0, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        }
+        if (startsWith(header, 0, 'G', 'I', 'F', '8')) {
+            return "image/gif";
+        }
+        if (startsWith(header, 0, 'R', 'I', 'F', 'F') && startsWith(header, 8, 'W', 'E', 'B', 'P')) {
+            return "image/webp";
+        }
+        if (startsWith(header, 0, 'R', 'I', 'F', 'F') && startsWith(header, 8, 'W', 'A', 'V', 'E')) {
+            return "audio/wav";
+        }
+        if (startsWith(header, 0, 'I', 'D', '3') || startsWith(header, 0, 0xFF, 0xFB)
+                || startsWith(header, 0, 0xFF, 0xF3) || startsWith(header, 0, 0xFF, 0xF2)) {
+            return "audio/mpeg";
+        }
+        if (startsWith(header, 0, 'O', 'g', 'g', 'S')) {
+            return "audio/ogg";
+        }
+        if (startsWith(header, 4, 'f', 't', 'y', 'p')) {
+            return "video/mp4";
+        }
+        return declared != null && !declared.isBlank() ? declared : OCTET_STREAM;
+    }
+
+    private static boolean startsWith(byte[] header, int offset, int... magic) {
+        if (header == null || header.length < offset + magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((header[offset + i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
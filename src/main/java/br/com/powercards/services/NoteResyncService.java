@@ -0,0 +1,92 @@
+package br.com.powercards.services;
+
+import br.com.powercards.model.AnkiModel;
+import br.com.powercards.model.Note;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.context.ManagedExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Re-derives the sort field of the notes of a model after its sort field index
+ * changed. A model can have any number of notes, so they are rewritten in the
+ * background, one chunk per transaction, once the model change has committed.
+ */
+@ApplicationScoped
+public class NoteResyncService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NoteResyncService.class);
+
+    /**
+     * Fired when the sort field of a model changes; the resync starts after the
+     * requesting transaction commits.
+     */
+    public record Requested(Long modelId) {
+    }
+
+    @Inject
+    EntityManager entityManager;
+
+    @Inject
+    ManagedExecutor executor;
+
+    @Inject
+    Event<Requested> requested;
+
+    @ConfigProperty(name = "powercards.note-resync.chunk-size", defaultValue = "500")
+    int chunkSize;
+
+    /**
+     * Schedules the resync of the notes of a model. Must be called inside a
+     * transaction.
+     */
+    public void requestResync(AnkiModel model) {
+        requested.fire(new Requested(model.id));
+    }
+
+    void onRequested(@Observes(during = TransactionPhase.AFTER_SUCCESS) Requested event) {
+        executor.runAsync(() -> resync(event.modelId()));
+    }
+
+    void resync(Long modelId) {
+        try {
+            long lastId = 0;
+            int updated = 0;
+            while (true) {
+                long after = lastId;
+                // Each chunk reads the model again, so a later change is never overwritten
+                List<Note> notes = QuarkusTransaction.requiringNew().call(() -> {
+                    AnkiModel model = AnkiModel.findById(modelId);
+                    if (model == null) {
+                        return List.of();
+                    }
+                    List<Note> chunk = entityManager.createQuery(
+                            "select n from Note n where n.model = :model and n.id > :after order by n.id", Note.class)
+                            .setParameter("model", model)
+                            .setParameter("after", after)
+                            .setMaxResults(chunkSize)
+                            .getResultList();
+                    chunk.forEach(Note::syncFields);
+                    return chunk;
+                });
+                if (notes.isEmpty()) {
+                    break;
+                }
+                lastId = notes.get(notes.size() - 1).id;
+                updated += notes.size();
+            }
+            LOGGER.info("Resynced sort field on {} notes of model {}", updated, modelId);
+        } catch (Exception e) {
+            LOGGER.error("Resync of the notes of model {} failed", modelId, e);
+        }
+    }
+}
@@ -0,0 +1,501 @@
+package br.com.powercards.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.minio.BucketExistsArgs;
+import io.minio.CopyObjectArgs;
+import io.minio.CopySource;
+import io.minio.DeleteBucketPolicyArgs;
+import io.minio.Directive;
+import io.minio.GetObjectArgs;
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.ListObjectsArgs;
+import io.minio.MakeBucketArgs;
+import io.minio.MinioClient;
+import io.minio.PostPolicy;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectArgs;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.SetBucketPolicyArgs;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
+import io.minio.errors.ServerException;
+import io.minio.http.Method;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Single entry point to object storage.
+ * <p>
+ * Buckets and their policies are set up once at startup (or on first use if
+ * storage was unreachable then), transient failures are retried with
+ * exponential backoff, and every call is recorded in the
+ * {@code powercards.storage.requests} timer and the
+ * {@code powercards.storage.bytes} counter. Public object URLs are built here
+ * too, from {@code powercards.storage.public-url}; objects of a private bucket
+ * are served through cached presigned URLs instead. Those are signed for the
+ * public URL, as the host is part of the signature: a URL signed for the
+ * internal endpoint and rewritten afterwards would be rejected.
+ */
+@ApplicationScoped
+public class ObjectStorageGateway {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ObjectStorageGateway.class);
+
+    public static final String MEDIA_BUCKET = "anki-media";
+    public static final String AVATAR_BUCKET = "user-avatars";
+    public static final String BANNER_BUCKET = "user-banners";
+
+    private static final List<String> BUCKETS = List.of(MEDIA_BUCKET, AVATAR_BUCKET, BANNER_BUCKET);
+
+    // S3 error codes worth another attempt
+    private static final Set<String> TRANSIENT_CODES = Set.of(
+            "InternalError", "ServiceUnavailable", "SlowDown", "RequestTimeout", "OperationAborted");
+
+    /**
+     * Opens the content of an upload. Called again for every retry, so it must
+     * return a fresh stream each time.
+     */
+    @FunctionalInterface
+    public interface Content {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * What was stored by {@link #put}.
+     *
+     * @param contentType type detected from the content, or the declared one
+     * @param sha256      hex SHA-256 of the content
+     * @param size        size in bytes
+     */
+    public record StoredObject(String contentType, String sha256, long size) {
+    }
+
+    /**
+     * Metadata of a stored object.
+     */
+    public record ObjectInfo(long size, String contentType, String etag) {
+    }
+
+    /**
+     * Form a client POSTs a file to directly, without going through this service.
+     *
+     * @param url    where the form is posted
+     * @param fields form fields to send, in order, before the file field
+     */
+    public record PresignedPost(String url, Map<String, String> fields) {
+    }
+
+    @FunctionalInterface
+    private interface Call<T> {
+        T execute() throws Exception;
+    }
+
+    @Inject
+    MinioClient minioClient;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "powercards.storage.public-url")
+    String publicUrl;
+
+    // Signing is done offline, so the region must be known up front
+    @ConfigProperty(name = "powercards.storage.region", defaultValue = "us-east-1")
+    String region;
+
+    @ConfigProperty(name = "quarkus.minio.access-key")
+    String accessKey;
+
+    @ConfigProperty(name = "quarkus.minio.secret-key")
+    String secretKey;
+
+    @ConfigProperty(name = "powercards.storage.part-size", defaultValue = "10485760")
+    long partSize;
+
+    @ConfigProperty(name = "powercards.storage.max-attempts", defaultValue = "3")
+    int maxAttempts;
+
+    @ConfigProperty(name = "powercards.storage.retry-backoff", defaultValue = "PT0.2S")
+    Duration retryBackoff;
+
+    @ConfigProperty(name = "powercards.storage.media-private", defaultValue = "true")
+    boolean mediaPrivate;
+
+    @ConfigProperty(name = "powercards.storage.media-url-ttl", defaultValue = "PT1H")
+    Duration mediaUrlTtl;
+
+    @ConfigProperty(name = "powercards.storage.url-cache-size", defaultValue = "10000")
+    long urlCacheSize;
+
+    private final Set<String> readyBuckets = ConcurrentHashMap.newKeySet();
+
+    // Signs URLs handed to clients; never used to send requests
+    MinioClient signer;
+
+    // Presigned GET URLs by object and expiry window
+    private Cache<UrlKey, String> presignedUrls;
+
+    private record UrlKey(String bucket, String object, long window) {
+    }
+
+    @PostConstruct
+    void init() {
+        signer = MinioClient.builder()
+                .endpoint(publicUrl)
+                .credentials(accessKey, secretKey)
+                .region(region)
+                .build();
+        presignedUrls = Caffeine.newBuilder()
+                .maximumSize(urlCacheSize)
+                .expireAfterWrite(mediaUrlTtl.dividedBy(2))
+                .recordStats()
+                .build();
+        registry.gauge("powercards.storage.presigned-url-cache.hit-rate", presignedUrls,
+                cache -> cache.stats().hitRate());
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        for (String bucket : BUCKETS) {
+            try {
+                ensureBucket(bucket);
+            } catch (Exception e) {
+                LOGGER.warn("Could not initialize bucket {}, will retry on first use: {}", bucket, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Streams an object of known size, retrying transient failures.
+     * <p>
+     * The content is read once: its type is sniffed from the buffered header
+     * and its checksum computed while it is sent. Objects larger than
+     * {@code powercards.storage.part-size} go up as a multipart upload, so memory
+     * use stays at one part whatever the size.
+     *
+     * @param contentType declared type, used when the content is not recognized
+     */
+    public StoredObject put(String bucket, String object, Content content, long size, String contentType) {
+        return put(bucket, object, content, size, contentType, null);
+    }
+
+    /**
+     * Same as {@link #put(String, String, Content, long, String)}, storing a
+     * {@code Cache-Control} header served with the object.
+     */
+    public StoredObject put(String bucket, String object, Content content, long size, String contentType,
+            String cacheControl) {
+        StoredObject stored = execute("put", bucket, () -> {
+            ensureBucket(bucket);
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (BufferedInputStream buffered = new BufferedInputStream(content.open())) {
+                buffered.mark(MediaTypes.SNIFF_LENGTH);
+                String detected = MediaTypes.detect(buffered.readNBytes(MediaTypes.SNIFF_LENGTH), contentType);
+                buffered.reset();
+
+                PutObjectArgs.Builder args = PutObjectArgs.builder()
+                        .bucket(bucket)
+                        .object(object)
+                        .stream(new DigestInputStream(buffered, digest), size, partSize)
+                        .contentType(detected);
+                if (cacheControl != null) {
+                    args.headers(Map.of("Cache-Control", cacheControl));
+                }
+                minioClient.putObject(args.build());
+                return new StoredObject(detected, HexFormat.of().formatHex(digest.digest()), size);
+            }
+        });
+        registry.counter("powercards.storage.bytes", "bucket", bucket, "direction", "upload").increment(size);
+        return stored;
+    }
+
+    /**
+     * Downloads a whole object.
+     */
+    public byte[] get(String bucket, String object) {
+        byte[] data = execute("get", bucket, () -> {
+            try (InputStream stream = minioClient.getObject(
+                    GetObjectArgs.builder().bucket(bucket).object(object).build())) {
+                return stream.readAllBytes();
+            }
+        });
+        registry.counter("powercards.storage.bytes", "bucket", bucket, "direction", "download").increment(data.length);
+        return data;
+    }
+
+    /**
+     * @return the object's metadata, or {@code null} when it does not exist
+     */
+    public ObjectInfo stat(String bucket, String object) {
+        return execute("stat", bucket, () -> {
+            try {
+                StatObjectResponse stat = minioClient.statObject(
+                        StatObjectArgs.builder().bucket(bucket).object(object).build());
+                return new ObjectInfo(stat.size(), stat.contentType(), stat.etag());
+            } catch (ErrorResponseException e) {
+                if (e.errorResponse() != null && "NoSuchKey".equals(e.errorResponse().code())) {
+                    return null;
+                }
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * First bytes of an object, enough for {@link MediaTypes#detect}.
+     */
+    public byte[] header(String bucket, String object) {
+        return execute("get", bucket, () -> {
+            try (InputStream stream = minioClient.getObject(GetObjectArgs.builder()
+                    .bucket(bucket)
+                    .object(object)
+                    .offset(0L)
+                    .length((long) MediaTypes.SNIFF_LENGTH)
+                    .build())) {
+                return stream.readAllBytes();
+            }
+        });
+    }
+
+    /**
+     * Replaces the type an object is served with, copying it onto itself.
+     *
+     * @param etag the object's current ETag; the copy fails if it changed since
+     */
+    public void replaceContentType(String bucket, String object, String etag, String contentType) {
+        execute("copy", bucket, () -> minioClient.copyObject(CopyObjectArgs.builder()
+                .bucket(bucket)
+                .object(object)
+                .source(CopySource.builder().bucket(bucket).object(object).matchETag(etag).build())
+                .metadataDirective(Directive.REPLACE)
+                .headers(Map.of("Content-Type", contentType))
+                .build()));
+    }
+
+    /**
+     * Presigned POST form a client can upload the object with. Its policy pins
+     * the object name and bounds the size, so storage itself refuses anything
+     * larger than {@code maxSize}; no other field is allowed, so the object is
+     * stored with the default type whatever the client declares.
+     */
+    public PresignedPost presignedPost(String bucket, String object, Duration expiry, long maxSize) {
+        return execute("presign", bucket, () -> {
+            ensureBucket(bucket);
+            PostPolicy policy = new PostPolicy(bucket, ZonedDateTime.now().plus(expiry));
+            policy.addEqualsCondition("key", object);
+            policy.addContentLengthRangeCondition(1L, maxSize);
+            Map<String, String> fields = new LinkedHashMap<>();
+            fields.put("key", object);
+            fields.putAll(signer.getPresignedPostFormData(policy));
+            return new PresignedPost(publicUrl + "/" + bucket, fields);
+        });
+    }
+
+    /**
+     * Whether objects of the bucket are only readable through presigned URLs.
+     */
+    public boolean isPrivate(String bucket) {
+        return mediaPrivate && MEDIA_BUCKET.equals(bucket);
+    }
+
+    /**
+     * Presigned GET URL of an object, valid for at least half of
+     * {@code powercards.storage.media-url-ttl}.
+     * <p>
+     * Time is cut into windows of half the TTL and a URL is signed once per
+     * object and window, with the full TTL as expiry. Within a window the same
+     * URL is returned, so signing costs nothing on repeated reads and browsers
+     * can cache the media.
+     */
+    public String presignedGet(String bucket, String object) {
+        long window = System.currentTimeMillis() / mediaUrlTtl.dividedBy(2).toMillis();
+        return presignedUrls.get(new UrlKey(bucket, object, window), key -> execute("presign", bucket,
+                () -> signer.getPresignedObjectUrl(GetPresignedObjectUrlArgs.builder()
+                        .method(Method.GET)
+                        .bucket(bucket)
+                        .object(object)
+                        .expiry((int) mediaUrlTtl.toSeconds())
+                        .build())));
+    }
+
+    public void remove(String bucket, String object) {
+        execute("remove", bucket, () -> {
+            minioClient.removeObject(RemoveObjectArgs.builder().bucket(bucket).object(object).build());
+            return null;
+        });
+    }
+
+    /**
+     * Removes objects with a single batch request.
+     *
+     * @return names of the objects that could not be removed
+     */
+    public List<String> removeAll(String bucket, List<String> objects) {
+        if (objects.isEmpty()) {
+            return List.of();
+        }
+        return execute("remove-batch", bucket, () -> {
+            List<DeleteObject> batch = objects.stream().map(DeleteObject::new).toList();
+            List<String> failed = new ArrayList<>();
+            // The result is lazy: the request is only sent while iterating it
+            for (Result<DeleteError> result : minioClient.removeObjects(
+                    RemoveObjectsArgs.builder().bucket(bucket).objects(batch).build())) {
+                DeleteError error = result.get();
+                LOGGER.warn("Failed to remove {}/{}: {}", bucket, error.objectName(), error.message());
+                failed.add(error.objectName());
+            }
+            return failed;
+        });
+    }
+
+    /**
+     * Lists one page of a bucket in key order.
+     *
+     * @param startAfter last key of the previous page, {@code null} for the first
+     */
+    public List<Item> list(String bucket, String startAfter, int pageSize) {
+        return execute("list", bucket, () -> {
+            ListObjectsArgs.Builder args = ListObjectsArgs.builder().bucket(bucket).recursive(true).maxKeys(pageSize);
+            if (startAfter != null) {
+                args.startAfter(startAfter);
+            }
+            List<Item> page = new ArrayList<>(pageSize);
+            for (Result<Item> result : minioClient.listObjects(args.build())) {
+                page.add(result.get());
+                if (page.size() >= pageSize) {
+                    break;
+                }
+            }
+            return page;
+        });
+    }
+
+    /**
+     * Public URL of an object, as stored in the database.
+     */
+    public String url(String bucket, String object) {
+        return publicUrl + "/" + bucket + "/" + object;
+    }
+
+    /**
+     * Object name behind a URL built by {@link #url}, or {@code null} when the
+     * URL does not point into the bucket.
+     */
+    public String objectName(String bucket, String url) {
+        return objectKey(bucket, url);
+    }
+
+    /**
+     * Same as {@link #objectName}, for entities that keep the object name of
+     * their URLs. Only the bucket is matched, so URLs stored under another
+     * public base URL resolve to the same object.
+     */
+    public static String objectKey(String bucket, String url) {
+        String marker = "/" + bucket + "/";
+        int index = url == null ? -1 : url.indexOf(marker);
+        return index < 0 ? null : url.substring(index + marker.length());
+    }
+
+    private void ensureBucket(String bucket) throws Exception {
+        if (readyBuckets.contains(bucket)) {
+            return;
+        }
+        boolean created = false;
+        if (!minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucket).build())) {
+            LOGGER.info("Creating bucket: {}", bucket);
+            minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucket).build());
+            created = true;
+        }
+        if (isPrivate(bucket)) {
+            if (!created) {
+                // Buckets created by earlier versions were public
+                minioClient.deleteBucketPolicy(DeleteBucketPolicyArgs.builder().bucket(bucket).build());
+            }
+        } else if (created) {
+            // Public read-only policy
+            String policy = """
+                    {
+                        "Version": "2012-10-17",
+                        "Statement": [
+                            {
+                                "Effect": "Allow",
+                                "Principal": "*",
+                                "Action": ["s3:GetObject"],
+                                "Resource": ["arn:aws:s3:::%s/*"]
+                            }
+                        ]
+                    }
+                    """.formatted(bucket);
+            minioClient.setBucketPolicy(SetBucketPolicyArgs.builder().bucket(bucket).config(policy).build());
+            LOGGER.info("Public read-only policy applied to bucket: {}", bucket);
+        }
+        readyBuckets.add(bucket);
+    }
+
+    private <T> T execute(String operation, String bucket, Call<T> call) {
+        Timer.Sample sample = Timer.start(registry);
+        String outcome = "error";
+        try {
+            for (int attempt = 1;; attempt++) {
+                try {
+                    T result = call.execute();
+                    outcome = "success";
+                    return result;
+                } catch (Exception e) {
+                    if (attempt >= maxAttempts || !isTransient(e)) {
+                        throw new RuntimeException("Storage " + operation + " on " + bucket + " failed", e);
+                    }
+                    long delay = retryBackoff.toMillis() << (attempt - 1);
+                    delay += ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+                    LOGGER.debug("Storage {} on {} failed (attempt {}), retrying in {} ms: {}", operation, bucket,
+                            attempt, delay, e.getMessage());
+                    Thread.sleep(delay);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Storage " + operation + " on " + bucket + " interrupted", e);
+        } finally {
+            sample.stop(registry.timer("powercards.storage.requests",
+                    "operation", operation, "bucket", bucket, "outcome", outcome));
+        }
+    }
+
+    private static boolean isTransient(Exception e) {
+        if (e instanceof IOException || e instanceof ServerException) {
+            return true;
+        }
+        return e instanceof ErrorResponseException ere
+                && ere.errorResponse() != null
+                && TRANSIENT_CODES.contains(ere.errorResponse().code());
+    }
+}
@@ -1,39 +1,85 @@
 package br.com.powercards.services;
 
+import br.com.powercards.dto.PresignedUploadResponse;
 import br.com.powercards.model.User;
-import io.minio.MinioClient;
-import io.minio.PutObjectArgs;
-import io.minio.BucketExistsArgs;
-import io.minio.MakeBucketArgs;
-import io.minio.SetBucketPolicyArgs;
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
+import jakarta.ws.rs.BadRequestException;
 
 import java.util.Set;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.InputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
 
 @ApplicationScoped
 public class ProfileService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ProfileService.class);
-    private static final String AVATAR_BUCKET = "user-avatars";
-    private static final String BANNER_BUCKET = "user-banners";
+    private static final String AVATAR_BUCKET = ObjectStorageGateway.AVATAR_BUCKET;
+    private static final String BANNER_BUCKET = ObjectStorageGateway.BANNER_BUCKET;
 
     @Inject
-    MinioClient minioClient;
+    ObjectStorageGateway storage;
 
     @Inject
     VaultService vaultService;
 
+    @ConfigProperty(name = "powercards.storage.presign-expiry", defaultValue = "PT15M")
+    Duration presignExpiry;
+
+    @ConfigProperty(name = "powercards.storage.max-upload-size", defaultValue = "52428800")
+    long maxUploadSize;
+
+    @ConfigProperty(name = "powercards.profile.avatar-sizes", defaultValue = "64,128,256")
+    List<Integer> avatarSizes;
+
+    @ConfigProperty(name = "powercards.profile.banner-widths", defaultValue = "640,1280,1920")
+    List<Integer> bannerWidths;
+
+    @ConfigProperty(name = "powercards.profile.image-quality", defaultValue = "0.85")
+    float quality;
+
+    @ConfigProperty(name = "powercards.media.derivatives.max-pixels", defaultValue = "50000000")
+    long maxPixels;
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    /**
+     * Objects written for one upload.
+     *
+     * @param url      URL of the primary object
+     * @param variants comma separated sizes, ascending
+     * @param objects  names of every object written
+     */
+    record StoredImage(String url, String variants, List<String> objects) {
+    }
+
     private static final Set<String> VALID_AI_PROVIDERS = Set.of("openai", "gemini", "deepseek");
 
-    @ConfigProperty(name = "quarkus.minio.url")
-    String minioUrl;
+    private static final Set<String> VALID_AI_ROUTINGS = Set.of("single", "hedged");
+
+    // Vault keys of the alternate providers' API keys, followed by the provider
+    private static final String ALTERNATE_KEY_PREFIX = "ai_api_key.";
 
     @Transactional
     public User getOrCreateUser(String keycloakId) {
@@ -81,116 +127,430 @@ public class ProfileService {
             return true; // nothing to do
         }
         try {
-            vaultService.writeSecret(keycloakId, "ai_api_key", aiApiKey);
-            return true;
+            vaultService.writeSecret(keycloakId, "ai_api_key", aiApiKey.isBlank() ? null : aiApiKey);
         } catch (Exception e) {
             LOGGER.error("Failed to save AI API key to Vault for {}: {}", keycloakId, e.getMessage());
             return false;
         }
+        setHasAiApiKey(keycloakId, !aiApiKey.isBlank());
+        return true;
     }
 
+    /**
+     * Set how AI calls are routed between the user's providers: "single" uses
+     * the selected provider only, "hedged" also the alternate providers the
+     * user has a key for. Blank resets to "single".
+     */
+    @Transactional
+    public User updateAiRouting(String keycloakId, String aiRouting) {
+        User user = User.findOrCreate(keycloakId);
+        if (aiRouting.isBlank()) {
+            user.aiRouting = null;
+        } else if (VALID_AI_ROUTINGS.contains(aiRouting)) {
+            user.aiRouting = aiRouting;
+        } else {
+            LOGGER.warn("Invalid AI routing: {}", aiRouting);
+        }
+        return user;
+    }
+
+    /**
+     * Save the keys of alternate AI providers to Vault, by provider; a blank
+     * key removes it. Returns true if successful, false on failure.
+     */
+    public boolean saveAiAlternateKeys(String keycloakId, Map<String, String> keys) {
+        Map<String, String> secrets = new HashMap<>();
+        keys.forEach((provider, key) -> {
+            if (VALID_AI_PROVIDERS.contains(provider) && key != null) {
+                secrets.put(ALTERNATE_KEY_PREFIX + provider, key.isBlank() ? null : key);
+            } else {
+                LOGGER.warn("Invalid AI provider: {}", provider);
+            }
+        });
+        if (secrets.isEmpty()) {
+            return true;
+        }
+        try {
+            vaultService.writeSecrets(keycloakId, secrets);
+        } catch (Exception e) {
+            LOGGER.error("Failed to save AI API keys to Vault for {}: {}", keycloakId, e.getMessage());
+            return false;
+        }
+        updateAiAlternateProviders(keycloakId, secrets);
+        return true;
+    }
+
+    /**
+     * The user's AI keys by provider: the key of the selected provider and
+     * those of the alternate ones, in that order.
+     */
+    public Map<String, String> getAiApiKeys(String keycloakId, String aiProvider) {
+        Map<String, String> secrets = vaultService.readSecrets(keycloakId);
+        Map<String, String> keys = new LinkedHashMap<>();
+        String primary = secrets.get("ai_api_key");
+        if (aiProvider != null && primary != null && !primary.isBlank()) {
+            keys.put(aiProvider, primary);
+        }
+        secrets.forEach((name, key) -> {
+            if (name.startsWith(ALTERNATE_KEY_PREFIX) && key != null && !key.isBlank()) {
+                keys.putIfAbsent(name.substring(ALTERNATE_KEY_PREFIX.length()), key);
+            }
+        });
+        return keys;
+    }
+
+    /**
+     * Providers the user has an alternate key for, sorted, from the list kept
+     * on the user row so that profile loads do not go to Vault. Like
+     * {@link #hasAiApiKey}, rows from before the list are checked against
+     * Vault until it answers.
+     */
+    public List<String> getAiAlternateProviders(String keycloakId) {
+        User user = User.findByKeycloakId(keycloakId);
+        if (user != null && user.aiAlternateProviders != null) {
+            return splitProviders(user.aiAlternateProviders);
+        }
+        Optional<Map<String, String>> secrets = vaultService.lookupSecrets(keycloakId);
+        if (secrets.isEmpty()) {
+            // Vault could not be read: none for now, the list stays unset
+            return List.of();
+        }
+        List<String> providers = secrets.get().entrySet().stream()
+                .filter(secret -> secret.getKey().startsWith(ALTERNATE_KEY_PREFIX) && secret.getValue() != null
+                        && !secret.getValue().isBlank())
+                .map(secret -> secret.getKey().substring(ALTERNATE_KEY_PREFIX.length()))
+                .sorted()
+                .toList();
+        if (user != null) {
+            setAiAlternateProviders(keycloakId, providers);
+        }
+        return providers;
+    }
+
+    private void setAiAlternateProviders(String keycloakId, List<String> providers) {
+        try {
+            QuarkusTransaction.requiringNew().run(
+                    () -> User.findOrCreate(keycloakId).aiAlternateProviders = String.join(",", providers));
+        } catch (Exception e) {
+            // The list stays unset, so the next load reads Vault again
+            LOGGER.warn("Failed to record the alternate AI providers of user {}: {}", keycloakId, e.getMessage());
+        }
+    }
+
+    // Applies keys just written to Vault, a null key being removed, to the list on the user row
+    private void updateAiAlternateProviders(String keycloakId, Map<String, String> written) {
+        try {
+            QuarkusTransaction.requiringNew().run(() -> {
+                User user = User.findOrCreate(keycloakId);
+                if (user.aiAlternateProviders == null) {
+                    // Never checked: the next load reads Vault, which has the keys just written
+                    return;
+                }
+                TreeSet<String> providers = new TreeSet<>(splitProviders(user.aiAlternateProviders));
+                written.forEach((name, key) -> {
+                    String provider = name.substring(ALTERNATE_KEY_PREFIX.length());
+                    if (key == null) {
+                        providers.remove(provider);
+                    } else {
+                        providers.add(provider);
+                    }
+                });
+                user.aiAlternateProviders = String.join(",", providers);
+            });
+        } catch (Exception e) {
+            LOGGER.warn("Failed to record the alternate AI providers of user {}: {}", keycloakId, e.getMessage());
+        }
+    }
+
+    private static List<String> splitProviders(String providers) {
+        return providers.isEmpty() ? List.of() : List.of(providers.split(","));
+    }
+
+    /**
+     * Whether the user has an AI API key, from the flag kept on the user row
+     * so that profile loads do not go to Vault. Rows from before the flag are
+     * checked against Vault until it answers; the flag is only recorded from
+     * an answer, never from a failed read.
+     */
     public boolean hasAiApiKey(String keycloakId) {
-        String key = vaultService.readSecret(keycloakId, "ai_api_key");
-        return key != null && !key.isBlank();
+        User user = User.findByKeycloakId(keycloakId);
+        if (user != null && user.hasAiApiKey != null) {
+            return user.hasAiApiKey;
+        }
+        Optional<Map<String, String>> secrets = vaultService.lookupSecrets(keycloakId);
+        if (secrets.isEmpty()) {
+            // Vault could not be read: no key for now, the flag stays unset
+            return false;
+        }
+        String key = secrets.get().get("ai_api_key");
+        boolean hasKey = key != null && !key.isBlank();
+        if (user != null) {
+            setHasAiApiKey(keycloakId, hasKey);
+        }
+        return hasKey;
+    }
+
+    private void setHasAiApiKey(String keycloakId, boolean hasKey) {
+        try {
+            QuarkusTransaction.requiringNew().run(() -> User.findOrCreate(keycloakId).hasAiApiKey = hasKey);
+        } catch (Exception e) {
+            // The flag stays unset, so the next check reads Vault again
+            LOGGER.warn("Failed to record whether user {} has an AI API key: {}", keycloakId, e.getMessage());
+        }
     }
 
     public String getAiApiKey(String keycloakId) {
         return vaultService.readSecret(keycloakId, "ai_api_key");
     }
 
-    @Transactional
-    public User uploadAvatar(String keycloakId, InputStream fileStream, String filename, String contentType,
+    /**
+     * Stores the avatar as square variants and then points the user to them.
+     * The transaction only covers the metadata write; the objects are removed
+     * again if that fails. The replaced objects are left for the media garbage
+     * collector.
+     */
+    public User uploadAvatar(String keycloakId, Path file, String filename, String contentType,
             long size) {
-        try {
-            createBucketIfNotExists(AVATAR_BUCKET);
+        Long userId = QuarkusTransaction.requiringNew().call(() -> User.findOrCreate(keycloakId).id);
+        byte[] data = readUpload(file, size);
+        StoredImage image = storeImage(AVATAR_BUCKET, "avatar-" + userId, data, avatarSizes, true);
+        return saveAvatar(keycloakId, userId, image);
+    }
 
-            User user = User.findOrCreate(keycloakId);
+    /**
+     * Stores the banner as bounded variants and then points the user to them.
+     * The transaction only covers the metadata write; the objects are removed
+     * again if that fails. The replaced objects are left for the media garbage
+     * collector.
+     */
+    public User uploadBanner(String keycloakId, Path file, String filename, String contentType,
+            long size) {
+        Long userId = QuarkusTransaction.requiringNew().call(() -> User.findOrCreate(keycloakId).id);
+        byte[] data = readUpload(file, size);
+        StoredImage image = storeImage(BANNER_BUCKET, "banner-" + userId, data, bannerWidths, false);
+        return saveBanner(keycloakId, userId, image);
+    }
 
-            // Generate unique filename with user ID prefix
-            String objectName = "avatar-" + user.id + "-" + System.currentTimeMillis() + getExtension(filename);
+    public PresignedUploadResponse presignAvatarUpload(String keycloakId, String filename) {
+        return presignUpload(keycloakId, AVATAR_BUCKET, "avatar", filename);
+    }
 
-            minioClient.putObject(
-                    PutObjectArgs.builder()
-                            .bucket(AVATAR_BUCKET)
-                            .object(objectName)
-                            .stream(fileStream, size, -1)
-                            .contentType(contentType)
-                            .build());
+    public PresignedUploadResponse presignBannerUpload(String keycloakId, String filename) {
+        return presignUpload(keycloakId, BANNER_BUCKET, "banner", filename);
+    }
 
-            user.avatarUrl = minioUrl + "/" + AVATAR_BUCKET + "/" + objectName;
-            LOGGER.info("Avatar uploaded for user {}: {}", keycloakId, user.avatarUrl);
+    public User confirmAvatarUpload(String keycloakId, String objectName) {
+        Long userId = QuarkusTransaction.requiringNew().call(() -> User.findOrCreate(keycloakId).id);
+        byte[] data = confirmUpload(userId, AVATAR_BUCKET, "avatar", objectName);
+        StoredImage image = storeUpload(AVATAR_BUCKET, "avatar-" + userId, data, objectName, avatarSizes, true);
+        User user = saveAvatar(keycloakId, userId, image);
+        // The raw upload was replaced by the stored image
+        removeObject(AVATAR_BUCKET, objectName);
+        return user;
+    }
 
-            return user;
-        } catch (Exception e) {
-            LOGGER.error("Failed to upload avatar for user {}: {}", keycloakId, e.getMessage());
-            throw new RuntimeException("Avatar upload failed", e);
+    public User confirmBannerUpload(String keycloakId, String objectName) {
+        Long userId = QuarkusTransaction.requiringNew().call(() -> User.findOrCreate(keycloakId).id);
+        byte[] data = confirmUpload(userId, BANNER_BUCKET, "banner", objectName);
+        StoredImage image = storeUpload(BANNER_BUCKET, "banner-" + userId, data, objectName, bannerWidths, false);
+        User user = saveBanner(keycloakId, userId, image);
+        removeObject(BANNER_BUCKET, objectName);
+        return user;
+    }
+
+    /**
+     * Issues a presigned POST form for a new profile image object. Nothing is
+     * written to the database until the upload is confirmed.
+     */
+    private PresignedUploadResponse presignUpload(String keycloakId, String bucket, String kind,
+            String filename) {
+        Long userId = QuarkusTransaction.requiringNew().call(() -> User.findOrCreate(keycloakId).id);
+        String objectName = kind + "-" + userId + "-" + System.currentTimeMillis() + getExtension(filename);
+        ObjectStorageGateway.PresignedPost upload = storage.presignedPost(bucket, objectName, presignExpiry,
+                maxUploadSize);
+        return new PresignedUploadResponse(upload.url(), upload.fields(), objectName,
+                Instant.now().plus(presignExpiry));
+    }
+
+    /**
+     * Checks that a presigned upload belongs to the user and has landed in
+     * storage within the size limit.
+     *
+     * @return content of the object
+     */
+    private byte[] confirmUpload(Long userId, String bucket, String kind, String objectName) {
+        if (objectName == null || !objectName.startsWith(kind + "-" + userId + "-")) {
+            throw new BadRequestException("Unknown upload");
+        }
+        ObjectStorageGateway.ObjectInfo info = storage.stat(bucket, objectName);
+        if (info == null) {
+            throw new BadRequestException("Upload not found");
         }
+        if (info.size() > maxUploadSize) {
+            removeObject(bucket, objectName);
+            throw new BadRequestException("Upload too large");
+        }
+        return storage.get(bucket, objectName);
     }
 
-    @Transactional
-    public User uploadBanner(String keycloakId, InputStream fileStream, String filename, String contentType,
-            long size) {
+    /**
+     * Same as {@link #storeImage}, for a presigned upload: the raw object is
+     * removed when it is not an image, as nothing would reference it.
+     */
+    private StoredImage storeUpload(String bucket, String stem, byte[] data, String objectName, List<Integer> sizes,
+            boolean square) {
         try {
-            createBucketIfNotExists(BANNER_BUCKET);
+            return storeImage(bucket, stem, data, sizes, square);
+        } catch (BadRequestException e) {
+            removeObject(bucket, objectName);
+            throw e;
+        }
+    }
 
-            User user = User.findOrCreate(keycloakId);
+    private byte[] readUpload(Path file, long size) {
+        if (size > maxUploadSize) {
+            throw new BadRequestException("Upload too large");
+        }
+        try {
+            return Files.readAllBytes(file);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read upload", e);
+        }
+    }
 
-            // Generate unique filename with user ID prefix
-            String objectName = "banner-" + user.id + "-" + System.currentTimeMillis() + getExtension(filename);
+    /**
+     * Decodes the image once and stores one re-encoded variant per size under a
+     * name derived from the content hash, so the objects never change and are
+     * served as immutable. The largest variant is the primary object, the others
+     * are named {@code <primary>@<size>.<ext>}. Only re-encoded images are
+     * stored, so nothing the client sent is ever served as it is.
+     *
+     * @param square whether variants are cropped to squares of each size, or
+     *               only bounded by it
+     * @throws BadRequestException when the content is not a decodable image
+     */
+    StoredImage storeImage(String bucket, String stem, byte[] data, List<Integer> sizes, boolean square) {
+        List<String> stored = new ArrayList<>();
+        try {
+            BufferedImage image = ImageScaler.decode(data, maxPixels);
+            if (image == null) {
+                throw new IOException("Not an image");
+            }
 
-            minioClient.putObject(
-                    PutObjectArgs.builder()
-                            .bucket(BANNER_BUCKET)
-                            .object(objectName)
-                            .stream(fileStream, size, -1)
-                            .contentType(contentType)
-                            .build());
+            List<Integer> ascending = sizes.stream().sorted().toList();
+            int limit = square ? Math.min(image.getWidth(), image.getHeight())
+                    : Math.max(image.getWidth(), image.getHeight());
+            // Never upscale, but always keep the smallest size
+            List<Integer> targets = ascending.stream().filter(s -> s <= limit).toList();
+            if (targets.isEmpty()) {
+                targets = List.of(ascending.get(0));
+            }
 
-            user.bannerUrl = minioUrl + "/" + BANNER_BUCKET + "/" + objectName;
-            LOGGER.info("Banner uploaded for user {}: {}", keycloakId, user.bannerUrl);
+            String base = stem + "-" + hash(data);
+            String primary = null;
+            List<String> variants = new ArrayList<>();
+            for (int i = targets.size() - 1; i >= 0; i--) {
+                int target = targets.get(i);
+                ImageScaler.Encoded encoded = ImageScaler.encode(
+                        square ? ImageScaler.cover(image, target, target) : ImageScaler.fit(image, target), quality);
+                boolean isPrimary = primary == null;
+                String objectName = base + (isPrimary ? "" : "@" + target) + "." + encoded.extension();
+                put(bucket, objectName, encoded.data(), encoded.contentType(), stored);
+                if (isPrimary) {
+                    primary = storage.url(bucket, objectName);
+                }
+                variants.add(0, String.valueOf(target));
+            }
+            return new StoredImage(primary, String.join(",", variants), stored);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Failed to store image {}: {}", stem, e.getMessage());
+            stored.forEach(objectName -> removeObject(bucket, objectName));
+            if (e instanceof IOException) {
+                throw new BadRequestException("Unsupported image");
+            }
+            throw new RuntimeException("Image upload failed", e);
+        }
+    }
 
+    private void put(String bucket, String objectName, byte[] data, String contentType, List<String> stored) {
+        storage.put(bucket, objectName, () -> new ByteArrayInputStream(data), data.length, contentType, IMMUTABLE);
+        stored.add(objectName);
+    }
+
+    private User saveAvatar(String keycloakId, Long userId, StoredImage image) {
+        try {
+            User user = QuarkusTransaction.requiringNew().call(() -> {
+                User u = User.findById(userId);
+                u.avatarUrl = image.url();
+                u.avatarVariants = image.variants();
+                return u;
+            });
+            LOGGER.info("Avatar uploaded for user {}: {}", keycloakId, image.url());
             return user;
-        } catch (Exception e) {
-            LOGGER.error("Failed to upload banner for user {}: {}", keycloakId, e.getMessage());
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to save avatar for user {}: {}", keycloakId, e.getMessage());
+            image.objects().forEach(objectName -> removeObject(AVATAR_BUCKET, objectName));
+            throw new RuntimeException("Avatar upload failed", e);
+        }
+    }
+
+    private User saveBanner(String keycloakId, Long userId, StoredImage image) {
+        try {
+            User user = QuarkusTransaction.requiringNew().call(() -> {
+                User u = User.findById(userId);
+                u.bannerUrl = image.url();
+                u.bannerVariants = image.variants();
+                return u;
+            });
+            LOGGER.info("Banner uploaded for user {}: {}", keycloakId, image.url());
+            return user;
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to save banner for user {}: {}", keycloakId, e.getMessage());
+            image.objects().forEach(objectName -> removeObject(BANNER_BUCKET, objectName));
             throw new RuntimeException("Banner upload failed", e);
         }
     }
 
-    private String getExtension(String filename) {
-        if (filename == null)
-            return ".png";
-        int lastDot = filename.lastIndexOf('.');
-        return lastDot > 0 ? filename.substring(lastDot) : ".png";
+    /**
+     * URLs of an image's variants by size, from the primary URL and the sizes
+     * recorded with it. Empty for images stored without variants.
+     */
+    public static Map<Integer, String> variantUrls(String url, String variants) {
+        Map<Integer, String> urls = new LinkedHashMap<>();
+        if (url == null || variants == null || variants.isBlank()) {
+            return urls;
+        }
+        int dot = url.lastIndexOf('.');
+        String[] sizes = variants.split(",");
+        for (int i = 0; i < sizes.length; i++) {
+            int size = Integer.parseInt(sizes[i]);
+            // The largest size is the primary object itself
+            urls.put(size, i == sizes.length - 1 ? url : url.substring(0, dot) + "@" + size + url.substring(dot));
+        }
+        return urls;
     }
 
-    private void createBucketIfNotExists(String bucketName) {
+    private static String hash(byte[] data) {
         try {
-            boolean found = minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build());
-            if (!found) {
-                LOGGER.info("Creating bucket: {}", bucketName);
-                minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucketName).build());
-
-                // Set public read-only policy
-                String policy = """
-                        {
-                            "Version": "2012-10-17",
-                            "Statement": [
-                                {
-                                    "Effect": "Allow",
-                                    "Principal": "*",
-                                    "Action": ["s3:GetObject"],
-                                    "Resource": ["arn:aws:s3:::%s/*"]
-                                }
-                            ]
-                        }
-                        """.formatted(bucketName);
-                minioClient.setBucketPolicy(
-                        SetBucketPolicyArgs.builder().bucket(bucketName).config(policy).build());
-                LOGGER.info("Public read-only policy applied to bucket: {}", bucketName);
-            }
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void removeObject(String bucketName, String objectName) {
+        try {
+            storage.remove(bucketName, objectName);
         } catch (Exception e) {
-            LOGGER.error("Error initializing bucket {}: {}", bucketName, e.getMessage());
-            throw new RuntimeException("Could not initialize bucket", e);
+            LOGGER.warn("Failed to remove object {}/{}: {}", bucketName, objectName, e.getMessage());
         }
     }
+
+    private String getExtension(String filename) {
+        if (filename == null)
+            return ".png";
+        int lastDot = filename.lastIndexOf('.');
+        return lastDot > 0 ? filename.substring(lastDot) : ".png";
+    }
 }
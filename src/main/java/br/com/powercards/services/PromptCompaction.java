@@ -0,0 +1,113 @@
+package br.com.powercards.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replaces the media and heavy markup of fields with short placeholders before
+ * they are sent for enhancement, and puts them back in the answer.
+ * <p>
+ * Media references, inline data and styled tags are most of the characters
+ * of many imported notes, cost tokens without helping the model, and are
+ * what it most often mangles. The model only sees {@code [[m0]]},
+ * {@code [[m1]]}, ... which the prompts ask it to keep; a placeholder it drops
+ * is appended back to the end of its field, so no media is lost.
+ */
+public final class PromptCompaction {
+
+    private static final String MARKER = "[[m";
+
+    // Media elements and blocks, standalone media tags, sounds, comments and opening tags with long attributes
+    private static final Pattern HEAVY = Pattern.compile(
+            "<(audio|video|object|iframe|svg|style|script)\\b.*?</\\1\\s*>"
+                    + "|<(img|source|embed|track)\\b[^>]*>"
+                    + "|\\[(sound|source):[^\\]]*\\]"
+                    + "|<!--.*?-->"
+                    + "|<[a-zA-Z][a-zA-Z0-9]*\\s[^>]{40,}>",
+            Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\[\\[m(\\d+)\\]\\]");
+
+    /**
+     * Compacted fields of one note, and what their placeholders stand for.
+     */
+    public record Compacted(List<String> fields, List<String> originals, List<Integer> owners) {
+
+        /**
+         * Puts the originals back into enhanced fields. A placeholder missing
+         * from the answer is appended to the field it came from.
+         */
+        public List<String> restore(List<String> enhanced) {
+            if (originals.isEmpty() || enhanced == null) {
+                return enhanced;
+            }
+            boolean[] restored = new boolean[originals.size()];
+            List<StringBuilder> fields = new ArrayList<>(enhanced.size());
+            for (String field : enhanced) {
+                StringBuilder out = new StringBuilder();
+                if (field != null) {
+                    Matcher matcher = PLACEHOLDER.matcher(field);
+                    while (matcher.find()) {
+                        int index = Integer.parseInt(matcher.group(1));
+                        // Repeated or invented placeholders stand for nothing
+                        String replacement = "";
+                        if (index < originals.size() && !restored[index]) {
+                            restored[index] = true;
+                            replacement = originals.get(index);
+                        }
+                        matcher.appendReplacement(out, Matcher.quoteReplacement(replacement));
+                    }
+                    matcher.appendTail(out);
+                }
+                fields.add(out);
+            }
+            for (int i = 0; i < originals.size(); i++) {
+                if (!restored[i] && !fields.isEmpty()) {
+                    fields.get(Math.min(owners.get(i), fields.size() - 1)).append(originals.get(i));
+                }
+            }
+            List<String> result = new ArrayList<>(fields.size());
+            for (int i = 0; i < fields.size(); i++) {
+                result.add(enhanced.get(i) == null ? null : fields.get(i).toString());
+            }
+            return result;
+        }
+    }
+
+    private PromptCompaction() {
+    }
+
+    /**
+     * Compacts the fields of one note. Fields that already contain something
+     * looking like a placeholder are sent as they are.
+     */
+    public static Compacted compact(List<String> fields) {
+        List<String> originals = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        for (String field : fields) {
+            if (field != null && field.contains(MARKER)) {
+                return new Compacted(fields, List.of(), List.of());
+            }
+        }
+        List<String> compacted = new ArrayList<>(fields.size());
+        for (int i = 0; i < fields.size(); i++) {
+            String field = fields.get(i);
+            if (field == null) {
+                compacted.add(null);
+                continue;
+            }
+            Matcher matcher = HEAVY.matcher(field);
+            StringBuilder out = new StringBuilder(field.length());
+            while (matcher.find()) {
+                matcher.appendReplacement(out, Matcher.quoteReplacement(MARKER + originals.size() + "]]"));
+                originals.add(matcher.group());
+                owners.add(i);
+            }
+            matcher.appendTail(out);
+            compacted.add(out.toString());
+        }
+        return new Compacted(compacted, originals, owners);
+    }
+}
@@ -0,0 +1,164 @@
+package br.com.powercards.services;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bulkhead and circuit breaker of one AI provider.
+ * <p>
+ * At most {@code maxInFlight} calls run at once; up to {@code maxQueued} more
+ * wait for a slot, each for no longer than {@code queueTimeout}. After
+ * {@code failureThreshold} consecutive {@link AIProviderUnavailableException}s
+ * the breaker opens and calls fail immediately for {@code openDuration}; then
+ * a single probe call is let through, which closes it again or reopens it.
+ * Other failures, such as a rejected or rate limited key, say nothing about
+ * the provider and do not count.
+ * <p>
+ * The guard also keeps the provider's rolling latency and error rate,
+ * weighted towards recent calls, from which routing ranks providers.
+ */
+final class ProviderGuard {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    // Weight of the latest call in the rolling statistics
+    private static final double ALPHA = 0.2;
+
+    // An error rate of 10% counts as much as doubling the latency
+    private static final double ERROR_PENALTY = 10;
+
+    private final String provider;
+    private final int maxInFlight;
+    private final Semaphore slots;
+    private final int maxQueued;
+    private final Duration queueTimeout;
+    private final int failureThreshold;
+    private final Duration openDuration;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicBoolean probing = new AtomicBoolean();
+    private volatile long openUntil = System.nanoTime();
+
+    // Rolling statistics, guarded by this; a negative latency means no call yet
+    private double latencyMillis = -1;
+    private double errorRate;
+
+    ProviderGuard(String provider, int maxInFlight, int maxQueued, Duration queueTimeout, int failureThreshold,
+            Duration openDuration) {
+        this.provider = provider;
+        this.maxInFlight = maxInFlight;
+        this.slots = new Semaphore(maxInFlight, true);
+        this.maxQueued = maxQueued;
+        this.queueTimeout = queueTimeout;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * Runs a call to the provider, or fails fast with an
+     * {@link AIProviderUnavailableException} when it is degraded or busy.
+     */
+    <T> T call(Supplier<T> call) {
+        boolean probe = false;
+        if (failures.get() >= failureThreshold) {
+            // Open: only one probe once the open period is over
+            if (System.nanoTime() - openUntil < 0 || !probing.compareAndSet(false, true)) {
+                throw new AIProviderUnavailableException("AI provider " + provider + " is temporarily unavailable");
+            }
+            probe = true;
+        }
+        try {
+            acquire();
+            long start = System.nanoTime();
+            try {
+                T result = call.get();
+                failures.set(0);
+                record(System.nanoTime() - start, true);
+                return result;
+            } catch (AIRateLimitedException e) {
+                // One user's key over its limit: the provider itself answered
+                throw e;
+            } catch (AIProviderUnavailableException e) {
+                record(System.nanoTime() - start, false);
+                if (failures.incrementAndGet() >= failureThreshold) {
+                    openUntil = System.nanoTime() + openDuration.toNanos();
+                }
+                throw e;
+            } finally {
+                slots.release();
+            }
+        } finally {
+            if (probe) {
+                probing.set(false);
+            }
+        }
+    }
+
+    private void acquire() {
+        if (slots.tryAcquire()) {
+            return;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            throw new AIProviderUnavailableException("Too many pending calls to AI provider " + provider);
+        }
+        try {
+            if (!slots.tryAcquire(queueTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new AIProviderUnavailableException("AI provider " + provider + " is busy");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AIProviderUnavailableException("Interrupted while waiting for AI provider " + provider, e);
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    private synchronized void record(long nanos, boolean success) {
+        double millis = nanos / 1_000_000.0;
+        latencyMillis = latencyMillis < 0 ? millis : ALPHA * millis + (1 - ALPHA) * latencyMillis;
+        errorRate = ALPHA * (success ? 0 : 1) + (1 - ALPHA) * errorRate;
+    }
+
+    /**
+     * @return the rolling latency of calls, or a negative value before the
+     *         first call
+     */
+    synchronized double latencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * Routing cost of the provider, lower is better: its rolling latency
+     * penalized by its error rate. Providers never called and providers whose
+     * breaker is open rank last.
+     */
+    synchronized double score() {
+        if (latencyMillis < 0 || state() == State.OPEN) {
+            return Double.MAX_VALUE;
+        }
+        return latencyMillis * (1 + ERROR_PENALTY * errorRate);
+    }
+
+    State state() {
+        if (failures.get() < failureThreshold) {
+            return State.CLOSED;
+        }
+        return System.nanoTime() - openUntil < 0 ? State.OPEN : State.HALF_OPEN;
+    }
+
+    int inFlight() {
+        return maxInFlight - slots.availablePermits();
+    }
+
+    int queued() {
+        return queued.get();
+    }
+}
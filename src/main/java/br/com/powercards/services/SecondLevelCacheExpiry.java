@@ -0,0 +1,100 @@
+package br.com.powercards.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.quarkus.arc.Arc;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+import jakarta.persistence.metamodel.PluralAttribute;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Expires second-level cache entries a fixed time after they were cached.
+ * <p>
+ * Regions are per JVM and only expire entries that go unread, so without it
+ * an entry read often enough would never see writes made through other
+ * instances. Entities registered with {@link Listener} are tracked from the
+ * first time they are loaded or written, and evicted one by one
+ * {@code powercards.orm.cache.max-age} later, or after the entity's own
+ * {@code powercards.orm.cache."<entity>".max-age}. Entries are cached at
+ * different times, so they also expire, and are reloaded, at different times.
+ */
+@ApplicationScoped
+public class SecondLevelCacheExpiry {
+
+    /**
+     * Entity listener of the cached entities, reporting them to the expiry.
+     */
+    public static class Listener {
+
+        @PostLoad
+        @PostPersist
+        @PostUpdate
+        void cached(Object entity) {
+            Arc.container().instance(SecondLevelCacheExpiry.class).get().cached(entity);
+        }
+    }
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    @ConfigProperty(name = "powercards.orm.cache.max-age", defaultValue = "PT5M")
+    Duration maxAge;
+
+    @ConfigProperty(name = "powercards.orm.cache.max-tracked", defaultValue = "100000")
+    long maxTracked;
+
+    // Ids of the cached entities by type, each expiring after the type's max age
+    private final Map<Class<?>, Cache<Object, Boolean>> tracked = new ConcurrentHashMap<>();
+
+    void cached(Object entity) {
+        Object id = sessionFactory.getPersistenceUnitUtil().getIdentifier(entity);
+        if (id != null) {
+            // Not reset by later reads: the age counts from when the entry was cached
+            tracked.computeIfAbsent(Hibernate.getClass(entity), this::tracker).asMap().putIfAbsent(id, Boolean.TRUE);
+        }
+    }
+
+    private Cache<Object, Boolean> tracker(Class<?> type) {
+        Duration age = ConfigProvider.getConfig()
+                .getOptionalValue("powercards.orm.cache.\"" + type.getName() + "\".max-age", Duration.class)
+                .orElse(maxAge);
+        List<String> collectionRoles = sessionFactory.getMetamodel().entity(type).getPluralAttributes().stream()
+                .map(PluralAttribute::getName)
+                .map(name -> type.getName() + "." + name)
+                .toList();
+        return Caffeine.newBuilder()
+                .expireAfterWrite(age)
+                // Bounded: an id dropped for size is evicted early, never kept longer
+                .maximumSize(maxTracked)
+                .scheduler(Scheduler.systemScheduler())
+                .<Object, Boolean>removalListener((id, cached, cause) -> {
+                    if (cause != RemovalCause.EXPLICIT && cause != RemovalCause.REPLACED) {
+                        evict(type, collectionRoles, id);
+                    }
+                })
+                .build();
+    }
+
+    private void evict(Class<?> type, List<String> collectionRoles, Object id) {
+        org.hibernate.Cache cache = sessionFactory.getCache();
+        cache.evictEntityData(type, id);
+        // Collections are cached apart, keyed by their owner
+        for (String role : collectionRoles) {
+            cache.evictCollectionData(role, id);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package br.com.powercards.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+/**
+ * Publishes the hit rate of every second-level cache region as the
+ * {@code powercards.orm.cache.hit-rate} gauge, tagged by region, to size the
+ * {@code quarkus.hibernate-orm.cache.*} regions. Raw hit, miss and put counts
+ * come from {@code quarkus.hibernate-orm.metrics.enabled}.
+ */
+@ApplicationScoped
+public class SecondLevelCacheMetrics {
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    @Inject
+    MeterRegistry registry;
+
+    void onStart(@Observes StartupEvent event) {
+        Statistics statistics = sessionFactory.getStatistics();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            registry.gauge("powercards.orm.cache.hit-rate", Tags.of("region", region), statistics,
+                    stats -> hitRate(stats.getDomainDataRegionStatistics(region)));
+        }
+    }
+
+    private static double hitRate(CacheRegionStatistics region) {
+        if (region == null) {
+            return Double.NaN;
+        }
+        long requests = region.getHitCount() + region.getMissCount();
+        return requests == 0 ? Double.NaN : (double) region.getHitCount() / requests;
+    }
+}
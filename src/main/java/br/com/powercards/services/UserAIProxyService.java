@@ -1,26 +1,80 @@
 package br.com.powercards.services;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Calls the AI provider a user configured, with the user's own key.
+ * <p>
+ * Calls block their thread, so callers run on virtual threads rather than on
+ * the worker pool shared with the CRUD endpoints. Each provider has its own
+ * {@link ProviderGuard}: a bulkhead bounding the calls in flight and waiting,
+ * and a circuit breaker that fails fast while the provider keeps failing.
+ * Users with keys for several providers can have slow calls hedged to the
+ * next best ranked provider.
+ */
 @ApplicationScoped
 public class UserAIProxyService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(UserAIProxyService.class);
 
+    // Answer to SYSTEM_PROMPT: the enhanced fields
+    private static final ObjectNode FIELDS_SCHEMA = arraySchema(JsonNodeFactory.instance.objectNode()
+            .put("type", "string"));
+
+    // Answer to EnhancementPacking.SYSTEM_PROMPT: the enhanced notes
+    private static final ObjectNode NOTES_SCHEMA;
+
+    static {
+        ObjectNode note = JsonNodeFactory.instance.objectNode().put("type", "object");
+        ObjectNode properties = note.putObject("properties");
+        properties.putObject("id").put("type", "string");
+        properties.set("fields", FIELDS_SCHEMA.deepCopy());
+        note.putArray("required").add("id").add("fields");
+        note.put("additionalProperties", false);
+        NOTES_SCHEMA = arraySchema(note);
+    }
+
+    private static ObjectNode arraySchema(ObjectNode items) {
+        ObjectNode array = JsonNodeFactory.instance.objectNode().put("type", "array");
+        array.set("items", items);
+        return array;
+    }
+
     private static final String SYSTEM_PROMPT = """
             # ROLE
             Text Refinement Engine for Flashcards.
@@ -33,6 +87,7 @@ public class UserAIProxyService {
             2. Bold (<b>) the primary concept.
             3. Italicize (<i>) secondary context.
             4. Preserve all tags: <img>, <audio>, <video>, <source>.
+            5. Keep every placeholder such as [[m0]] exactly as it is; each stands for media or markup.
 
             # CONSTRAINTS
             - Fix grammar/punctuation only.
@@ -52,12 +107,76 @@ public class UserAIProxyService {
     @Inject
     ProfileService profileService;
 
+    @Inject
+    EnhancementCache enhancementCache;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "powercards.ai.providers.timeout", defaultValue = "PT60S")
+    Duration timeout;
+
+    @ConfigProperty(name = "powercards.ai.providers.max-in-flight", defaultValue = "16")
+    int maxInFlight;
+
+    @ConfigProperty(name = "powercards.ai.providers.max-queued", defaultValue = "64")
+    int maxQueued;
+
+    @ConfigProperty(name = "powercards.ai.providers.queue-timeout", defaultValue = "PT5S")
+    Duration queueTimeout;
+
+    @ConfigProperty(name = "powercards.ai.providers.breaker.failure-threshold", defaultValue = "5")
+    int failureThreshold;
+
+    @ConfigProperty(name = "powercards.ai.providers.breaker.open-duration", defaultValue = "PT30S")
+    Duration openDuration;
+
+    @ConfigProperty(name = "powercards.ai.routing.hedge-delay", defaultValue = "PT2S")
+    Duration hedgeDelay;
+
+    // Multiple of the provider's rolling latency after which a hedge is sent
+    @ConfigProperty(name = "powercards.ai.routing.hedge-latency-factor", defaultValue = "1.5")
+    double hedgeLatencyFactor;
+
+    @ConfigProperty(name = "powercards.ai.batch.pack-max-notes", defaultValue = "25")
+    int packMaxNotes;
+
+    @ConfigProperty(name = "powercards.ai.batch.pack-token-budget", defaultValue = "2000")
+    int packTokenBudget;
+
     private final HttpClient httpClient = HttpClient.newBuilder()
             .connectTimeout(Duration.ofSeconds(10))
             .build();
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    private final Map<String, ProviderGuard> guards = new HashMap<>();
+
+    // Hedged calls race on virtual threads of their own
+    private final ExecutorService hedgeExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @PostConstruct
+    void init() {
+        for (String provider : List.of("openai", "gemini", "deepseek")) {
+            ProviderGuard guard = new ProviderGuard(provider, maxInFlight, maxQueued, queueTimeout,
+                    failureThreshold, openDuration);
+            guards.put(provider, guard);
+            registry.gauge("powercards.ai.provider.in-flight", Tags.of("provider", provider), guard,
+                    ProviderGuard::inFlight);
+            registry.gauge("powercards.ai.provider.queued", Tags.of("provider", provider), guard,
+                    ProviderGuard::queued);
+            registry.gauge("powercards.ai.provider.breaker", Tags.of("provider", provider), guard,
+                    g -> g.state().ordinal());
+            registry.gauge("powercards.ai.provider.latency", Tags.of("provider", provider), guard,
+                    ProviderGuard::latencyMillis);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        hedgeExecutor.shutdownNow();
+    }
+
     /**
      * Enhance model fields using the user's BYOK API key.
      * 
@@ -67,52 +186,290 @@ public class UserAIProxyService {
      * @throws RuntimeException if provider is not configured or API call fails
      */
     public List<String> enhanceModel(String keycloakId, List<String> contents) {
+        List<Provider> providers = providers(keycloakId);
+        for (Provider provider : providers) {
+            List<String> cached = enhancementCache.get(provider.name(), provider.model(), contents);
+            if (cached != null && cached.size() == contents.size()) {
+                return cached;
+            }
+        }
+        PromptCompaction.Compacted compacted = PromptCompaction.compact(contents);
+        String message = toJson(compacted.fields());
+        return route(providers, provider -> {
+            List<String> enhanced = compacted.restore(alignFields(
+                    parseJsonArray(complete(provider, SYSTEM_PROMPT, message, FIELDS_SCHEMA, contents.size())),
+                    contents.size()));
+            if (enhanced.size() == contents.size()) {
+                enhancementCache.put(provider.name(), provider.model(), contents, enhanced);
+            }
+            return enhanced;
+        }, enhanced -> enhanced.size() == contents.size());
+    }
+
+    /**
+     * Enhance the fields of many notes with as few calls as the token budget
+     * allows, see {@link EnhancementPacking}.
+     *
+     * @param keycloakId The user's Keycloak ID
+     * @param notes      The field contents of each note
+     * @return Enhanced fields of each note, in order; null for a note that
+     *         could not be enhanced
+     * @throws RuntimeException if provider is not configured
+     */
+    public List<List<String>> enhanceNotes(String keycloakId, List<List<String>> notes) {
+        // Packs are long calls, sent to the best ranked provider without hedging
+        Provider provider = providers(keycloakId).get(0);
+        List<List<String>> enhanced = new ArrayList<>(Collections.nCopies(notes.size(), null));
+        List<EnhancementPacking.Item> items = new ArrayList<>(notes.size());
+        for (int i = 0; i < notes.size(); i++) {
+            List<String> cached = enhancementCache.get(provider.name(), provider.model(), notes.get(i));
+            if (cached != null && cached.size() == notes.get(i).size()) {
+                enhanced.set(i, cached);
+            } else {
+                // The position is the id: stable within the request and echoed back by the model
+                items.add(new EnhancementPacking.Item(Integer.toString(i), notes.get(i)));
+            }
+        }
+        for (List<EnhancementPacking.Item> pack : EnhancementPacking.pack(items, packTokenBudget, packMaxNotes)) {
+            EnhancementPacking.Outcome outcome = EnhancementPacking.enhance(pack,
+                    packed -> complete(provider, EnhancementPacking.SYSTEM_PROMPT, packed, NOTES_SCHEMA, 0),
+                    fields -> alignFields(parseJsonArray(
+                            complete(provider, SYSTEM_PROMPT, toJson(fields), FIELDS_SCHEMA, fields.size())),
+                            fields.size()));
+            outcome.enhanced().forEach((id, fields) -> {
+                int index = Integer.parseInt(id);
+                enhanced.set(index, fields);
+                enhancementCache.put(provider.name(), provider.model(), notes.get(index), fields);
+            });
+            outcome.failures().forEach((id, error) -> LOGGER.warn("Failed to enhance note {} of {}: {}", id,
+                    notes.size(), error));
+        }
+        return enhanced;
+    }
+
+    private String toJson(List<String> fields) {
+        try {
+            return objectMapper.writeValueAsString(fields);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to serialize fields", e);
+        }
+    }
+
+    /**
+     * Gemini's dialect of a schema: upper case types, no additionalProperties,
+     * and the number of items, which Gemini enforces, on the top level array.
+     */
+    static ObjectNode geminiSchema(ObjectNode schema, int items) {
+        ObjectNode gemini = schema.deepCopy();
+        upperCaseTypes(gemini);
+        if (items > 0) {
+            gemini.put("minItems", items);
+            gemini.put("maxItems", items);
+        }
+        return gemini;
+    }
+
+    private static void upperCaseTypes(JsonNode node) {
+        if (node instanceof ObjectNode object) {
+            object.remove("additionalProperties");
+            if (object.path("type").isTextual()) {
+                object.put("type", object.get("type").asText().toUpperCase(java.util.Locale.ROOT));
+            }
+        }
+        node.forEach(UserAIProxyService::upperCaseTypes);
+    }
+
+    private record Provider(String name, String apiKey) {
+
+        // Model called for the provider, part of the enhancement cache key
+        String model() {
+            return switch (name) {
+                case "openai" -> "gpt-4o-mini";
+                case "gemini" -> "gemini-2.0-flash";
+                case "deepseek" -> "deepseek-chat";
+                default -> name;
+            };
+        }
+    }
+
+    /**
+     * The providers to call: the selected one, and with "hedged" routing the
+     * alternates the user has a key for, ranked by {@link ProviderGuard#score()}.
+     * Ties keep the selected provider first.
+     */
+    private List<Provider> providers(String keycloakId) {
         var user = br.com.powercards.model.User.findByKeycloakId(keycloakId);
         if (user == null || user.aiProvider == null) {
             throw new RuntimeException("AI provider not configured");
         }
+        if (Boolean.FALSE.equals(user.hasAiApiKey)) {
+            // Known from the user row, without asking Vault
+            throw new RuntimeException("AI API key not configured");
+        }
 
-        String apiKey = profileService.getAiApiKey(keycloakId);
+        Map<String, String> keys = profileService.getAiApiKeys(keycloakId, user.aiProvider);
+        String apiKey = keys.get(user.aiProvider);
         if (apiKey == null || apiKey.isBlank()) {
             throw new RuntimeException("AI API key not configured");
         }
+        if (!"hedged".equals(user.aiRouting)) {
+            return List.of(new Provider(user.aiProvider, apiKey));
+        }
+        List<Provider> providers = new ArrayList<>();
+        keys.forEach((name, key) -> {
+            if (guards.containsKey(name)) {
+                providers.add(new Provider(name, key));
+            }
+        });
+        providers.sort(Comparator.comparingDouble(provider -> guards.get(provider.name()).score()));
+        return providers;
+    }
 
-        String userMessage = contents.toString();
+    /**
+     * Calls the first provider and, if it has not answered validly within the
+     * hedge delay, the second one too. The first valid answer wins and the
+     * other call is cancelled. When neither answer is valid, an invalid one is
+     * returned if there is one, so the caller can report it.
+     */
+    private <T> T route(List<Provider> providers, Function<Provider, T> call, Predicate<T> valid) {
+        if (providers.size() == 1) {
+            return call.apply(providers.get(0));
+        }
+        Provider first = providers.get(0);
+        Provider second = providers.get(1);
+        CompletionService<T> race = new ExecutorCompletionService<>(hedgeExecutor);
+        List<Future<T>> calls = new ArrayList<>(2);
+        calls.add(race.submit(() -> call.apply(first)));
+        T invalid = null;
+        RuntimeException error = null;
+        try {
+            int pending = 1;
+            Future<T> done = race.poll(hedgeDelay(first).toNanos(), TimeUnit.NANOSECONDS);
+            boolean hedged = false;
+            while (true) {
+                if (done != null) {
+                    pending--;
+                    try {
+                        T result = done.get();
+                        if (valid.test(result)) {
+                            return result;
+                        }
+                        invalid = result;
+                    } catch (ExecutionException e) {
+                        if (error == null) {
+                            error = e.getCause() instanceof RuntimeException runtime ? runtime
+                                    : new RuntimeException(e.getCause());
+                        }
+                    }
+                }
+                if (!hedged) {
+                    hedged = true;
+                    pending++;
+                    registry.counter("powercards.ai.routing.hedges", "provider", second.name()).increment();
+                    calls.add(race.submit(() -> call.apply(second)));
+                }
+                if (pending == 0) {
+                    break;
+                }
+                done = race.take();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AIProviderUnavailableException("Interrupted while waiting for AI providers", e);
+        } finally {
+            calls.forEach(future -> future.cancel(true));
+        }
+        if (invalid != null) {
+            return invalid;
+        }
+        throw error;
+    }
+
+    // Hedge once the provider is clearly slower than usual, never earlier than the configured delay
+    private Duration hedgeDelay(Provider provider) {
+        double latency = guards.get(provider.name()).latencyMillis();
+        long expected = latency < 0 ? 0 : (long) (latency * hedgeLatencyFactor);
+        return Duration.ofMillis(Math.max(hedgeDelay.toMillis(), expected));
+    }
+
+    /**
+     * The model's answer, as text. Providers that support it are asked for
+     * JSON matching the schema, of {@code items} elements when not 0.
+     */
+    private String complete(Provider provider, String systemPrompt, String userMessage, ObjectNode schema,
+            int items) {
+        ProviderGuard guard = guards.get(provider.name());
+        if (guard == null) {
+            throw new RuntimeException("Unknown AI provider: " + provider.name());
+        }
+        return guard.call(() -> switch (provider.name()) {
+            case "openai" -> callOpenAI(provider.apiKey(), systemPrompt, userMessage, schema);
+            case "gemini" -> callGemini(provider.apiKey(), systemPrompt, userMessage, geminiSchema(schema, items));
+            default -> callDeepSeek(provider.apiKey(), systemPrompt, userMessage);
+        });
+    }
+
+    // Sends a call, turning the provider's own failures into AIProviderUnavailableException
+    private String send(String name, HttpRequest request) {
+        HttpResponse<String> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            throw new AIProviderUnavailableException(name + " call failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            // A hedged call that lost the race; says nothing about the provider
+            Thread.currentThread().interrupt();
+            throw new CancellationException(name + " call cancelled");
+        }
+        LOGGER.debug("{} response status: {}", name, response.statusCode());
+        if (response.statusCode() == 429) {
+            LOGGER.warn("{} API rate limited the key", name);
+            throw new AIRateLimitedException(name + " API rate limit exceeded", retryAfter(response));
+        }
+        if (response.statusCode() >= 500) {
+            LOGGER.warn("{} API unavailable: {}", name, response.statusCode());
+            throw new AIProviderUnavailableException(name + " API error: " + response.statusCode());
+        }
+        if (response.statusCode() != 200) {
+            LOGGER.error("{} API error: {}", name, response.body());
+            throw new RuntimeException(name + " API error: " + response.statusCode());
+        }
+        return response.body();
+    }
 
-        return switch (user.aiProvider) {
-            case "openai" -> callOpenAI(apiKey, userMessage);
-            case "gemini" -> callGemini(apiKey, userMessage);
-            case "deepseek" -> callDeepSeek(apiKey, userMessage);
-            default -> throw new RuntimeException("Unknown AI provider: " + user.aiProvider);
-        };
+    // Retry-After in seconds; the HTTP date form is not used by the providers
+    private static Duration retryAfter(HttpResponse<?> response) {
+        return response.headers().firstValue("Retry-After")
+                .filter(value -> value.matches("\\d{1,9}"))
+                .map(value -> Duration.ofSeconds(Long.parseLong(value)))
+                .orElse(null);
     }
 
-    private List<String> callOpenAI(String apiKey, String userMessage) {
+    private String callOpenAI(String apiKey, String systemPrompt, String userMessage, ObjectNode schema) {
         try {
+            // Structured outputs need an object at the top level
+            ObjectNode wrapper = objectMapper.createObjectNode().put("type", "object");
+            wrapper.putObject("properties").set("result", schema);
+            wrapper.putArray("required").add("result");
+            wrapper.put("additionalProperties", false);
             var requestBody = objectMapper.writeValueAsString(Map.of(
                     "model", "gpt-4o-mini",
                     "messages", List.of(
-                            Map.of("role", "system", "content", SYSTEM_PROMPT),
+                            Map.of("role", "system", "content", systemPrompt),
                             Map.of("role", "user", "content", userMessage)),
-                    "temperature", 0.1));
+                    "temperature", 0.1,
+                    "response_format", Map.of("type", "json_schema", "json_schema",
+                            Map.of("name", "enhancement", "strict", true, "schema", wrapper))));
 
             HttpRequest request = HttpRequest.newBuilder()
                     .uri(URI.create("https://api.openai.com/v1/chat/completions"))
                     .header("Content-Type", "application/json")
                     .header("Authorization", "Bearer " + apiKey)
                     .POST(HttpRequest.BodyPublishers.ofString(requestBody))
-                    .timeout(Duration.ofSeconds(60))
+                    .timeout(timeout)
                     .build();
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            LOGGER.info("OpenAI response status: {}", response.statusCode());
-
-            if (response.statusCode() != 200) {
-                LOGGER.error("OpenAI API error: {}", response.body());
-                throw new RuntimeException("OpenAI API error: " + response.statusCode());
-            }
-
-            return extractContentFromOpenAIResponse(response.body());
+            return extractContentFromOpenAIResponse(send("OpenAI", request));
         } catch (RuntimeException e) {
             throw e;
         } catch (Exception e) {
@@ -121,33 +478,27 @@ public class UserAIProxyService {
         }
     }
 
-    private List<String> callDeepSeek(String apiKey, String userMessage) {
+    private String callDeepSeek(String apiKey, String systemPrompt, String userMessage) {
         try {
             var requestBody = objectMapper.writeValueAsString(Map.of(
                     "model", "deepseek-chat",
                     "messages", List.of(
-                            Map.of("role", "system", "content", SYSTEM_PROMPT),
+                            Map.of("role", "system", "content", systemPrompt),
                             Map.of("role", "user", "content", userMessage)),
-                    "temperature", 0.1));
+                    "temperature", 0.1,
+                    // JSON mode only: DeepSeek takes no schema
+                    "response_format", Map.of("type", "json_object")));
 
             HttpRequest request = HttpRequest.newBuilder()
                     .uri(URI.create("https://api.deepseek.com/chat/completions"))
                     .header("Content-Type", "application/json")
                     .header("Authorization", "Bearer " + apiKey)
                     .POST(HttpRequest.BodyPublishers.ofString(requestBody))
-                    .timeout(Duration.ofSeconds(60))
+                    .timeout(timeout)
                     .build();
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            LOGGER.info("DeepSeek response status: {}", response.statusCode());
-
-            if (response.statusCode() != 200) {
-                LOGGER.error("DeepSeek API error: {}", response.body());
-                throw new RuntimeException("DeepSeek API error: " + response.statusCode());
-            }
-
             // DeepSeek uses OpenAI-compatible API format
-            return extractContentFromOpenAIResponse(response.body());
+            return extractContentFromOpenAIResponse(send("DeepSeek", request));
         } catch (RuntimeException e) {
             throw e;
         } catch (Exception e) {
@@ -156,13 +507,15 @@ public class UserAIProxyService {
         }
     }
 
-    private List<String> callGemini(String apiKey, String userMessage) {
+    private String callGemini(String apiKey, String systemPrompt, String userMessage, ObjectNode schema) {
         try {
             var requestBody = objectMapper.writeValueAsString(Map.of(
                     "contents", List.of(
                             Map.of("role", "user", "parts",
-                                    List.of(Map.of("text", SYSTEM_PROMPT + "\n\n" + userMessage)))),
-                    "generationConfig", Map.of("temperature", 0.1)));
+                                    List.of(Map.of("text", systemPrompt + "\n\n" + userMessage)))),
+                    "generationConfig", Map.of("temperature", 0.1,
+                            "responseMimeType", "application/json",
+                            "responseSchema", schema)));
 
             String url = "https://generativelanguage.googleapis.com/v1beta/models/gemini-2.0-flash:generateContent?key="
                     + apiKey;
@@ -171,18 +524,10 @@ public class UserAIProxyService {
                     .uri(URI.create(url))
                     .header("Content-Type", "application/json")
                     .POST(HttpRequest.BodyPublishers.ofString(requestBody))
-                    .timeout(Duration.ofSeconds(60))
+                    .timeout(timeout)
                     .build();
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            LOGGER.info("Gemini response status: {}", response.statusCode());
-
-            if (response.statusCode() != 200) {
-                LOGGER.error("Gemini API error: {}", response.body());
-                throw new RuntimeException("Gemini API error: " + response.statusCode());
-            }
-
-            return extractContentFromGeminiResponse(response.body());
+            return extractContentFromGeminiResponse(send("Gemini", request));
         } catch (RuntimeException e) {
             throw e;
         } catch (Exception e) {
@@ -195,11 +540,10 @@ public class UserAIProxyService {
      * Extract content from OpenAI/DeepSeek chat completion response.
      * The AI response should contain a JSON array of strings.
      */
-    private List<String> extractContentFromOpenAIResponse(String responseBody) {
+    private String extractContentFromOpenAIResponse(String responseBody) {
         try {
             JsonNode root = objectMapper.readTree(responseBody);
-            String content = root.path("choices").get(0).path("message").path("content").asText();
-            return parseJsonArray(content);
+            return root.path("choices").get(0).path("message").path("content").asText();
         } catch (Exception e) {
             LOGGER.error("Failed to parse OpenAI response: {}", e.getMessage());
             throw new RuntimeException("Failed to parse AI response", e);
@@ -209,12 +553,11 @@ public class UserAIProxyService {
     /**
      * Extract content from Gemini response.
      */
-    private List<String> extractContentFromGeminiResponse(String responseBody) {
+    private String extractContentFromGeminiResponse(String responseBody) {
         try {
             JsonNode root = objectMapper.readTree(responseBody);
-            String content = root.path("candidates").get(0).path("content").path("parts").get(0).path("text")
+            return root.path("candidates").get(0).path("content").path("parts").get(0).path("text")
                     .asText();
-            return parseJsonArray(content);
         } catch (Exception e) {
             LOGGER.error("Failed to parse Gemini response: {}", e.getMessage());
             throw new RuntimeException("Failed to parse AI response", e);
@@ -246,6 +589,7 @@ public class UserAIProxyService {
                 .header("Content-Type", "application/json")
                 .header("Authorization", "Bearer " + apiKey)
                 .POST(HttpRequest.BodyPublishers.ofString(requestBody))
+                .timeout(timeout)
                 .build();
 
         HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
@@ -266,6 +610,7 @@ public class UserAIProxyService {
                                 + apiKey))
                 .header("Content-Type", "application/json")
                 .POST(HttpRequest.BodyPublishers.ofString(requestBody))
+                .timeout(timeout)
                 .build();
 
         HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
@@ -286,6 +631,7 @@ public class UserAIProxyService {
                 .header("Content-Type", "application/json")
                 .header("Authorization", "Bearer " + apiKey)
                 .POST(HttpRequest.BodyPublishers.ofString(requestBody))
+                .timeout(timeout)
                 .build();
 
         HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
@@ -296,27 +642,37 @@ public class UserAIProxyService {
     }
 
     /**
-     * Parse a JSON array from the AI response text.
-     * Handles cases where the AI wraps the array in markdown code blocks.
+     * Parse a JSON array of strings from the AI response text, repairing it if
+     * needed, see {@link JsonRepair}. An array nested in another one, or
+     * wrapped in an object by a structured output mode, is unwrapped.
      */
     private List<String> parseJsonArray(String text) {
-        // Strip markdown code blocks if present
-        String cleaned = text.strip();
-        if (cleaned.startsWith("```")) {
-            // Remove ```json or ``` prefix and trailing ```
-            int firstNewline = cleaned.indexOf('\n');
-            int lastBackticks = cleaned.lastIndexOf("```");
-            if (firstNewline > 0 && lastBackticks > firstNewline) {
-                cleaned = cleaned.substring(firstNewline + 1, lastBackticks).strip();
-            }
-        }
-
+        JsonNode array;
         try {
-            return objectMapper.readValue(cleaned, new TypeReference<List<String>>() {
-            });
-        } catch (Exception e) {
-            LOGGER.error("Failed to parse JSON array from AI response: {}", cleaned);
+            array = JsonRepair.array(JsonRepair.parse(text));
+        } catch (IllegalArgumentException e) {
+            LOGGER.error("Failed to parse JSON array from AI response: {}", text);
             throw new RuntimeException("AI response is not a valid JSON array: " + e.getMessage(), e);
         }
+        if (array.size() == 1 && array.get(0).isArray()) {
+            array = array.get(0);
+        }
+        List<String> values = new ArrayList<>(array.size());
+        for (JsonNode value : array) {
+            values.add(value.isTextual() ? value.asText() : value.isNull() ? "" : value.toString());
+        }
+        return values;
+    }
+
+    /**
+     * Matches an answer with extra empty fields, which models add when an input
+     * field is empty or ends the array with a separator, to the expected size.
+     */
+    static List<String> alignFields(List<String> fields, int expected) {
+        if (fields.size() <= expected) {
+            return fields;
+        }
+        List<String> filled = fields.stream().filter(field -> !field.isBlank()).toList();
+        return filled.size() == expected ? filled : fields;
     }
 }
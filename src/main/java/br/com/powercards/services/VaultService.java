@@ -1,81 +1,251 @@
 package br.com.powercards.services;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.quarkus.vault.VaultKVSecretEngine;
+import io.quarkus.vault.client.VaultClientException;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
+/**
+ * Per-user secrets, stored in Vault at {@code users/{userId}}.
+ * <p>
+ * Reads are served from an in-memory cache, so AI calls and profile loads do
+ * not go to Vault each time. A user's secrets are cached for
+ * {@code powercards.vault.cache.ttl}, and the absence of secrets for
+ * {@code powercards.vault.cache.negative-ttl}; failed reads are not cached.
+ * Cached secrets are encrypted
+ * with a key generated at startup that never leaves the process, so a heap
+ * dump does not expose them in plain text. Writes go through this service and
+ * replace the cached entry; writes made elsewhere show up once it expires.
+ */
 @ApplicationScoped
 public class VaultService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(VaultService.class);
 
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+
+    private static final TypeReference<Map<String, String>> SECRETS = new TypeReference<>() {
+    };
+
     @Inject
     VaultKVSecretEngine kvSecretEngine;
 
+    @ConfigProperty(name = "powercards.vault.cache.enabled", defaultValue = "true")
+    boolean cacheEnabled;
+
+    @ConfigProperty(name = "powercards.vault.cache.ttl", defaultValue = "PT5M")
+    Duration cacheTtl;
+
+    @ConfigProperty(name = "powercards.vault.cache.negative-ttl", defaultValue = "PT30S")
+    Duration negativeCacheTtl;
+
+    @ConfigProperty(name = "powercards.vault.cache.max-entries", defaultValue = "10000")
+    long cacheMaxEntries;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SecureRandom random = new SecureRandom();
+
+    private SecretKey cacheKey;
+
+    // Encrypted secrets by user; an entry with no secrets is a negative lookup
+    private Cache<String, Sealed> cache;
+
+    private record Sealed(byte[] data, boolean empty) {
+    }
+
+    @PostConstruct
+    void init() {
+        try {
+            KeyGenerator generator = KeyGenerator.getInstance("AES");
+            generator.init(256, random);
+            cacheKey = generator.generateKey();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES is not available", e);
+        }
+        cache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxEntries)
+                .expireAfter(new Expiry<String, Sealed>() {
+                    @Override
+                    public long expireAfterCreate(String userId, Sealed sealed, long currentTime) {
+                        return (sealed.empty() ? negativeCacheTtl : cacheTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String userId, Sealed sealed, long currentTime,
+                            long currentDuration) {
+                        return expireAfterCreate(userId, sealed, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String userId, Sealed sealed, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
     /**
      * Write a secret to Vault for a specific user.
      * Stored at path: users/{userId}
      */
     public void writeSecret(String userId, String key, String value) {
+        Map<String, String> values = new HashMap<>();
+        values.put(key, value);
+        writeSecrets(userId, values);
+    }
+
+    /**
+     * Write several secrets of a user at once; a null value removes its key.
+     */
+    public void writeSecrets(String userId, Map<String, String> values) {
+        String path = "users/" + userId;
+        // Whatever happens, the next read goes to Vault
+        cache.invalidate(userId);
         try {
-            LOGGER.info("Writing secret to Vault for user: {}, key: {}", userId, key);
-            String path = "users/" + userId;
+            LOGGER.debug("Writing secrets {} to Vault for user {}", values.keySet(), userId);
             Map<String, String> secrets = new HashMap<>();
 
-            // Try to read existing secrets to merge
+            // Read the latest secrets to merge, not the cached ones
             try {
                 Map<String, String> existing = kvSecretEngine.readSecret(path);
                 if (existing != null) {
                     secrets.putAll(existing);
                 }
             } catch (Exception e) {
-                // Assume not found or error, start fresh
-                LOGGER.debug("No existing secrets found for path {} or read failed: {}", path, e.getMessage());
+                // Only a missing path starts fresh; anything else would drop the other secrets
+                if (!isNotFound(e)) {
+                    throw e;
+                }
+                LOGGER.debug("No existing secrets found for path {}", path);
             }
 
-            if (value == null) {
-                secrets.remove(key);
-                LOGGER.info("Removing secret key {} for user {}", key, userId);
-            } else {
-                secrets.put(key, value);
-            }
+            values.forEach((name, value) -> {
+                if (value == null) {
+                    secrets.remove(name);
+                } else {
+                    secrets.put(name, value);
+                }
+            });
 
             if (!secrets.isEmpty()) {
                 kvSecretEngine.writeSecret(path, secrets);
-                LOGGER.info("Secret {} successfully updated for user {}", key, userId);
             } else {
-                LOGGER.info("No secrets to write for user {} (map empty)", userId);
+                // Removing the last secret removes the path
+                kvSecretEngine.deleteSecret(path);
             }
-
+            put(userId, secrets);
         } catch (Exception e) {
             LOGGER.error("Failed to write secret for user {}: {}", userId, e.getMessage());
             throw new RuntimeException("Failed to write secret to Vault", e);
         }
     }
 
+    /**
+     * Read every secret of a user, empty when there are none or Vault cannot
+     * be read.
+     */
+    public Map<String, String> readSecrets(String userId) {
+        return lookupSecrets(userId).orElse(Map.of());
+    }
+
+    /**
+     * Read every secret of a user, empty when Vault cannot be read. A user
+     * without secrets has an empty map, so callers can tell a missing secret
+     * from an unavailable Vault.
+     */
+    public Optional<Map<String, String>> lookupSecrets(String userId) {
+        Sealed sealed = cacheEnabled ? cache.getIfPresent(userId) : null;
+        if (sealed != null) {
+            try {
+                return Optional.of(unseal(sealed));
+            } catch (Exception e) {
+                LOGGER.warn("Discarding unreadable cached secrets of user {}: {}", userId, e.getMessage());
+                cache.invalidate(userId);
+            }
+        }
+        Map<String, String> secrets;
+        try {
+            secrets = kvSecretEngine.readSecret("users/" + userId);
+        } catch (Exception e) {
+            if (!isNotFound(e)) {
+                // Not cached, the next read asks Vault again
+                LOGGER.warn("Failed to read secrets for user {}: {}", userId, e.getMessage());
+                return Optional.empty();
+            }
+            // Cached as a negative lookup, so a missing path is not asked again at once
+            LOGGER.debug("No secrets found for user {}", userId);
+            secrets = null;
+        }
+        secrets = secrets != null ? Map.copyOf(secrets) : Map.of();
+        put(userId, secrets);
+        return Optional.of(secrets);
+    }
+
     /**
      * Read a secret from Vault for a specific user.
      */
     public String readSecret(String userId, String key) {
-        try {
-            LOGGER.info("Reading secret from Vault for user: {}, key: {}", userId, key);
-            String path = "users/" + userId;
-            Map<String, String> secrets = kvSecretEngine.readSecret(path);
-            if (secrets != null && secrets.containsKey(key)) {
-                LOGGER.info("Secret found for user: {}, key: {}", userId, key);
-                return secrets.get(key);
-            } else {
-                LOGGER.warn("Secret not found for user: {}, key: {}", userId, key);
-                return null;
+        return readSecrets(userId).get(key);
+    }
+
+    // Vault answers 404 for a path that holds no secrets
+    private static boolean isNotFound(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof VaultClientException client && Integer.valueOf(404).equals(client.getStatus())) {
+                return true;
             }
+        }
+        return false;
+    }
+
+    private void put(String userId, Map<String, String> secrets) {
+        if (!cacheEnabled) {
+            return;
+        }
+        try {
+            cache.put(userId, seal(secrets));
         } catch (Exception e) {
-            LOGGER.error("Failed to read secret for user {} (might not exist): {}", userId, e.getMessage());
-            return null;
+            LOGGER.warn("Failed to cache secrets of user {}: {}", userId, e.getMessage());
         }
     }
+
+    private Sealed seal(Map<String, String> secrets) throws Exception {
+        byte[] iv = new byte[IV_LENGTH];
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, cacheKey, new GCMParameterSpec(TAG_BITS, iv));
+        byte[] encrypted = cipher.doFinal(objectMapper.writeValueAsBytes(secrets));
+        return new Sealed(ByteBuffer.allocate(IV_LENGTH + encrypted.length).put(iv).put(encrypted).array(),
+                secrets.isEmpty());
+    }
+
+    private Map<String, String> unseal(Sealed sealed) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, cacheKey, new GCMParameterSpec(TAG_BITS, sealed.data(), 0, IV_LENGTH));
+        byte[] plain = cipher.doFinal(sealed.data(), IV_LENGTH, sealed.data().length - IV_LENGTH);
+        return Map.copyOf(objectMapper.readValue(plain, SECRETS));
+    }
 }
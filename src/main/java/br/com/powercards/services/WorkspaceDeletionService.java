@@ -0,0 +1,232 @@
+package br.com.powercards.services;
+
+import br.com.powercards.domain.entities.AnkiMedia;
+import br.com.powercards.model.Workspace;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.context.ManagedExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Deletes workspaces in the background.
+ * <p>
+ * {@link #requestDeletion(Workspace)} only marks the workspace as deleted, which
+ * hides it from listings and makes WorkspaceFilter reject it. Once that commits,
+ * its rows are purged in chunks of {@code powercards.workspace-deletion.chunk-size},
+ * each in its own short transaction, and media objects no other workspace
+ * references are removed from storage. Progress is recorded on the workspace
+ * row; an interrupted purge resumes on the next startup.
+ */
+@ApplicationScoped
+public class WorkspaceDeletionService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkspaceDeletionService.class);
+
+    /**
+     * Fired when a deletion is requested; the purge starts after the requesting
+     * transaction commits.
+     */
+    public record Requested(Long workspaceId) {
+    }
+
+    @Inject
+    EntityManager entityManager;
+
+    @Inject
+    ManagedExecutor executor;
+
+    @Inject
+    ObjectStorageGateway storage;
+
+    @Inject
+    WorkspacePartitionService partitionService;
+
+    @Inject
+    Event<Requested> requested;
+
+    @ConfigProperty(name = "powercards.workspace-deletion.chunk-size", defaultValue = "500")
+    int chunkSize;
+
+    /**
+     * Marks the workspace as deleted. Must be called inside a transaction.
+     */
+    public void requestDeletion(Workspace workspace) {
+        workspace.deletedAt = Instant.now();
+        workspace.purgedRows = 0L;
+        workspace.purgedObjects = 0L;
+        requested.fire(new Requested(workspace.id));
+    }
+
+    void onRequested(@Observes(during = TransactionPhase.AFTER_SUCCESS) Requested event) {
+        executor.runAsync(() -> purge(event.workspaceId()));
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        List<Long> pending = QuarkusTransaction.requiringNew().call(() -> entityManager
+                .createQuery("select w.id from Workspace w where w.deletedAt is not null and w.purgedAt is null",
+                        Long.class)
+                .getResultList());
+        for (Long workspaceId : pending) {
+            LOGGER.info("Resuming purge of deleted workspace {}", workspaceId);
+            executor.runAsync(() -> purge(workspaceId));
+        }
+    }
+
+    void purge(Long workspaceId) {
+        try {
+            LOGGER.info("Purging workspace {}", workspaceId);
+            // Media first: its rows carry the object URLs to remove
+            purgeMedia(workspaceId);
+            purgeChunks(workspaceId, workspaceId,
+                    "select d.id from NoteDraft d where d.note.workspace.id = :ws",
+                    "delete from NoteDraft d where d.id in :ids");
+
+            // Outside any transaction: it commits table by table
+            if (!partitionService.dropPartitions(workspaceId)) {
+                purgeChunks(workspaceId, workspaceId,
+                        "select c.id from Card c where c.workspace.id = :ws",
+                        "delete from Card c where c.id in :ids");
+                purgeChunks(workspaceId, workspaceId,
+                        "select n.id from Note n where n.workspace.id = :ws",
+                        "delete from Note n where n.id in :ids");
+            }
+
+            purgeChunks(workspaceId, workspaceId,
+                    "select d.id from Deck d where d.workspace.id = :ws",
+                    "delete from Deck d where d.id in :ids");
+            purgeChunks(workspaceId, workspaceId,
+                    "select t.id from AnkiTemplate t where t.model.workspace.id = :ws",
+                    "delete from AnkiTemplate t where t.id in :ids");
+            purgeChunks(workspaceId, workspaceId,
+                    "select f.id from AnkiField f where f.model.workspace.id = :ws",
+                    "delete from AnkiField f where f.id in :ids");
+            purgeChunks(workspaceId, workspaceId,
+                    "select m.id from AnkiModel m where m.workspace.id = :ws",
+                    "delete from AnkiModel m where m.id in :ids");
+            purgeChunks(workspaceId, workspaceId,
+                    "select t.id from Tag t where t.workspace.id = :ws",
+                    "delete from Tag t where t.id in :ids");
+
+            // Chats reference their workspace by its string id
+            String chatWorkspace = workspaceId.toString();
+            purgeChunks(workspaceId, chatWorkspace,
+                    "select h.id from ChatHistory h where h.chat.workspaceId = :ws",
+                    "delete from ChatHistory h where h.id in :ids");
+            purgeChunks(workspaceId, chatWorkspace,
+                    "select c.id from Chat c where c.workspaceId = :ws",
+                    "delete from Chat c where c.id in :ids");
+
+            QuarkusTransaction.requiringNew().run(() -> {
+                Workspace workspace = Workspace.findById(workspaceId);
+                workspace.purgedAt = Instant.now();
+            });
+            LOGGER.info("Workspace {} purged", workspaceId);
+        } catch (Exception e) {
+            LOGGER.error("Purge of workspace {} failed, it will resume on next startup", workspaceId, e);
+        }
+    }
+
+    /**
+     * Deletes the rows selected by {@code selectIds} chunk by chunk until none is
+     * left.
+     */
+    private void purgeChunks(Long workspaceId, Object key, String selectIds, String deleteByIds) {
+        int deleted;
+        do {
+            deleted = QuarkusTransaction.requiringNew().call(() -> {
+                List<?> ids = entityManager.createQuery(selectIds)
+                        .setParameter("ws", key)
+                        .setMaxResults(chunkSize)
+                        .getResultList();
+                if (ids.isEmpty()) {
+                    return 0;
+                }
+                int count = entityManager.createQuery(deleteByIds).setParameter("ids", ids).executeUpdate();
+                recordProgress(workspaceId, count, 0);
+                return count;
+            });
+        } while (deleted > 0);
+    }
+
+    /**
+     * Deletes media rows a chunk of notes at a time, then removes the objects
+     * that are no longer referenced. Object keys are the original file names, so
+     * another workspace may still point to the same object.
+     */
+    private void purgeMedia(Long workspaceId) {
+        while (true) {
+            List<String> urls = QuarkusTransaction.requiringNew().call(() -> {
+                List<Long> noteIds = entityManager
+                        .createQuery("select distinct m.id.noteId from AnkiMedia m where m.workspaceId = :ws",
+                                Long.class)
+                        .setParameter("ws", workspaceId)
+                        .setMaxResults(chunkSize)
+                        .getResultList();
+                if (noteIds.isEmpty()) {
+                    return List.<String>of();
+                }
+                List<String> chunk = entityManager
+                        .createQuery("select m.minioUrl from AnkiMedia m where m.id.noteId in :ids", String.class)
+                        .setParameter("ids", noteIds)
+                        .getResultList();
+                long count = AnkiMedia.delete("id.noteId in ?1", noteIds);
+                recordProgress(workspaceId, count, 0);
+                return chunk;
+            });
+            if (urls.isEmpty()) {
+                return;
+            }
+            removeUnreferencedObjects(workspaceId, new LinkedHashSet<>(urls));
+        }
+    }
+
+    private void removeUnreferencedObjects(Long workspaceId, Set<String> urls) {
+        long removed = 0;
+        for (String url : urls) {
+            String object = storage.objectName(ObjectStorageGateway.MEDIA_BUCKET, url);
+            if (object == null) {
+                continue;
+            }
+            // By object name: rows of other workspaces may hold it under another base URL
+            boolean referenced = QuarkusTransaction.requiringNew()
+                    .call(() -> AnkiMedia.count("objectKey", object) > 0);
+            if (referenced) {
+                continue;
+            }
+            try {
+                storage.remove(ObjectStorageGateway.MEDIA_BUCKET, object);
+                removed++;
+            } catch (Exception e) {
+                LOGGER.warn("Failed to remove media object {}: {}", url, e.getMessage());
+            }
+        }
+        long total = removed;
+        if (total > 0) {
+            QuarkusTransaction.requiringNew().run(() -> recordProgress(workspaceId, 0, total));
+        }
+    }
+
+    /**
+     * Adds to the purge counters of the workspace. Written through the entity:
+     * a bulk update of the workspaces table would invalidate every cached entry
+     * mapped to it on each chunk.
+     */
+    private static void recordProgress(Long workspaceId, long rows, long objects) {
+        Workspace workspace = Workspace.findById(workspaceId);
+        workspace.purgedRows = (workspace.purgedRows != null ? workspace.purgedRows : 0) + rows;
+        workspace.purgedObjects = (workspace.purgedObjects != null ? workspace.purgedObjects : 0) + objects;
+    }
+}
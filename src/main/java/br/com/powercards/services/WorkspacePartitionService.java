@@ -0,0 +1,330 @@
+package br.com.powercards.services;
+
+import br.com.powercards.domain.entities.AnkiMedia;
+import br.com.powercards.model.Card;
+import br.com.powercards.model.Note;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Optional PostgreSQL declarative partitioning of the per-workspace tables.
+ * <p>
+ * When {@code powercards.storage.partitioning.enabled=true}, the tables of
+ * {@link Note}, {@link Card} and {@link AnkiMedia} are partitioned by LIST on
+ * {@code workspace_id}: every workspace gets its own partition (created with the
+ * workspace) and a DEFAULT partition catches anything else. Scans and vacuums of
+ * a large tenant then stay in its own partition, and deleting a workspace drops
+ * its partitions instead of deleting row by row.
+ * <p>
+ * Existing installations are converted once at startup by {@link #migrate()},
+ * one table per transaction. Table and column names are read from the entity mappings, as no naming
+ * strategy is configured. The partition key must be part of the primary key,
+ * so rows without a workspace refuse the conversion, and foreign keys to a
+ * converted table are recreated on {@code (workspace_id, ...)}; a table that
+ * references one without having a {@code workspace_id} refuses it too.
+ */
+@ApplicationScoped
+public class WorkspacePartitionService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkspacePartitionService.class);
+
+    // Mapped explicitly on every partitioned entity
+    static final String WORKSPACE_COLUMN = "workspace_id";
+
+    // In conversion order: tables referenced by the others first
+    private static final List<Class<?>> ENTITIES = List.of(Note.class, Card.class, AnkiMedia.class);
+
+    /**
+     * A partitioned table, with the primary key it gets once partitioned: the
+     * partition key followed by its own id columns.
+     */
+    record PartitionedTable(String name, List<String> idColumns) {
+
+        String primaryKey() {
+            return WORKSPACE_COLUMN + ", " + String.join(", ", idColumns);
+        }
+    }
+
+    /**
+     * A foreign key from {@code table} to a table being converted.
+     */
+    record ForeignKey(String name, String table, String columns, String referencedColumns,
+            boolean hasWorkspace) {
+    }
+
+    @Inject
+    EntityManager entityManager;
+
+    @Inject
+    EntityManagerFactory entityManagerFactory;
+
+    @ConfigProperty(name = "powercards.storage.partitioning.enabled", defaultValue = "false")
+    boolean enabled;
+
+    // Longest a table conversion may run; it holds an exclusive lock on the table throughout
+    @ConfigProperty(name = "powercards.storage.partitioning.migration-timeout", defaultValue = "PT1H")
+    Duration migrationTimeout;
+
+    @ConfigProperty(name = "quarkus.datasource.db-kind")
+    String dbKind;
+
+    private volatile List<PartitionedTable> tables;
+
+    public boolean isEnabled() {
+        return enabled && "postgresql".equals(dbKind);
+    }
+
+    /**
+     * Converts the plain tables into partitioned ones, copying the existing rows.
+     * Tables that are already partitioned are left untouched. Each table is
+     * converted in its own transaction, bounded by
+     * {@code powercards.storage.partitioning.migration-timeout}, so must not be
+     * called inside a transaction. A failed conversion only rolls back its table.
+     *
+     * @throws IllegalStateException if a table to convert has rows without a
+     *                               workspace, or is referenced by a table
+     *                               without one
+     */
+    public void migrate() {
+        if (!isEnabled()) {
+            if (enabled) {
+                LOGGER.warn("Workspace partitioning requires PostgreSQL, current datasource is {}", dbKind);
+            }
+            return;
+        }
+
+        List<PartitionedTable> pending = QuarkusTransaction.requiringNew().call(() -> {
+            List<PartitionedTable> unconverted = tables().stream()
+                    .filter(table -> !isPartitioned(table.name()))
+                    .toList();
+            // Checked for every table before converting any
+            checkWorkspaceAssigned(unconverted);
+            return unconverted;
+        });
+        if (pending.isEmpty()) {
+            return;
+        }
+        int timeout = (int) migrationTimeout.toSeconds();
+        for (PartitionedTable table : pending) {
+            QuarkusTransaction.requiringNew().timeout(timeout).run(() -> convert(table));
+        }
+        QuarkusTransaction.requiringNew().timeout(timeout).run(() -> execute(
+                "CREATE INDEX IF NOT EXISTS idx_cards_workspace_deck_queue_due ON cards (workspace_id, did, queue, due)"));
+    }
+
+    private void convert(PartitionedTable table) {
+        String name = table.name();
+        LOGGER.info("Converting {} into a table partitioned by workspace", name);
+        List<ForeignKey> referencing = referencingForeignKeys(name);
+        List<String> outgoing = foreignKeyDefinitions(name);
+        for (ForeignKey fk : referencing) {
+            execute("ALTER TABLE " + fk.table() + " DROP CONSTRAINT " + fk.name());
+        }
+
+        String legacy = name + "_unpartitioned";
+        execute("ALTER TABLE " + name + " RENAME TO " + legacy);
+        execute("CREATE TABLE " + name + " (LIKE " + legacy + " INCLUDING DEFAULTS)"
+                + " PARTITION BY LIST (" + WORKSPACE_COLUMN + ")");
+        execute("ALTER TABLE " + name + " ADD CONSTRAINT " + name + "_ws_pkey PRIMARY KEY ("
+                + table.primaryKey() + ")");
+        execute("CREATE TABLE " + name + "_default PARTITION OF " + name + " DEFAULT");
+        @SuppressWarnings("unchecked")
+        List<Number> workspaceIds = entityManager.createNativeQuery("SELECT id FROM workspaces").getResultList();
+        for (Number workspaceId : workspaceIds) {
+            createPartition(name, workspaceId.longValue());
+        }
+        int copied = execute("INSERT INTO " + name + " SELECT * FROM " + legacy);
+        // No CASCADE: whatever still depends on the old table must stop the conversion
+        execute("DROP TABLE " + legacy);
+
+        for (String definition : outgoing) {
+            execute("ALTER TABLE " + name + " ADD " + definition);
+        }
+        for (ForeignKey fk : referencing) {
+            execute(partitionedForeignKey(name, fk));
+        }
+        LOGGER.info("Copied {} rows into partitioned {}, recreated {} foreign keys", copied, name,
+                outgoing.size() + referencing.size());
+    }
+
+    /**
+     * Creates the partitions of a new workspace. Must run in the transaction that
+     * creates the workspace, before any of its rows is written.
+     */
+    public void createPartitions(Long workspaceId) {
+        if (!isEnabled()) {
+            return;
+        }
+        for (PartitionedTable table : tables()) {
+            createPartition(table.name(), workspaceId);
+        }
+    }
+
+    /**
+     * Drops every partition of a workspace, removing its notes, cards and media
+     * rows without scanning or vacuuming the shared tables. Each table is handled
+     * in its own short transaction, so the exclusive lock DETACH takes on a
+     * shared table is held only for that table; must not be called inside a
+     * transaction.
+     *
+     * @return false when partitioning is disabled and rows must be deleted instead
+     */
+    public boolean dropPartitions(Long workspaceId) {
+        if (!isEnabled()) {
+            return false;
+        }
+        // Referencing tables first; detached before dropping, which releases the
+        // foreign keys other partitions hold on them
+        List<PartitionedTable> dropOrder = new ArrayList<>(tables());
+        Collections.reverse(dropOrder);
+        for (PartitionedTable table : dropOrder) {
+            String partition = partitionName(table.name(), workspaceId);
+            QuarkusTransaction.requiringNew().run(() -> {
+                if (exists(partition)) {
+                    execute("ALTER TABLE " + table.name() + " DETACH PARTITION " + partition);
+                    execute("DROP TABLE " + partition);
+                }
+            });
+        }
+        // Rows written before the partition existed live in the DEFAULT partition
+        for (PartitionedTable table : dropOrder) {
+            QuarkusTransaction.requiringNew().run(() -> execute(
+                    "DELETE FROM " + table.name() + " WHERE " + WORKSPACE_COLUMN + " = " + workspaceId));
+        }
+        return true;
+    }
+
+    /**
+     * The partitioned tables, named as Hibernate maps their entities.
+     */
+    List<PartitionedTable> tables() {
+        List<PartitionedTable> resolved = tables;
+        if (resolved == null) {
+            SessionFactoryImplementor factory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+            resolved = ENTITIES.stream().map(entity -> {
+                AbstractEntityPersister persister = (AbstractEntityPersister) factory.getMappingMetamodel()
+                        .getEntityDescriptor(entity);
+                return new PartitionedTable(persister.getIdentifierTableName(),
+                        List.of(persister.getIdentifierColumnNames()));
+            }).toList();
+            tables = resolved;
+        }
+        return resolved;
+    }
+
+    /**
+     * @throws IllegalStateException if any of the tables has rows without a
+     *                               workspace, which no partition can hold
+     */
+    void checkWorkspaceAssigned(List<PartitionedTable> tables) {
+        List<String> unassigned = new ArrayList<>();
+        for (PartitionedTable table : tables) {
+            Number count = (Number) entityManager.createNativeQuery(
+                    "SELECT count(*) FROM " + table.name() + " WHERE " + WORKSPACE_COLUMN + " IS NULL")
+                    .getSingleResult();
+            if (count.longValue() > 0) {
+                unassigned.add(count + " rows of " + table.name());
+            }
+        }
+        if (!unassigned.isEmpty()) {
+            throw new IllegalStateException("Cannot partition by workspace: " + String.join(", ", unassigned)
+                    + " have no " + WORKSPACE_COLUMN + ". Assign them a workspace or delete them, or disable"
+                    + " powercards.storage.partitioning.enabled");
+        }
+    }
+
+    /**
+     * The statement recreating a foreign key to a converted table, whose primary
+     * key now starts with the partition key.
+     *
+     * @throws IllegalStateException if the referencing table has no workspace
+     */
+    static String partitionedForeignKey(String table, ForeignKey fk) {
+        if (!fk.hasWorkspace()) {
+            throw new IllegalStateException("Cannot partition " + table + " by workspace: foreign key " + fk.name()
+                    + " of " + fk.table() + " references it, and " + fk.table() + " has no " + WORKSPACE_COLUMN);
+        }
+        return "ALTER TABLE " + fk.table() + " ADD CONSTRAINT " + fk.name()
+                + " FOREIGN KEY (" + WORKSPACE_COLUMN + ", " + fk.columns() + ")"
+                + " REFERENCES " + table + " (" + WORKSPACE_COLUMN + ", " + fk.referencedColumns() + ")";
+    }
+
+    private List<ForeignKey> referencingForeignKeys(String table) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager.createNativeQuery(
+                "SELECT c.conname, CAST(CAST(c.conrelid AS regclass) AS text), "
+                        + columnList("c.conkey", "c.conrelid") + ", "
+                        + columnList("c.confkey", "c.confrelid") + ", "
+                        + "EXISTS (SELECT 1 FROM pg_attribute a WHERE a.attrelid = c.conrelid"
+                        + " AND a.attname = '" + WORKSPACE_COLUMN + "' AND NOT a.attisdropped) "
+                        + "FROM pg_constraint c WHERE c.contype = 'f' AND c.confrelid = CAST(:name AS regclass)")
+                .setParameter("name", table)
+                .getResultList();
+        List<ForeignKey> keys = rows.stream()
+                .map(row -> new ForeignKey((String) row[0], (String) row[1], (String) row[2], (String) row[3],
+                        (Boolean) row[4]))
+                .toList();
+        // Refuse before anything is dropped
+        keys.forEach(fk -> partitionedForeignKey(table, fk));
+        return keys;
+    }
+
+    // The names of the columns a constraint's attribute numbers refer to, in order
+    private static String columnList(String keys, String relation) {
+        return "(SELECT string_agg(a.attname, ', ' ORDER BY k.n) FROM unnest(" + keys
+                + ") WITH ORDINALITY k(attnum, n) JOIN pg_attribute a ON a.attrelid = " + relation
+                + " AND a.attnum = k.attnum)";
+    }
+
+    private List<String> foreignKeyDefinitions(String table) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager.createNativeQuery(
+                "SELECT conname, pg_get_constraintdef(oid) FROM pg_constraint "
+                        + "WHERE contype = 'f' AND conrelid = CAST(:name AS regclass)")
+                .setParameter("name", table)
+                .getResultList();
+        return rows.stream().map(row -> "CONSTRAINT " + row[0] + " " + row[1]).toList();
+    }
+
+    private void createPartition(String table, long workspaceId) {
+        execute("CREATE TABLE IF NOT EXISTS " + partitionName(table, workspaceId) + " PARTITION OF " + table
+                + " FOR VALUES IN (" + workspaceId + ")");
+    }
+
+    private boolean isPartitioned(String table) {
+        Number count = (Number) entityManager.createNativeQuery(
+                "SELECT count(*) FROM pg_partitioned_table pt JOIN pg_class c ON c.oid = pt.partrelid "
+                        + "WHERE c.relname = :name")
+                .setParameter("name", table.toLowerCase(Locale.ROOT))
+                .getSingleResult();
+        return count.longValue() > 0;
+    }
+
+    private boolean exists(String table) {
+        return (Boolean) entityManager.createNativeQuery("SELECT to_regclass(:name) IS NOT NULL")
+                .setParameter("name", table)
+                .getSingleResult();
+    }
+
+    private static String partitionName(String table, long workspaceId) {
+        return table + "_ws_" + workspaceId;
+    }
+
+    private int execute(String sql) {
+        return entityManager.createNativeQuery(sql).executeUpdate();
+    }
+}
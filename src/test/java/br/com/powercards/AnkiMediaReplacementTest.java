@@ -107,6 +107,28 @@ public class AnkiMediaReplacementTest {
                                 ankiService.replaceMediaWithUrls(noteId, contentComplex));
         }
 
+        @Test
+        @Transactional
+        public void testImagesPointToVariants() {
+                Long noteId = 998L;
+                String minioBaseUrl = "http://localhost:9000/anki-media/";
+
+                AnkiMedia big = new AnkiMedia(noteId, "big.png", minioBaseUrl + "big.png");
+                big.displayUrl = minioBaseUrl + "derived/abc-1600.jpg";
+                big.thumbnailUrl = minioBaseUrl + "derived/abc-256.jpg";
+                big.persist();
+                new AnkiMedia(noteId, "small.png", minioBaseUrl + "small.png").persist();
+
+                assertEquals("<img src=\"" + big.displayUrl + "\">",
+                                ankiService.replaceMediaWithUrls(noteId, "<img src=\"big.png\">"));
+                assertEquals("<img src=\"" + big.thumbnailUrl + "\">",
+                                ankiService.replaceMediaWithUrls(noteId, "<img src=\"big.png\">", true));
+
+                // No variant yet: the original is served
+                assertEquals("<img src=\"" + minioBaseUrl + "small.png\">",
+                                ankiService.replaceMediaWithUrls(noteId, "<img src=\"small.png\">", true));
+        }
+
         @Test
         @Transactional
         public void testDatabaseStaysIntactAfterReplacement() {
@@ -101,5 +101,34 @@ public class WorkspaceIsolationTest {
                                 .then()
                                 .statusCode(200)
                                 .body("data.size()", is(0));
+
+                // Test Card Isolation (cards carry the workspace of their deck)
+                Integer deckAId = given()
+                                .header("X-Workspace-Id", idA)
+                                .when().get("/v1/decks")
+                                .then()
+                                .extract().path("data[0].id");
+
+                given()
+                                .header("X-Workspace-Id", idA)
+                                .contentType(ContentType.JSON)
+                                .body("{\"deckId\": " + deckAId + ", \"ordinal\": 0}")
+                                .when().post("/v1/cards")
+                                .then()
+                                .statusCode(201);
+
+                given()
+                                .header("X-Workspace-Id", idA)
+                                .when().get("/v1/cards")
+                                .then()
+                                .statusCode(200)
+                                .body("data.size()", is(1));
+
+                given()
+                                .header("X-Workspace-Id", idB)
+                                .when().get("/v1/cards")
+                                .then()
+                                .statusCode(200)
+                                .body("data.size()", is(0));
         }
 }
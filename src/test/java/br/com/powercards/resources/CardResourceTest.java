@@ -13,6 +13,7 @@ import org.junit.jupiter.api.Test;
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import io.quarkus.test.security.TestSecurity;
 import java.util.List;
 
@@ -320,4 +321,110 @@ public class CardResourceTest {
                                 .statusCode(200)
                                 .body("data.size()", is(0));
         }
+
+        @Test
+        public void testCardListSparseFields() {
+                given()
+                                .header("X-Workspace-Id", workspace.id)
+                                .queryParam("fields", "id,deckId,due")
+                                .queryParam("sort", "due")
+                                .when().get("/v1/cards")
+                                .then()
+                                .statusCode(200)
+                                .body("pagination.total", is(4))
+                                .body("data[0].due", is(50))
+                                .body("data[0].deckId", is(deckId.intValue()))
+                                .body("data[0].noteField", nullValue())
+                                .body("data[0].noteTags", nullValue());
+
+                given()
+                                .header("X-Workspace-Id", workspace.id)
+                                .queryParam("fields", "id,noteField,isDraft")
+                                .queryParam("search", "Searchable")
+                                .when().get("/v1/cards")
+                                .then()
+                                .statusCode(200)
+                                .body("data.size()", is(4))
+                                .body("data[0].noteField", is("Note Content Searchable"))
+                                .body("data[0].isDraft", is(false))
+                                .body("data[0].due", nullValue());
+
+                given()
+                                .header("X-Workspace-Id", workspace.id)
+                                .queryParam("fields", "id,unknown")
+                                .when().get("/v1/cards")
+                                .then()
+                                .statusCode(400);
+
+                // Only declared properties can be sorted by
+                given()
+                                .header("X-Workspace-Id", workspace.id)
+                                .queryParam("fields", "id,due")
+                                .queryParam("sort", "-id desc, c.note.flds")
+                                .when().get("/v1/cards")
+                                .then()
+                                .statusCode(400);
+        }
+
+        @Test
+        public void testRenderCards() {
+                List<Long> ids = io.quarkus.narayana.jta.QuarkusTransaction.requiringNew().call(() -> {
+                        br.com.powercards.model.AnkiModel basic = new br.com.powercards.model.AnkiModel();
+                        basic.name = "Basic";
+                        basic.css = ".card {}";
+                        basic.workspace = workspace;
+                        basic.fields.add(new br.com.powercards.model.AnkiField("Front", 0, basic));
+                        basic.fields.add(new br.com.powercards.model.AnkiField("Back", 1, basic));
+                        basic.templates.add(new br.com.powercards.model.AnkiTemplate("Card 1",
+                                        "{{Front}}{{#Back}}?{{/Back}}", "{{FrontSide}}<hr id=answer>{{Back}}", 0,
+                                        basic));
+                        basic.persist();
+
+                        br.com.powercards.model.AnkiModel cloze = new br.com.powercards.model.AnkiModel();
+                        cloze.name = "Cloze";
+                        cloze.workspace = workspace;
+                        cloze.fields.add(new br.com.powercards.model.AnkiField("Text", 0, cloze));
+                        cloze.templates.add(new br.com.powercards.model.AnkiTemplate("Cloze", "{{cloze:Text}}",
+                                        "{{cloze:Text}}", 0, cloze));
+                        cloze.persist();
+
+                        Deck deck = Deck.findById(deckId);
+                        Note basicNote = new Note();
+                        basicNote.flds = "Capital of France\u001fParis";
+                        basicNote.model = basic;
+                        basicNote.workspace = workspace;
+                        basicNote.persist();
+                        Card basicCard = new Card();
+                        basicCard.deck = deck;
+                        basicCard.note = basicNote;
+                        basicCard.ord = 0;
+                        basicCard.persist();
+
+                        Note clozeNote = new Note();
+                        clozeNote.flds = "{{c1::Paris}} is in {{c2::France::country}}";
+                        clozeNote.model = cloze;
+                        clozeNote.workspace = workspace;
+                        clozeNote.persist();
+                        Card clozeCard = new Card();
+                        clozeCard.deck = deck;
+                        clozeCard.note = clozeNote;
+                        clozeCard.ord = 1;
+                        clozeCard.persist();
+                        return List.of(basicCard.id, clozeCard.id);
+                });
+
+                given()
+                                .header("X-Workspace-Id", workspace.id)
+                                .contentType(ContentType.JSON)
+                                .body("{\"ids\": [" + ids.get(0) + ", " + ids.get(1) + "]}")
+                                .when().post("/v1/cards/render")
+                                .then()
+                                .statusCode(200)
+                                .body("size()", is(2))
+                                .body("[0].question", is("Capital of France?"))
+                                .body("[0].answer", is("Capital of France?<hr id=answer>Paris"))
+                                .body("[0].css", is(".card {}"))
+                                .body("[1].question", is("Paris is in <span class=\"cloze\">[country]</span>"))
+                                .body("[1].answer", is("Paris is in <span class=\"cloze\">France</span>"));
+        }
 }
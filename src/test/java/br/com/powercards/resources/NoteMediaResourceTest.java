@@ -0,0 +1,126 @@
+package br.com.powercards.resources;
+
+import br.com.powercards.domain.entities.AnkiMedia;
+import br.com.powercards.model.Note;
+import br.com.powercards.model.Workspace;
+import br.com.powercards.services.ObjectStorageGateway;
+import io.quarkus.test.InjectMock;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Media uploads with the bucket private, as it is by default: the URLs
+ * returned are presigned, never the raw object URLs.
+ */
+@QuarkusTest
+@TestSecurity(user = "test-user", roles = "user")
+public class NoteMediaResourceTest {
+
+        private static final String BUCKET = ObjectStorageGateway.MEDIA_BUCKET;
+        private static final String BASE = "http://minio:9000/" + BUCKET + "/";
+
+        @InjectMock
+        ObjectStorageGateway storage;
+
+        private Workspace workspace;
+        private Long noteId;
+
+        @BeforeEach
+        @Transactional
+        void setUp() {
+                AnkiMedia.deleteAll();
+                br.com.powercards.model.Card.deleteAll();
+                br.com.powercards.model.NoteDraft.deleteAll();
+                Note.deleteAll();
+
+                workspace = new Workspace();
+                workspace.name = "Media Workspace";
+                workspace.persist();
+                Note note = new Note();
+                note.flds = "<img src=\"cat.png\">";
+                note.workspace = workspace;
+                note.persist();
+                noteId = note.id;
+
+                when(storage.isPrivate(BUCKET)).thenReturn(true);
+                when(storage.url(eq(BUCKET), anyString()))
+                                .thenAnswer(call -> BASE + call.getArgument(1));
+                when(storage.objectName(eq(BUCKET), anyString()))
+                                .thenAnswer(call -> ((String) call.getArgument(1)).substring(BASE.length()));
+                when(storage.presignedGet(eq(BUCKET), anyString()))
+                                .thenAnswer(call -> BASE + call.getArgument(1) + "?X-Amz-Signature=signed");
+        }
+
+        @Test
+        public void testUploadReturnsPresignedUrl() {
+                when(storage.put(eq(BUCKET), eq("cat.png"), any(), anyLong(), any()))
+                                .thenReturn(new ObjectStorageGateway.StoredObject("image/png", "abc123", 4));
+
+                given()
+                                .header("X-Workspace-Id", workspace.id)
+                                .multiPart("file", "cat.png", new byte[] { 1, 2, 3, 4 }, "image/png")
+                                .when().post("/v1/notes/" + noteId + "/media")
+                                .then()
+                                .statusCode(200)
+                                .body("url", is(BASE + "cat.png?X-Amz-Signature=signed"))
+                                .body("filename", is("cat.png"));
+
+                // Note reads resolve to the same URL
+                given()
+                                .header("X-Workspace-Id", workspace.id)
+                                .when().get("/v1/notes/" + noteId)
+                                .then()
+                                .statusCode(200)
+                                .body("fields", containsString(BASE + "cat.png?X-Amz-Signature=signed"));
+        }
+
+        @Test
+        public void testConfirmedUploadReturnsPresignedUrl() {
+                String prefix = workspace.id + "/" + noteId + "/";
+                when(storage.presignedPost(eq(BUCKET), startsWith(prefix), any(), anyLong()))
+                                .thenAnswer(call -> new ObjectStorageGateway.PresignedPost(BASE,
+                                                Map.of("key", call.getArgument(1), "policy", "signed")));
+
+                String objectName = given()
+                                .header("X-Workspace-Id", workspace.id)
+                                .contentType("application/json")
+                                .body(Map.of("filename", "cat.png"))
+                                .when().post("/v1/notes/" + noteId + "/media/presign")
+                                .then()
+                                .statusCode(200)
+                                .body("objectName", startsWith(prefix))
+                                .body("objectName", endsWith("-cat.png"))
+                                .body("uploadUrl", is(BASE))
+                                .body("fields.policy", is("signed"))
+                                .extract().path("objectName");
+                // Stored with the default type: the form lets the client declare none
+                when(storage.stat(BUCKET, objectName))
+                                .thenReturn(new ObjectStorageGateway.ObjectInfo(8, "application/octet-stream", "etag"));
+                when(storage.header(BUCKET, objectName))
+                                .thenReturn(new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' });
+
+                given()
+                                .header("X-Workspace-Id", workspace.id)
+                                .contentType("application/json")
+                                .body(Map.of("objectName", objectName))
+                                .when().post("/v1/notes/" + noteId + "/media/confirm")
+                                .then()
+                                .statusCode(200)
+                                .body("url", is(BASE + objectName + "?X-Amz-Signature=signed"))
+                                .body("filename", is("cat.png"));
+
+                // Served with the type sniffed from the content from then on
+                verify(storage).replaceContentType(BUCKET, objectName, "etag", "image/png");
+        }
+}
@@ -54,6 +54,38 @@ public class NoteResourceTest {
                 }
         }
 
+        @Test
+        public void testListSparseFields() {
+                given()
+                                .header("X-Workspace-Id", workspace.id)
+                                .queryParam("fields", "id,tags")
+                                .queryParam("sort", "-id")
+                                .queryParam("perPage", 10)
+                                .when().get("/v1/notes")
+                                .then()
+                                .statusCode(200)
+                                .body("data.size()", is(10))
+                                .body("pagination.total", is(15))
+                                .body("pagination.nextPageUri", containsString("fields="))
+                                .body("data[0].tags", is("tag14"))
+                                .body("data[0].fields", nullValue())
+                                .body("data[0].modelId", nullValue());
+        }
+
+        @Test
+        public void testListRejectsUnknownSort() {
+                // Never part of the query: only declared properties can be sorted by
+                for (String fields : java.util.Arrays.asList("id,tags", null)) {
+                        given()
+                                        .header("X-Workspace-Id", workspace.id)
+                                        .queryParam("fields", fields)
+                                        .queryParam("sort", "id, (select max(w.id) from Workspace w)")
+                                        .when().get("/v1/notes")
+                                        .then()
+                                        .statusCode(400);
+                }
+        }
+
         @Test
         public void testListPagination() {
                 given()
@@ -194,6 +226,176 @@ public class NoteResourceTest {
                                 .body("fields", is("Updated Fields"));
         }
 
+        @Test
+        public void testCreateGeneratesCards() {
+                Long[] ids = io.quarkus.narayana.jta.QuarkusTransaction.requiringNew().call(() -> {
+                        br.com.powercards.model.AnkiModel model = new br.com.powercards.model.AnkiModel();
+                        model.name = "Basic (optional reversed card)";
+                        model.workspace = workspace;
+                        model.fields.add(new br.com.powercards.model.AnkiField("Front", 0, model));
+                        model.fields.add(new br.com.powercards.model.AnkiField("Back", 1, model));
+                        model.templates.add(new br.com.powercards.model.AnkiTemplate("Card 1", "{{Front}}",
+                                        "{{Back}}", 0, model));
+                        model.templates.add(new br.com.powercards.model.AnkiTemplate("Card 2",
+                                        "{{#Back}}{{Back}}{{/Back}}", "{{Front}}", 1, model));
+                        model.persist();
+
+                        br.com.powercards.model.Deck deck = new br.com.powercards.model.Deck();
+                        deck.name = "Target";
+                        deck.workspace = workspace;
+                        deck.persist();
+                        return new Long[] { model.id, deck.id };
+                });
+
+                io.restassured.response.Response response = given()
+                                .header("X-Workspace-Id", workspace.id)
+                                .contentType("application/json")
+                                .queryParam("deckId", ids[1])
+                                .body("[{\"fields\": \"Front\\u001fBack\", \"modelId\": " + ids[0] + "},"
+                                                + " {\"fields\": \"Only front\\u001f\", \"modelId\": " + ids[0] + "}]")
+                                .when().post("/v1/notes/bulk/create");
+                response.then()
+                                .statusCode(201)
+                                .body("size()", is(2));
+                Long both = response.jsonPath().getLong("[0].id");
+                Long frontOnly = response.jsonPath().getLong("[1].id");
+
+                assert Card.count("note.id = ?1 and deck.id = ?2", both, ids[1]) == 2;
+                assert Card.count("note.id = ?1 and ord = 0", frontOnly) == 1;
+                assert Card.count("note.id", frontOnly) == 1;
+
+                // Filling the back adds the reverse card; emptying it removes the unstudied one again
+                given()
+                                .header("X-Workspace-Id", workspace.id)
+                                .contentType("application/json")
+                                .body("{\"fields\": \"Only front\\u001fNow a back\", \"modelId\": " + ids[0] + "}")
+                                .when().put("/v1/notes/" + frontOnly)
+                                .then()
+                                .statusCode(200);
+                assert Card.count("note.id = ?1 and deck.id = ?2", frontOnly, ids[1]) == 2;
+
+                given()
+                                .header("X-Workspace-Id", workspace.id)
+                                .contentType("application/json")
+                                .body("{\"fields\": \"Only front\\u001f\", \"modelId\": " + ids[0] + "}")
+                                .when().put("/v1/notes/" + frontOnly)
+                                .then()
+                                .statusCode(200);
+                assert Card.count("note.id", frontOnly) == 1;
+        }
+
+        @Test
+        public void testCardsWithoutDeckGoToTheDefaultDeck() {
+                Long modelId = io.quarkus.narayana.jta.QuarkusTransaction.requiringNew().call(() -> {
+                        br.com.powercards.model.AnkiModel model = new br.com.powercards.model.AnkiModel();
+                        model.name = "Basic";
+                        model.workspace = workspace;
+                        model.fields.add(new br.com.powercards.model.AnkiField("Front", 0, model));
+                        model.fields.add(new br.com.powercards.model.AnkiField("Back", 1, model));
+                        model.templates.add(new br.com.powercards.model.AnkiTemplate("Card 1", "{{Front}}",
+                                        "{{Back}}", 0, model));
+                        model.persist();
+                        return model.id;
+                });
+
+                // No deckId: the workspace's default deck is created once and then reused
+                Long[] noteIds = new Long[2];
+                for (int i = 0; i < 2; i++) {
+                        noteIds[i] = given()
+                                        .header("X-Workspace-Id", workspace.id)
+                                        .contentType("application/json")
+                                        .body("{\"fields\": \"Front " + i + "\\u001fBack\", \"modelId\": " + modelId + "}")
+                                        .when().post("/v1/notes")
+                                        .then()
+                                        .statusCode(201)
+                                        .extract().jsonPath().getLong("id");
+                }
+
+                assert Card.count("note.id in ?1 and deck is null", List.of(noteIds)) == 0;
+                assert br.com.powercards.model.Deck.count("name = ?1 and workspace.id = ?2", "Default",
+                                workspace.id) == 1;
+                assert Card.count("note.id in ?1 and deck.name = ?2 and workspace.id = ?3", List.of(noteIds),
+                                "Default", workspace.id) == 2;
+        }
+
+        @Test
+        public void testCreateDerivesSortFieldAndChecksum() {
+                Long modelId = io.quarkus.narayana.jta.QuarkusTransaction.requiringNew().call(() -> {
+                        br.com.powercards.model.AnkiModel model = new br.com.powercards.model.AnkiModel();
+                        model.name = "Sorted by back";
+                        model.workspace = workspace;
+                        model.sortf = 1;
+                        model.fields.add(new br.com.powercards.model.AnkiField("Front", 0, model));
+                        model.fields.add(new br.com.powercards.model.AnkiField("Back", 1, model));
+                        model.persist();
+                        return model.id;
+                });
+
+                given()
+                                .header("X-Workspace-Id", workspace.id)
+                                .contentType("application/json")
+                                .body("{\"fields\": \"<b>42</b>\\u001f<i>Answer</i> &amp; more\", \"modelId\": "
+                                                + modelId + "}")
+                                .when().post("/v1/notes")
+                                .then()
+                                .statusCode(201)
+                                .body("sortField", is("Answer & more"))
+                                // Anki's checksum of "42": first 8 hex digits of its SHA-1
+                                .body("checksum", is(2463092403L));
+        }
+
+        @Test
+        public void testDuplicateDetection() {
+                Long modelId = io.quarkus.narayana.jta.QuarkusTransaction.requiringNew().call(() -> {
+                        br.com.powercards.model.AnkiModel model = new br.com.powercards.model.AnkiModel();
+                        model.name = "Basic";
+                        model.workspace = workspace;
+                        model.fields.add(new br.com.powercards.model.AnkiField("Front", 0, model));
+                        model.fields.add(new br.com.powercards.model.AnkiField("Back", 1, model));
+                        model.persist();
+                        return model.id;
+                });
+
+                Long first = given()
+                                .header("X-Workspace-Id", workspace.id)
+                                .contentType("application/json")
+                                .body("{\"fields\": \"Paris\\u001fCapital\", \"modelId\": " + modelId + "}")
+                                .when().post("/v1/notes")
+                                .then()
+                                .statusCode(201)
+                                .body("duplicateIds.size()", is(0))
+                                .extract().jsonPath().getLong("id");
+
+                // Same text once markup is stripped
+                Long second = given()
+                                .header("X-Workspace-Id", workspace.id)
+                                .contentType("application/json")
+                                .body("{\"fields\": \"<b>Paris</b>\\u001fCity\", \"modelId\": " + modelId + "}")
+                                .when().post("/v1/notes")
+                                .then()
+                                .statusCode(201)
+                                .body("duplicateIds", contains(first.intValue()))
+                                .extract().jsonPath().getLong("id");
+
+                given()
+                                .header("X-Workspace-Id", workspace.id)
+                                .contentType("application/json")
+                                .body("{\"fields\": \"Lyon\\u001fCity\", \"modelId\": " + modelId + "}")
+                                .when().post("/v1/notes")
+                                .then()
+                                .statusCode(201);
+
+                given()
+                                .header("X-Workspace-Id", workspace.id)
+                                .queryParam("modelId", modelId)
+                                .when().get("/v1/notes/duplicates")
+                                .then()
+                                .statusCode(200)
+                                .body("size()", is(1))
+                                .body("[0].firstField", is("Paris"))
+                                .body("[0].noteIds", contains(first.intValue(), second.intValue()));
+        }
+
         @Test
         public void testBulkTags() {
                 java.util.List<Note> notes = Note.listAll();
@@ -317,14 +519,38 @@ public class NoteResourceTest {
                                         return input;
                                 });
 
-                // 3. Call Batch Enhance
-                given()
+                // 3. Call Batch Enhance: runs as a job
+                String jobId = given()
                                 .header("X-Workspace-Id", workspace.id)
                                 .contentType("application/json")
                                 .body("{\"noteIds\": [" + id1 + ", " + id2 + "]}")
                                 .when().post("/v1/notes/bulk/enhance")
                                 .then()
-                                .statusCode(204);
+                                .statusCode(202)
+                                .body("total", is(2))
+                                .extract().jsonPath().getString("id");
+
+                String status = "RUNNING";
+                for (int attempt = 0; attempt < 100 && status.equals("RUNNING"); attempt++) {
+                        try {
+                                Thread.sleep(100);
+                        } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                        }
+                        status = given()
+                                        .header("X-Workspace-Id", workspace.id)
+                                        .when().get("/v1/notes/bulk/enhance/" + jobId)
+                                        .then()
+                                        .statusCode(200)
+                                        .extract().jsonPath().getString("status");
+                }
+                given()
+                                .header("X-Workspace-Id", workspace.id)
+                                .when().get("/v1/notes/bulk/enhance/" + jobId)
+                                .then()
+                                .body("status", is("COMPLETED"))
+                                .body("succeeded", is(2))
+                                .body("failed", is(0));
 
                 // 4. Verify Drafts
                 given()
@@ -460,4 +686,75 @@ public class NoteResourceTest {
                                 .statusCode(200)
                                 .body("data.size()", is(1));
         }
+
+        @Test
+        public void testConfirmMediaRejectsForeignObject() {
+                Long noteId = Note.<Note>find("workspace", workspace).firstResult().id;
+
+                // Objects not presigned for this workspace and note are refused before storage is queried
+                for (String objectName : List.of("cat.png",
+                                "999999/" + noteId + "/0b7c3a8e-1f2d-4e5a-9b6c-7d8e9f0a1b2c-cat.png",
+                                workspace.id + "/999999/0b7c3a8e-1f2d-4e5a-9b6c-7d8e9f0a1b2c-cat.png",
+                                workspace.id + "/" + noteId + "/cat.png")) {
+                        given()
+                                        .header("X-Workspace-Id", workspace.id)
+                                        .contentType("application/json")
+                                        .body(java.util.Map.of("objectName", objectName))
+                                        .when().post("/v1/notes/" + noteId + "/media/confirm")
+                                        .then()
+                                        .statusCode(400);
+                }
+        }
+
+        @Test
+        public void testBatchEnhanceReportsNotesOutsideTheWorkspace() {
+                Long ownId = Note.<Note>find("workspace", workspace).firstResult().id;
+                Long foreignId = io.quarkus.narayana.jta.QuarkusTransaction.requiringNew().call(() -> {
+                        br.com.powercards.model.Workspace other = new br.com.powercards.model.Workspace();
+                        other.name = "Other Workspace";
+                        other.persist();
+                        Note note = new Note();
+                        note.flds = "Foreign";
+                        note.workspace = other;
+                        note.persist();
+                        return note.id;
+                });
+                org.mockito.Mockito.when(aiEnhancementService.enhanceModel(org.mockito.ArgumentMatchers.anyList()))
+                                .thenAnswer(invocation -> invocation.getArgument(0));
+
+                String jobId = given()
+                                .header("X-Workspace-Id", workspace.id)
+                                .contentType("application/json")
+                                .body("{\"noteIds\": [" + ownId + ", " + foreignId + ", 999999, " + ownId + "]}")
+                                .when().post("/v1/notes/bulk/enhance")
+                                .then()
+                                .statusCode(202)
+                                .body("total", is(3))
+                                .extract().jsonPath().getString("id");
+
+                String status = "RUNNING";
+                for (int attempt = 0; attempt < 100 && status.equals("RUNNING"); attempt++) {
+                        try {
+                                Thread.sleep(100);
+                        } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                        }
+                        status = given()
+                                        .header("X-Workspace-Id", workspace.id)
+                                        .when().get("/v1/notes/bulk/enhance/" + jobId)
+                                        .then()
+                                        .statusCode(200)
+                                        .extract().jsonPath().getString("status");
+                }
+                // Not silently dropped: both are failures of the job
+                given()
+                                .header("X-Workspace-Id", workspace.id)
+                                .when().get("/v1/notes/bulk/enhance/" + jobId)
+                                .then()
+                                .body("status", is("COMPLETED_WITH_ERRORS"))
+                                .body("succeeded", is(1))
+                                .body("failed", is(2))
+                                .body("failures.noteId", containsInAnyOrder(foreignId.intValue(), 999999))
+                                .body("failures.error", everyItem(is("Note not found")));
+        }
 }
@@ -5,6 +5,11 @@ import io.quarkus.test.security.TestSecurity;
 import io.restassured.http.ContentType;
 import org.junit.jupiter.api.Test;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.*;
 import static org.hamcrest.Matchers.*;
@@ -178,10 +183,9 @@ public class ProfileResourceTest {
         }
 
         @Test
-        public void testBannerUpload() {
-                // Upload a dummy file
+        public void testBannerUpload() throws IOException {
                 given()
-                                .multiPart("file", "banner.txt", "some content".getBytes())
+                                .multiPart("file", "banner.png", png(800, 200))
                                 .when().post("/v1/profile/banner")
                                 .then()
                                 .statusCode(200)
@@ -190,10 +194,9 @@ public class ProfileResourceTest {
         }
 
         @Test
-        public void testAvatarUpload() {
-                // Upload a dummy file
+        public void testAvatarUpload() throws IOException {
                 given()
-                                .multiPart("file", "avatar.png", "image data".getBytes())
+                                .multiPart("file", "avatar.png", png(300, 300))
                                 .when().post("/v1/profile/avatar")
                                 .then()
                                 .statusCode(200)
@@ -201,6 +204,28 @@ public class ProfileResourceTest {
                                 .body("avatarUrl", containsString("user-avatars/avatar-"));
         }
 
+        @Test
+        public void testUploadOfNonImageIsRejected() {
+                // Never stored: it would be served from a public bucket as it is
+                given()
+                                .multiPart("file", "avatar.png", "<html>not an image</html>".getBytes())
+                                .when().post("/v1/profile/avatar")
+                                .then()
+                                .statusCode(400);
+
+                given()
+                                .multiPart("file", "banner.txt", "some content".getBytes())
+                                .when().post("/v1/profile/banner")
+                                .then()
+                                .statusCode(400);
+        }
+
+        private static byte[] png(int width, int height) throws IOException {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+                return out.toByteArray();
+        }
+
         // ======= AI Settings tests =======
 
         @Test
@@ -274,4 +299,22 @@ public class ProfileResourceTest {
                                 .statusCode(200)
                                 .body("hasAiApiKey", equalTo(false));
         }
+
+        @Test
+        public void testConfirmAvatarRejectsForeignObject() {
+                // Objects not issued to this user are refused before storage is queried
+                given()
+                                .contentType(ContentType.JSON)
+                                .body("{\"objectName\": \"avatar-999999-1-other.png\"}")
+                                .when().post("/v1/profile/avatar/confirm")
+                                .then()
+                                .statusCode(400);
+
+                given()
+                                .contentType(ContentType.JSON)
+                                .body("{}")
+                                .when().post("/v1/profile/banner/confirm")
+                                .then()
+                                .statusCode(400);
+        }
 }
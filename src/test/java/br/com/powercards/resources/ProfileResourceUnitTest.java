@@ -147,4 +147,23 @@ public class ProfileResourceUnitTest {
                 // Assert
                 assertFalse(response.hasAiApiKey(), "Should return false because key save failed");
         }
+
+        @Test
+        public void testGetProfile_ExposesImageVariants() {
+                User mockUser = new User();
+                mockUser.keycloakId = "test-user";
+                mockUser.avatarUrl = "http://localhost:9000/user-avatars/avatar-1-0123abcd.jpg";
+                mockUser.avatarVariants = "64,128,256";
+                mockUser.bannerUrl = "http://localhost:9000/user-banners/banner-1-legacy.png";
+
+                when(profileService.getOrCreateUser(eq("test-user"))).thenReturn(mockUser);
+
+                ProfileResponse response = profileResource.getProfile();
+
+                assertEquals("http://localhost:9000/user-avatars/avatar-1-0123abcd@64.jpg",
+                                response.avatarVariants().get(64));
+                assertEquals(mockUser.avatarUrl, response.avatarVariants().get(256));
+                // Uploads stored before variants existed have none
+                assertTrue(response.bannerVariants().isEmpty());
+        }
 }
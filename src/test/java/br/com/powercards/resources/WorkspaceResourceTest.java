@@ -3,9 +3,14 @@ package br.com.powercards.resources;
 import io.quarkus.test.junit.QuarkusTest;
 import io.quarkus.test.security.TestSecurity;
 import io.restassured.http.ContentType;
+import jakarta.inject.Inject;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.*;
 
@@ -13,6 +18,9 @@ import static org.hamcrest.Matchers.*;
 @TestSecurity(user = "test-user-workspace", roles = "user")
 public class WorkspaceResourceTest {
 
+    @Inject
+    DataSource dataSource;
+
     @BeforeEach
     public void setUp() {
         // Clean up any existing workspaces for this test user
@@ -94,6 +102,75 @@ public class WorkspaceResourceTest {
                 .body("id", not(hasItem(workspaceId)));
     }
 
+    @Test
+    public void testDeletedWorkspaceIsRejectedAndReportsProgress() {
+        String workspaceId = given()
+                .contentType(ContentType.JSON)
+                .body("{\"name\": \"Purge Me\"}")
+                .when().post("/v1/workspaces")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        given()
+                .when().delete("/v1/workspaces/" + workspaceId)
+                .then()
+                .statusCode(204);
+
+        // Rejected as soon as the deletion is requested
+        given()
+                .header("X-Workspace-Id", workspaceId)
+                .when().get("/v1/decks")
+                .then()
+                .statusCode(410);
+
+        given()
+                .when().get("/v1/workspaces/" + workspaceId + "/deletion")
+                .then()
+                .statusCode(200)
+                .body("id", equalTo(workspaceId))
+                .body("status", anyOf(equalTo("IN_PROGRESS"), equalTo("COMPLETED")))
+                .body("requestedAt", notNullValue());
+
+        // A second delete no longer finds it
+        given()
+                .when().delete("/v1/workspaces/" + workspaceId)
+                .then()
+                .statusCode(404);
+    }
+
+    @Test
+    public void testDeletionThroughAnotherInstanceIsRejected() throws Exception {
+        String workspaceId = given()
+                .contentType(ContentType.JSON)
+                .body("{\"name\": \"Deleted Elsewhere\"}")
+                .when().post("/v1/workspaces")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        // Loaded here first, with the second-level cache enabled
+        given()
+                .header("X-Workspace-Id", workspaceId)
+                .when().get("/v1/decks")
+                .then()
+                .statusCode(200);
+
+        // Deleted by another instance: written over JDBC, which this instance's cache never sees
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement update = connection.prepareStatement(
+                        "update workspaces set deletedAt = current_timestamp where id = ?")) {
+            update.setLong(1, Long.parseLong(workspaceId));
+            update.executeUpdate();
+        }
+
+        given()
+                .header("X-Workspace-Id", workspaceId)
+                .when().get("/v1/decks")
+                .then()
+                .statusCode(410);
+    }
+
     @Test
     public void testDeleteNonExistentWorkspace() {
         given()
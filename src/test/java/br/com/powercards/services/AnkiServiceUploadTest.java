@@ -0,0 +1,108 @@
+package br.com.powercards.services;
+
+import br.com.powercards.domain.entities.AnkiMedia;
+import br.com.powercards.model.Note;
+import br.com.powercards.model.Workspace;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.InjectMock;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Uploads go to storage outside any transaction; when the metadata row cannot
+ * be committed, the object is removed again unless another row references it.
+ */
+@QuarkusTest
+public class AnkiServiceUploadTest {
+
+    private static final String BUCKET = ObjectStorageGateway.MEDIA_BUCKET;
+    private static final String BASE = "http://minio:9000/" + BUCKET + "/";
+    private static final byte[] DATA = { 1, 2, 3, 4 };
+
+    @Inject
+    AnkiService ankiService;
+
+    @InjectMock
+    ObjectStorageGateway storage;
+
+    private Long noteId;
+    private Long workspaceId;
+
+    @BeforeEach
+    public void setup() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            AnkiMedia.deleteAll();
+            Workspace workspace = new Workspace();
+            workspace.name = "Upload Workspace";
+            workspace.persist();
+            Note note = new Note();
+            note.flds = "<img src=\"cat.png\">";
+            note.workspace = workspace;
+            note.persist();
+            noteId = note.id;
+            workspaceId = workspace.id;
+        });
+        when(storage.url(eq(BUCKET), anyString())).thenAnswer(call -> BASE + call.getArgument(1));
+        when(storage.objectName(eq(BUCKET), anyString()))
+                .thenAnswer(call -> ((String) call.getArgument(1)).substring(BASE.length()));
+    }
+
+    @Test
+    public void testFailedPutLeavesNoRow() {
+        when(storage.put(eq(BUCKET), eq("cat.png"), any(), anyLong(), any()))
+                .thenThrow(new RuntimeException("Storage put on anki-media failed"));
+
+        assertThrows(RuntimeException.class, () -> upload("cat.png"));
+
+        assertEquals(0, mediaCount());
+        verify(storage, never()).remove(any(), any());
+    }
+
+    @Test
+    public void testObjectIsRemovedWhenItsRowCannotBeCommitted() {
+        // Longer than the column: the object is stored, its row is refused
+        String filename = "x".repeat(300) + ".png";
+        when(storage.put(eq(BUCKET), eq(filename), any(), anyLong(), any()))
+                .thenReturn(new ObjectStorageGateway.StoredObject("image/png", "abc123", DATA.length));
+
+        assertThrows(RuntimeException.class, () -> upload(filename));
+
+        assertEquals(0, mediaCount());
+        verify(storage).remove(BUCKET, filename);
+    }
+
+    @Test
+    public void testObjectReferencedByAnotherRowIsKept() {
+        // The same file registered concurrently while this upload was in flight
+        when(storage.put(eq(BUCKET), eq("cat.png"), any(), anyLong(), any())).thenAnswer(call -> {
+            QuarkusTransaction.requiringNew().run(() -> {
+                AnkiMedia concurrent = new AnkiMedia(noteId, "cat.png", BASE + "cat.png");
+                concurrent.workspaceId = workspaceId;
+                concurrent.persist();
+            });
+            return new ObjectStorageGateway.StoredObject("image/png", "abc123", DATA.length);
+        });
+
+        assertThrows(RuntimeException.class, () -> upload("cat.png"));
+
+        assertEquals(1, mediaCount());
+        verify(storage, never()).remove(any(), any());
+    }
+
+    private AnkiMedia upload(String filename) {
+        return ankiService.uploadSingleFile(noteId, filename, () -> new ByteArrayInputStream(DATA), DATA.length,
+                "image/png");
+    }
+
+    private long mediaCount() {
+        return QuarkusTransaction.requiringNew().call(() -> AnkiMedia.count("id.noteId", noteId));
+    }
+}
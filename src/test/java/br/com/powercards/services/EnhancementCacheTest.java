@@ -0,0 +1,55 @@
+package br.com.powercards.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EnhancementCacheTest {
+
+    private static EnhancementCache cache() {
+        EnhancementCache cache = new EnhancementCache();
+        cache.registry = new SimpleMeterRegistry();
+        cache.enabled = true;
+        cache.maxEntries = 100;
+        cache.ttl = Duration.ofHours(1);
+        cache.init();
+        return cache;
+    }
+
+    @Test
+    public void testNormalizedFieldsShareAnEntry() {
+        EnhancementCache cache = cache();
+        cache.put("openai", "gpt-4o-mini", List.of("Hadoop  ecosistem", "Map Reduce"),
+                List.of("<div><b>Hadoop ecosystem</b></div>", "<div><b>MapReduce</b></div>"));
+
+        // Whitespace and Unicode composition do not change the key
+        assertEquals(List.of("<div><b>Hadoop ecosystem</b></div>", "<div><b>MapReduce</b></div>"),
+                cache.get("openai", "gpt-4o-mini", List.of(" Hadoop ecosistem\n", "Map\tReduce")));
+        assertEquals(EnhancementCache.key("x", "y", List.of("caf\u00e9")),
+                EnhancementCache.key("x", "y", List.of("cafe\u0301")));
+    }
+
+    @Test
+    public void testKeyIncludesProviderModelAndFieldBoundaries() {
+        EnhancementCache cache = cache();
+        cache.put("openai", "gpt-4o-mini", List.of("a", "b"), List.of("A", "B"));
+
+        assertNull(cache.get("gemini", "gpt-4o-mini", List.of("a", "b")));
+        assertNull(cache.get("openai", "gpt-4o", List.of("a", "b")));
+        assertNull(cache.get("openai", "gpt-4o-mini", List.of("a b")));
+        assertNull(cache.get("openai", "gpt-4o-mini", List.of("ab", "")));
+    }
+
+    @Test
+    public void testDisabledCacheMisses() {
+        EnhancementCache cache = cache();
+        cache.enabled = false;
+        cache.put("openai", "gpt-4o-mini", List.of("a"), List.of("A"));
+
+        assertNull(cache.get("openai", "gpt-4o-mini", List.of("a")));
+    }
+}
@@ -0,0 +1,69 @@
+package br.com.powercards.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EnhancementPackingTest {
+
+    @Test
+    public void testPackRespectsSizeAndTokenBudget() {
+        List<EnhancementPacking.Item> items = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            items.add(new EnhancementPacking.Item(Integer.toString(i), List.of("Front " + i, "Back " + i)));
+        }
+
+        List<List<EnhancementPacking.Item>> packs = EnhancementPacking.pack(items, 2000, 25);
+
+        assertEquals(40, packs.size());
+        assertEquals(1000, packs.stream().mapToInt(List::size).sum());
+
+        // A note bigger than the budget still gets a pack of its own
+        EnhancementPacking.Item big = new EnhancementPacking.Item("big", List.of("x".repeat(20000)));
+        List<List<EnhancementPacking.Item>> split = EnhancementPacking.pack(List.of(items.get(0), big, items.get(1)),
+                2000, 25);
+        assertEquals(3, split.size());
+    }
+
+    @Test
+    public void testEnhanceFallsBackOnlyForMismatches() {
+        List<EnhancementPacking.Item> pack = List.of(
+                new EnhancementPacking.Item("1", List.of("a", "b")),
+                new EnhancementPacking.Item("2", List.of("c")),
+                new EnhancementPacking.Item("3", List.of("d")));
+        AtomicInteger singleCalls = new AtomicInteger();
+
+        EnhancementPacking.Outcome outcome = EnhancementPacking.enhance(pack,
+                // Note 2 comes back with a field too many, note 3 is missing
+                packed -> "```json\n[{\"id\": \"1\", \"fields\": [\"A\", \"B\"]}, {\"id\": \"2\", \"fields\": [\"C\", \"X\"]}]\n```",
+                fields -> {
+                    singleCalls.incrementAndGet();
+                    return fields.stream().map(String::toUpperCase).toList();
+                });
+
+        assertEquals(List.of("A", "B"), outcome.enhanced().get("1"));
+        assertEquals(List.of("C"), outcome.enhanced().get("2"));
+        assertEquals(List.of("D"), outcome.enhanced().get("3"));
+        assertTrue(outcome.failures().isEmpty());
+        assertEquals(2, outcome.fallbacks());
+        assertEquals(2, singleCalls.get());
+    }
+
+    @Test
+    public void testEnhanceReportsNotesThatStillMismatch() {
+        List<EnhancementPacking.Item> pack = List.of(
+                new EnhancementPacking.Item("1", List.of("a")),
+                new EnhancementPacking.Item("2", List.of("b")));
+
+        EnhancementPacking.Outcome outcome = EnhancementPacking.enhance(pack,
+                packed -> "not json",
+                fields -> fields.get(0).equals("a") ? List.of("A") : List.of("B", "extra"));
+
+        assertEquals(List.of("A"), outcome.enhanced().get("1"));
+        assertEquals("Expected 1 fields, got 2", outcome.failures().get("2"));
+    }
+}
@@ -0,0 +1,89 @@
+package br.com.powercards.services;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageScalerTest {
+
+    @Test
+    public void testDecodeReadsImagesAndIgnoresOtherContent() throws Exception {
+        BufferedImage image = ImageScaler.decode(png(new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB)), 10_000);
+
+        assertEquals(40, image.getWidth());
+        assertEquals(30, image.getHeight());
+        assertNull(ImageScaler.decode("<html></html>".getBytes(), 10_000));
+    }
+
+    @Test
+    public void testDecodeRefusesImagesOverMaxPixels() throws Exception {
+        byte[] data = png(new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB));
+
+        IOException e = assertThrows(IOException.class, () -> ImageScaler.decode(data, 19_999));
+        assertTrue(e.getMessage().contains("200x100"), e.getMessage());
+        assertNotNull(ImageScaler.decode(data, 20_000));
+    }
+
+    @Test
+    public void testFitBoundsTheLongestSideAndNeverUpscales() {
+        BufferedImage image = new BufferedImage(1000, 250, BufferedImage.TYPE_INT_RGB);
+
+        BufferedImage fitted = ImageScaler.fit(image, 400);
+
+        assertEquals(400, fitted.getWidth());
+        assertEquals(100, fitted.getHeight());
+        assertSame(image, ImageScaler.fit(image, 1000));
+    }
+
+    @Test
+    public void testCoverCropsTheCenter() {
+        // Red, green and blue thirds: a centered square only keeps the green one
+        BufferedImage image = new BufferedImage(300, 100, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < 300; x++) {
+            for (int y = 0; y < 100; y++) {
+                image.setRGB(x, y, x < 100 ? 0xFF0000 : x < 200 ? 0x00FF00 : 0x0000FF);
+            }
+        }
+
+        BufferedImage covered = ImageScaler.cover(image, 60, 60);
+
+        assertEquals(60, covered.getWidth());
+        assertEquals(60, covered.getHeight());
+        assertEquals(0x00FF00, covered.getRGB(2, 30) & 0xFFFFFF);
+        assertEquals(0x00FF00, covered.getRGB(57, 30) & 0xFFFFFF);
+    }
+
+    @Test
+    public void testTransparentImagesAreEncodedAsPng() throws Exception {
+        ImageScaler.Encoded encoded = ImageScaler.encode(new BufferedImage(20, 10, BufferedImage.TYPE_INT_ARGB),
+                0.8f);
+
+        assertEquals("image/png", encoded.contentType());
+        assertEquals("png", encoded.extension());
+        assertTrue(ImageIO.read(new ByteArrayInputStream(encoded.data())).getColorModel().hasAlpha());
+    }
+
+    @Test
+    public void testOpaqueImagesAreEncodedLossy() throws Exception {
+        ImageScaler.Encoded encoded = ImageScaler.encode(new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB), 0.8f);
+
+        // WebP when a writer is registered, JPEG otherwise
+        assertTrue(encoded.contentType().equals("image/jpeg") || encoded.contentType().equals("image/webp"),
+                encoded.contentType());
+        assertEquals(encoded.contentType().equals("image/jpeg") ? "jpg" : "webp", encoded.extension());
+        assertEquals(20, encoded.width());
+        assertEquals(10, encoded.height());
+    }
+
+    private static byte[] png(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
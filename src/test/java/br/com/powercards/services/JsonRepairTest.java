@@ -0,0 +1,38 @@
+package br.com.powercards.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonRepairTest {
+
+    @Test
+    public void testWrappedAndSloppyAnswers() {
+        assertEquals("[\"a\",\"b\"]",
+                JsonRepair.parse("Sure! Here it is:\n```json\n[\"a\", \"b\",]\n```\nHope it helps.").toString());
+        // Raw line breaks inside strings
+        assertEquals("line one\nline two", JsonRepair.parse("[\"line one\nline two\"]").get(0).asText());
+        // Structured output modes wrap the array in an object
+        assertEquals(2, JsonRepair.array(JsonRepair.parse("{\"result\": [\"a\", \"b\"]}")).size());
+    }
+
+    @Test
+    public void testTruncatedAnswersAreSalvaged() {
+        assertEquals("[\"a\",\"b\"]", JsonRepair.parse("[\"a\", \"b").toString());
+        assertEquals("[{\"id\":\"1\",\"fields\":[\"A\"]},{\"id\":\"2\",\"fields\":[\"B\"]}]",
+                JsonRepair.parse("[{\"id\": \"1\", \"fields\": [\"A\"]}, {\"id\": \"2\", \"fields\": [\"B\"").toString());
+
+        // A key cut before its value: read up to the last complete element
+        JsonNode notes = JsonRepair.parse("[{\"id\": \"1\", \"fields\": [\"A\"]}, {\"id\": \"2\", \"fie");
+        assertEquals("1", notes.get(0).get("id").asText());
+        assertEquals(2, notes.size());
+        assertFalse(notes.get(1).has("fields"));
+    }
+
+    @Test
+    public void testAnswersWithoutJsonFail() {
+        assertThrows(IllegalArgumentException.class, () -> JsonRepair.parse("I cannot help with that."));
+        assertThrows(IllegalArgumentException.class, () -> JsonRepair.array(JsonRepair.parse("{\"a\": 1}")));
+    }
+}
@@ -0,0 +1,151 @@
+package br.com.powercards.services;
+
+import br.com.powercards.domain.entities.AnkiMedia;
+import br.com.powercards.domain.entities.AnkiMediaId;
+import br.com.powercards.model.Note;
+import br.com.powercards.model.Workspace;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.InjectMock;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Variant generation, called directly: the worker pool is disabled in tests.
+ */
+@QuarkusTest
+public class MediaDerivativeServiceTest {
+
+    private static final String BUCKET = ObjectStorageGateway.MEDIA_BUCKET;
+    private static final String BASE = "http://minio:9000/" + BUCKET + "/";
+
+    @Inject
+    MediaDerivativeService derivatives;
+
+    @InjectMock
+    ObjectStorageGateway storage;
+
+    private Long noteId;
+
+    @BeforeEach
+    public void setup() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            AnkiMedia.deleteAll();
+            Workspace workspace = new Workspace();
+            workspace.name = "Derivatives Workspace";
+            workspace.persist();
+            Note note = new Note();
+            note.flds = "<img src=\"cat.png\">";
+            note.workspace = workspace;
+            note.persist();
+            noteId = note.id;
+        });
+        when(storage.url(eq(BUCKET), anyString())).thenAnswer(call -> BASE + call.getArgument(1));
+        when(storage.objectName(eq(BUCKET), any())).thenAnswer(call -> {
+            String url = call.getArgument(1);
+            return url != null && url.startsWith(BASE) ? url.substring(BASE.length()) : null;
+        });
+    }
+
+    @Test
+    public void testVariantsOnlyGoToRowsOfTheSameContent() throws Exception {
+        // Noise does not compress: re-encoding it at display size makes it smaller
+        byte[] data = png(noise(1700, 100));
+        String hash = sha256(data);
+        when(storage.get(BUCKET, "cat.png")).thenReturn(data);
+        addMedia("cat.png", hash);
+        // Same URL, but registered for content the object was replaced with since
+        addMedia("replaced.png", "other");
+
+        derivatives.derive(BASE + "cat.png");
+
+        verify(storage).put(eq(BUCKET), startsWith("derived/" + hash + "-1600."), any(), anyLong(), anyString(),
+                eq("public, max-age=31536000, immutable"));
+        verify(storage).put(eq(BUCKET), startsWith("derived/" + hash + "-256."), any(), anyLong(), anyString(),
+                anyString());
+        AnkiMedia updated = media("cat.png");
+        assertTrue(updated.displayUrl.startsWith(BASE + "derived/" + hash + "-1600."), updated.displayUrl);
+        assertTrue(updated.thumbnailUrl.startsWith(BASE + "derived/" + hash + "-256."), updated.thumbnailUrl);
+        AnkiMedia replaced = media("replaced.png");
+        assertNull(replaced.displayUrl);
+        assertNull(replaced.thumbnailUrl);
+    }
+
+    @Test
+    public void testDisplayVariantIsSkippedWhenNotSmaller() throws Exception {
+        // A blank PNG is far smaller than any lossy re-encoding of it
+        byte[] data = png(new BufferedImage(2000, 1000, BufferedImage.TYPE_INT_RGB));
+        String hash = sha256(data);
+        when(storage.get(BUCKET, "cat.png")).thenReturn(data);
+        addMedia("cat.png", hash);
+
+        derivatives.derive(BASE + "cat.png");
+
+        verify(storage, never()).put(eq(BUCKET), startsWith("derived/" + hash + "-1600."), any(), anyLong(),
+                anyString(), anyString());
+        AnkiMedia updated = media("cat.png");
+        assertNull(updated.displayUrl);
+        assertTrue(updated.thumbnailUrl.startsWith(BASE + "derived/" + hash + "-256."), updated.thumbnailUrl);
+    }
+
+    @Test
+    public void testExistingVariantsAreNotStoredAgain() throws Exception {
+        byte[] data = png(noise(1700, 100));
+        when(storage.get(BUCKET, "cat.png")).thenReturn(data);
+        when(storage.stat(eq(BUCKET), startsWith("derived/")))
+                .thenReturn(new ObjectStorageGateway.ObjectInfo(1, "image/jpeg", "etag"));
+        addMedia("cat.png", sha256(data));
+
+        derivatives.derive(BASE + "cat.png");
+
+        verify(storage, never()).put(any(), any(), any(), anyLong(), any(), any());
+        assertNotNull(media("cat.png").displayUrl);
+    }
+
+    private void addMedia(String name, String checksum) {
+        QuarkusTransaction.requiringNew().run(() -> {
+            AnkiMedia media = new AnkiMedia(noteId, name, BASE + "cat.png");
+            media.contentType = "image/png";
+            media.checksum = checksum;
+            media.persist();
+        });
+    }
+
+    private AnkiMedia media(String name) {
+        return QuarkusTransaction.requiringNew().call(() -> AnkiMedia.findById(new AnkiMediaId(noteId, name)));
+    }
+
+    private static BufferedImage noise(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+
+    private static byte[] png(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static String sha256(byte[] data) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+    }
+}
@@ -0,0 +1,93 @@
+package br.com.powercards.services;
+
+import br.com.powercards.domain.entities.AnkiMedia;
+import br.com.powercards.model.Note;
+import br.com.powercards.model.User;
+import br.com.powercards.model.Workspace;
+import io.minio.messages.Item;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.InjectMock;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@QuarkusTest
+public class MediaGarbageCollectorTest {
+
+    private static final String MEDIA = ObjectStorageGateway.MEDIA_BUCKET;
+    private static final String AVATARS = ObjectStorageGateway.AVATAR_BUCKET;
+
+    @Inject
+    MediaGarbageCollector collector;
+
+    @InjectMock
+    ObjectStorageGateway storage;
+
+    @BeforeEach
+    public void setup() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            AnkiMedia.deleteAll();
+            User.delete("keycloakId", "gc-user");
+
+            Workspace workspace = new Workspace();
+            workspace.name = "GC Workspace";
+            workspace.persist();
+            Note note = new Note();
+            note.flds = "<img src=\"kept.png\">";
+            note.workspace = workspace;
+            note.persist();
+
+            // Written under base URLs that are not the current public URL
+            new AnkiMedia(note.id, "kept.png", "http://old-minio:9000/anki-media/kept.png").persist();
+            new AnkiMedia(note.id, "legacy.png", "http://localhost:9000/anki-media/legacy.png").persist();
+            User user = new User("gc-user");
+            user.avatarUrl = "http://old-minio:9000/user-avatars/avatar-1-abc.png";
+            user.persist();
+        });
+        // A row written by an earlier version, without its object name
+        QuarkusTransaction.requiringNew()
+                .run(() -> AnkiMedia.update("objectKey = null where id.originalName = ?1", "legacy.png"));
+    }
+
+    @Test
+    public void testObjectsAreMatchedByNameWhateverTheStoredBaseUrl() {
+        when(storage.list(eq(MEDIA), any(), anyInt())).thenReturn(List.of(
+                item("kept.png", 2), item("legacy.png", 2), item("orphan.png", 2), item("fresh.png", 0)));
+        when(storage.list(eq(AVATARS), any(), anyInt())).thenReturn(List.of(
+                item("avatar-1-abc@64.png", 2), item("avatar-2-gone.png", 2)));
+        when(storage.removeAll(any(), any())).thenReturn(List.of());
+
+        collector.run();
+
+        // Only old objects no row names; the young one may belong to an upload in progress
+        verify(storage).removeAll(MEDIA, List.of("orphan.png"));
+        verify(storage).removeAll(AVATARS, List.of("avatar-2-gone.png"));
+        verify(storage, never()).removeAll(eq(ObjectStorageGateway.BANNER_BUCKET), any());
+        assertEquals(1, QuarkusTransaction.requiringNew()
+                .call(() -> AnkiMedia.count("objectKey", "legacy.png")));
+    }
+
+    @Test
+    public void testSizedVariantsReferenceTheirPrimary() {
+        assertEquals("avatar-1-abc.png", MediaGarbageCollector.referenceKey(AVATARS, "avatar-1-abc@128.png"));
+        assertEquals("photo@2x.png", MediaGarbageCollector.referenceKey(MEDIA, "photo@2x.png"));
+    }
+
+    private static Item item(String name, int daysOld) {
+        Item item = mock(Item.class);
+        when(item.objectName()).thenReturn(name);
+        when(item.isDir()).thenReturn(false);
+        when(item.lastModified()).thenReturn(ZonedDateTime.now().minusDays(daysOld).minusMinutes(1));
+        return item;
+    }
+}
@@ -0,0 +1,138 @@
+package br.com.powercards.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectArgs;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.ErrorResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ObjectStorageGatewayTest {
+
+    private static final String BUCKET = ObjectStorageGateway.MEDIA_BUCKET;
+
+    // PNG signature followed by some content
+    private static final byte[] PNG = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n', 0, 0, 0, 13, 1, 2, 3, 4 };
+
+    private ObjectStorageGateway gateway;
+    private MinioClient minioClient;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        minioClient = mock(MinioClient.class);
+        when(minioClient.bucketExists(any())).thenReturn(true);
+        gateway = new ObjectStorageGateway();
+        gateway.minioClient = minioClient;
+        gateway.registry = new SimpleMeterRegistry();
+        gateway.publicUrl = "http://minio:9000";
+        gateway.partSize = 10485760;
+        gateway.maxAttempts = 3;
+        gateway.retryBackoff = Duration.ofMillis(1);
+        gateway.region = "us-east-1";
+        gateway.accessKey = "access";
+        gateway.secretKey = "secret";
+        gateway.mediaUrlTtl = Duration.ofHours(1);
+        gateway.urlCacheSize = 100;
+    }
+
+    @Test
+    public void testPresignedUrlsAreSignedForThePublicUrl() throws Exception {
+        gateway.publicUrl = "https://media.example.com";
+        gateway.init();
+
+        String get = gateway.presignedGet(BUCKET, "cat.png");
+        ObjectStorageGateway.PresignedPost post = gateway.presignedPost(BUCKET, "dog.png", Duration.ofMinutes(15),
+                1024);
+
+        assertTrue(get.startsWith("https://media.example.com/" + BUCKET + "/cat.png?"), get);
+        assertTrue(get.contains("X-Amz-Signature="), get);
+        assertEquals("https://media.example.com/" + BUCKET, post.url());
+        assertEquals("dog.png", post.fields().get("key"));
+        assertTrue(post.fields().containsKey("policy"));
+        verify(minioClient, never()).getPresignedObjectUrl(any(GetPresignedObjectUrlArgs.class));
+    }
+
+    @Test
+    public void testPresignedPostPolicyBoundsTheUpload() throws Exception {
+        gateway.init();
+
+        ObjectStorageGateway.PresignedPost post = gateway.presignedPost(BUCKET, "dog.png", Duration.ofMinutes(15),
+                1024);
+
+        String policy = new String(java.util.Base64.getDecoder().decode(post.fields().get("policy")));
+        assertTrue(policy.contains("[\"content-length-range\",1,1024]"), policy);
+        assertTrue(policy.contains("[\"eq\",\"$key\",\"dog.png\"]"), policy);
+    }
+
+    @Test
+    public void testTransientFailuresAreRetried() throws Exception {
+        doThrow(new IOException("Connection reset"))
+                .doThrow(new IOException("Connection reset"))
+                .doNothing()
+                .when(minioClient).removeObject(any(RemoveObjectArgs.class));
+
+        gateway.remove(BUCKET, "cat.png");
+
+        verify(minioClient, times(3)).removeObject(any(RemoveObjectArgs.class));
+    }
+
+    @Test
+    public void testRetriesStopAfterMaxAttempts() throws Exception {
+        doThrow(new IOException("Connection refused")).when(minioClient).removeObject(any(RemoveObjectArgs.class));
+
+        assertThrows(RuntimeException.class, () -> gateway.remove(BUCKET, "cat.png"));
+
+        verify(minioClient, times(3)).removeObject(any(RemoveObjectArgs.class));
+    }
+
+    @Test
+    public void testPermanentFailuresAreNotRetried() throws Exception {
+        doThrow(new ErrorResponseException(
+                new ErrorResponse("AccessDenied", "Access Denied", BUCKET, "cat.png", null, null, null), null, null))
+                .when(minioClient).removeObject(any(RemoveObjectArgs.class));
+
+        assertThrows(RuntimeException.class, () -> gateway.remove(BUCKET, "cat.png"));
+
+        verify(minioClient, times(1)).removeObject(any(RemoveObjectArgs.class));
+    }
+
+    @Test
+    public void testPutStreamsAndDigestsEachAttemptFromAFreshStream() throws Exception {
+        AtomicInteger opened = new AtomicInteger();
+        AtomicInteger attempts = new AtomicInteger();
+        when(minioClient.putObject(any(PutObjectArgs.class))).thenAnswer(call -> {
+            PutObjectArgs args = call.getArgument(0);
+            // The first attempt fails halfway through the content
+            if (attempts.incrementAndGet() == 1) {
+                args.stream().readNBytes(4);
+                throw new IOException("Connection reset");
+            }
+            args.stream().readAllBytes();
+            return null;
+        });
+
+        ObjectStorageGateway.StoredObject stored = gateway.put(BUCKET, "cat.png", () -> {
+            opened.incrementAndGet();
+            return new ByteArrayInputStream(PNG);
+        }, PNG.length, "application/octet-stream");
+
+        assertEquals(2, opened.get());
+        assertEquals("image/png", stored.contentType());
+        assertEquals(PNG.length, stored.size());
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(PNG)), stored.sha256());
+    }
+}
@@ -0,0 +1,115 @@
+package br.com.powercards.services;
+
+import jakarta.ws.rs.BadRequestException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ProfileServiceImageTest {
+
+    private static final String BUCKET = ObjectStorageGateway.AVATAR_BUCKET;
+    private static final String BASE = "http://minio:9000/" + BUCKET + "/";
+
+    private ProfileService service;
+    private ObjectStorageGateway storage;
+
+    // Content of the objects written, by name
+    private final Map<String, byte[]> objects = new LinkedHashMap<>();
+
+    @BeforeEach
+    public void setup() {
+        storage = mock(ObjectStorageGateway.class);
+        when(storage.put(eq(BUCKET), anyString(), any(), anyLong(), anyString(), anyString())).thenAnswer(call -> {
+            ObjectStorageGateway.Content content = call.getArgument(2);
+            try (InputStream in = content.open()) {
+                objects.put(call.getArgument(1), in.readAllBytes());
+            }
+            return new ObjectStorageGateway.StoredObject(call.getArgument(4), "sha", call.getArgument(3));
+        });
+        when(storage.url(eq(BUCKET), anyString())).thenAnswer(call -> BASE + call.getArgument(1));
+        service = new ProfileService();
+        service.storage = storage;
+        service.maxPixels = 50_000_000;
+        service.quality = 0.85f;
+    }
+
+    @Test
+    public void testSquareVariantsAreCroppedAndNeverUpscaled() throws Exception {
+        byte[] data = png(400, 200, BufferedImage.TYPE_INT_RGB);
+
+        ProfileService.StoredImage image = service.storeImage(BUCKET, "avatar-7", data, List.of(64, 128, 256), true);
+
+        // 256 is larger than the shortest side, so the largest variant kept is 128
+        assertEquals("64,128", image.variants());
+        assertEquals(2, objects.size());
+        String primary = image.url().substring(BASE.length());
+        int dot = primary.lastIndexOf('.');
+        String small = primary.substring(0, dot) + "@64" + primary.substring(dot);
+        assertEquals(List.of(primary, small), image.objects());
+        assertSize(128, 128, objects.get(primary));
+        assertSize(64, 64, objects.get(small));
+    }
+
+    @Test
+    public void testBoundedVariantsKeepTheAspectRatio() throws Exception {
+        byte[] data = png(1000, 250, BufferedImage.TYPE_INT_RGB);
+
+        ProfileService.StoredImage image = service.storeImage(BUCKET, "banner-7", data, List.of(640, 1280, 1920),
+                false);
+
+        assertEquals("640", image.variants());
+        assertSize(640, 160, objects.get(image.url().substring(BASE.length())));
+    }
+
+    @Test
+    public void testObjectsAreNamedAfterTheContentHash() throws Exception {
+        byte[] data = png(300, 300, BufferedImage.TYPE_INT_ARGB);
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data), 0, 8);
+
+        ProfileService.StoredImage first = service.storeImage(BUCKET, "avatar-7", data, List.of(64), true);
+        ProfileService.StoredImage second = service.storeImage(BUCKET, "avatar-7", data, List.of(64), true);
+
+        // Transparent images are kept as PNG
+        assertEquals(BASE + "avatar-7-" + hash + ".png", first.url());
+        assertEquals(first.url(), second.url());
+        verify(storage, times(2)).put(eq(BUCKET), eq("avatar-7-" + hash + ".png"), any(), anyLong(),
+                eq("image/png"), eq("public, max-age=31536000, immutable"));
+    }
+
+    @Test
+    public void testContentThatIsNotAnImageIsRejected() {
+        byte[] html = "<html><script>alert(1)</script></html>".getBytes();
+
+        assertThrows(BadRequestException.class,
+                () -> service.storeImage(BUCKET, "avatar-7", html, List.of(64, 128), true));
+
+        verify(storage, never()).put(any(), any(), any(), anyLong(), any(), any());
+    }
+
+    private static byte[] png(int width, int height, int type) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, type), "png", out);
+        return out.toByteArray();
+    }
+
+    private static void assertSize(int width, int height, byte[] encoded) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(encoded));
+        assertEquals(width, image.getWidth());
+        assertEquals(height, image.getHeight());
+    }
+}
@@ -0,0 +1,45 @@
+package br.com.powercards.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PromptCompactionTest {
+
+    @Test
+    public void testMediaAndMarkupAreReplacedAndRestored() {
+        String image = "<img src=\"data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNk\">";
+        String span = "<span style=\"font-family: Arial; color: rgb(0, 0, 0); font-size: 14px;\">";
+        List<String> fields = List.of("Hadoop ecosistem " + image, span + "Map Reduce</span> [sound:hdfs.mp3]");
+
+        PromptCompaction.Compacted compacted = PromptCompaction.compact(fields);
+
+        assertEquals(List.of("Hadoop ecosistem [[m0]]", "[[m1]]Map Reduce</span> [[m2]]"), compacted.fields());
+        assertEquals(List.of("<div><b>Hadoop ecosystem</b> " + image + "</div>",
+                "<div>" + span + "<b>MapReduce</b></span> [sound:hdfs.mp3]</div>"),
+                compacted.restore(List.of("<div><b>Hadoop ecosystem</b> [[m0]]</div>",
+                        "<div>[[m1]]<b>MapReduce</b></span> [[m2]]</div>")));
+    }
+
+    @Test
+    public void testDroppedPlaceholdersAreAppendedToTheirField() {
+        PromptCompaction.Compacted compacted = PromptCompaction.compact(
+                List.of("a <img src=\"a.png\">", "b [sound:b.mp3]"));
+
+        // The model dropped both placeholders and made one up
+        assertEquals(List.of("<div>a</div><img src=\"a.png\">", "<div>b</div>[sound:b.mp3]"),
+                compacted.restore(List.of("<div>a</div>", "<div>b[[m7]]</div>")));
+    }
+
+    @Test
+    public void testFieldsWithPlaceholderTextAreSentAsTheyAre() {
+        List<String> fields = List.of("[[m0]] <img src=\"a.png\">");
+
+        PromptCompaction.Compacted compacted = PromptCompaction.compact(fields);
+
+        assertEquals(fields, compacted.fields());
+        assertEquals(List.of("X"), compacted.restore(List.of("X")));
+    }
+}
@@ -0,0 +1,123 @@
+package br.com.powercards.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProviderGuardTest {
+
+    @Test
+    public void testBreakerOpensAndProbes() throws Exception {
+        ProviderGuard guard = new ProviderGuard("openai", 4, 4, Duration.ofSeconds(1), 2, Duration.ofMillis(200));
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            assertThrows(AIProviderUnavailableException.class, () -> guard.call(() -> {
+                calls.incrementAndGet();
+                throw new AIProviderUnavailableException("503");
+            }));
+        }
+        assertEquals(ProviderGuard.State.OPEN, guard.state());
+
+        // Open: fails without calling the provider
+        assertThrows(AIProviderUnavailableException.class, () -> guard.call(calls::incrementAndGet));
+        assertEquals(2, calls.get());
+
+        Thread.sleep(250);
+        assertEquals(ProviderGuard.State.HALF_OPEN, guard.state());
+        assertEquals(3, guard.call(calls::incrementAndGet));
+        assertEquals(ProviderGuard.State.CLOSED, guard.state());
+    }
+
+    @Test
+    public void testClientErrorsDoNotOpenTheBreaker() {
+        ProviderGuard guard = new ProviderGuard("openai", 4, 4, Duration.ofSeconds(1), 1, Duration.ofMinutes(1));
+
+        assertThrows(RuntimeException.class, () -> guard.call(() -> {
+            throw new RuntimeException("OpenAI API error: 401");
+        }));
+
+        assertEquals(ProviderGuard.State.CLOSED, guard.state());
+        assertEquals("ok", guard.call(() -> "ok"));
+    }
+
+    @Test
+    public void testRateLimitsDoNotOpenTheBreaker() {
+        ProviderGuard guard = new ProviderGuard("openai", 4, 4, Duration.ofSeconds(1), 2, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(AIRateLimitedException.class, () -> guard.call(() -> {
+                throw new AIRateLimitedException("OpenAI API rate limit exceeded", Duration.ofSeconds(20));
+            }));
+        }
+
+        // Another user's key still gets through
+        assertEquals(ProviderGuard.State.CLOSED, guard.state());
+        assertEquals("ok", guard.call(() -> "ok"));
+    }
+
+    @Test
+    public void testScoreRanksByLatencyAndErrors() throws Exception {
+        ProviderGuard fast = new ProviderGuard("openai", 4, 4, Duration.ofSeconds(1), 5, Duration.ofMinutes(1));
+        ProviderGuard slow = new ProviderGuard("gemini", 4, 4, Duration.ofSeconds(1), 5, Duration.ofMinutes(1));
+        ProviderGuard failing = new ProviderGuard("deepseek", 4, 4, Duration.ofSeconds(1), 5, Duration.ofMinutes(1));
+
+        // Never called: ranked last
+        assertEquals(Double.MAX_VALUE, fast.score());
+        assertTrue(fast.latencyMillis() < 0);
+
+        fast.call(() -> "ok");
+        slow.call(() -> sleep("ok"));
+        // As slow as the slow one, and failing
+        failing.call(() -> sleep("ok"));
+        assertThrows(AIProviderUnavailableException.class, () -> failing.call(() -> {
+            sleep(null);
+            throw new AIProviderUnavailableException("502");
+        }));
+
+        assertTrue(fast.score() < slow.score());
+        assertTrue(slow.score() < failing.score());
+        assertTrue(slow.latencyMillis() >= 50);
+    }
+
+    @Test
+    public void testBulkheadShedsCallsBeyondQueue() throws Exception {
+        ProviderGuard guard = new ProviderGuard("gemini", 1, 0, Duration.ofMillis(50), 5, Duration.ofMinutes(1));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread slow = Thread.ofVirtual().start(() -> guard.call(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+        started.await();
+
+        assertEquals(1, guard.inFlight());
+        AIProviderUnavailableException e = assertThrows(AIProviderUnavailableException.class,
+                () -> guard.call(() -> "late"));
+        assertTrue(e.getMessage().startsWith("Too many pending calls"));
+
+        release.countDown();
+        slow.join();
+        assertEquals(0, guard.inFlight());
+        // Shed calls are not provider failures
+        assertEquals(ProviderGuard.State.CLOSED, guard.state());
+    }
+
+    private static <T> T sleep(T result) {
+        try {
+            Thread.sleep(50);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return result;
+    }
+}
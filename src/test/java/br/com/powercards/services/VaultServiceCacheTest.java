@@ -0,0 +1,100 @@
+package br.com.powercards.services;
+
+import io.quarkus.vault.VaultKVSecretEngine;
+import io.quarkus.vault.client.VaultClientException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class VaultServiceCacheTest {
+
+    private VaultService vaultService;
+    private VaultKVSecretEngine kvSecretEngine;
+
+    @BeforeEach
+    public void setup() {
+        kvSecretEngine = mock(VaultKVSecretEngine.class);
+        vaultService = new VaultService();
+        vaultService.kvSecretEngine = kvSecretEngine;
+        vaultService.cacheEnabled = true;
+        vaultService.cacheTtl = Duration.ofMinutes(5);
+        vaultService.negativeCacheTtl = Duration.ofSeconds(30);
+        vaultService.cacheMaxEntries = 100;
+        vaultService.init();
+    }
+
+    @Test
+    public void testReadsAreCached() {
+        when(kvSecretEngine.readSecret("users/user123")).thenReturn(Map.of("ai_api_key", "sk-1"));
+
+        assertEquals("sk-1", vaultService.readSecret("user123", "ai_api_key"));
+        assertEquals("sk-1", vaultService.readSecret("user123", "ai_api_key"));
+        assertNull(vaultService.readSecret("user123", "other"));
+
+        verify(kvSecretEngine, times(1)).readSecret("users/user123");
+    }
+
+    @Test
+    public void testMissingSecretsAreCached() {
+        when(kvSecretEngine.readSecret("users/nobody")).thenThrow(notFound("users/nobody"));
+
+        assertNull(vaultService.readSecret("nobody", "ai_api_key"));
+        assertEquals(Map.of(), vaultService.lookupSecrets("nobody").orElseThrow());
+
+        verify(kvSecretEngine, times(1)).readSecret("users/nobody");
+    }
+
+    @Test
+    public void testFailedReadsAreNotCached() {
+        when(kvSecretEngine.readSecret("users/user123"))
+                .thenThrow(new RuntimeException("Connection refused"))
+                .thenReturn(Map.of("ai_api_key", "sk-1"));
+
+        // Unavailable, not empty, and asked again on the next read
+        assertTrue(vaultService.lookupSecrets("user123").isEmpty());
+        assertEquals("sk-1", vaultService.readSecret("user123", "ai_api_key"));
+
+        verify(kvSecretEngine, times(2)).readSecret("users/user123");
+    }
+
+    @Test
+    public void testWritesDoNotDropSecretsThatCouldNotBeRead() {
+        when(kvSecretEngine.readSecret("users/user123")).thenThrow(new RuntimeException("Connection refused"));
+
+        assertThrows(RuntimeException.class, () -> vaultService.writeSecret("user123", "ai_api_key.gemini", "g-1"));
+
+        verify(kvSecretEngine, never()).writeSecret(any(), anyMap());
+    }
+
+    @Test
+    public void testWritesReplaceTheCachedSecrets() {
+        when(kvSecretEngine.readSecret("users/user123")).thenReturn(new HashMap<>(Map.of("ai_api_key", "sk-1")));
+        assertEquals("sk-1", vaultService.readSecret("user123", "ai_api_key"));
+
+        vaultService.writeSecret("user123", "ai_api_key", "sk-2");
+
+        verify(kvSecretEngine).writeSecret(eq("users/user123"), anyMap());
+        // Served from the cache, written through: one read to merge, none after it
+        assertEquals("sk-2", vaultService.readSecret("user123", "ai_api_key"));
+        verify(kvSecretEngine, times(2)).readSecret("users/user123");
+
+        // Removing the last secret removes the path
+        vaultService.writeSecret("user123", "ai_api_key", null);
+        verify(kvSecretEngine).deleteSecret("users/user123");
+        assertNull(vaultService.readSecret("user123", "ai_api_key"));
+    }
+
+    private static VaultClientException notFound(String path) {
+        return new VaultClientException("read secret", path, 404, List.of(), null);
+    }
+}
@@ -1,5 +1,7 @@
 package br.com.powercards.services;
 
+import br.com.powercards.model.User;
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.test.junit.QuarkusTest;
 import io.quarkus.test.InjectMock;
 import io.quarkus.vault.VaultKVSecretEngine;
@@ -11,6 +13,7 @@ import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -20,6 +23,9 @@ public class VaultServiceTest {
     @Inject
     VaultService vaultService;
 
+    @Inject
+    ProfileService profileService;
+
     @InjectMock
     VaultKVSecretEngine kvSecretEngine;
 
@@ -64,4 +70,46 @@ public class VaultServiceTest {
         String result = vaultService.readSecret(userId, "non_existent");
         assertNull(result);
     }
+
+    @Test
+    public void testKeyFlagIsOnlyRecordedFromAnAnswer() {
+        String userId = "vault-flag-user";
+        QuarkusTransaction.requiringNew().run(() -> {
+            User.delete("keycloakId", userId);
+            new User(userId).persist();
+        });
+        when(kvSecretEngine.readSecret("users/" + userId))
+                .thenThrow(new RuntimeException("Connection refused"))
+                .thenReturn(Map.of("ai_api_key", "sk-1"));
+
+        // Vault unavailable: no key for this answer, nothing recorded
+        assertFalse(profileService.hasAiApiKey(userId));
+        assertNull(QuarkusTransaction.requiringNew().call(() -> User.findByKeycloakId(userId).hasAiApiKey));
+
+        assertTrue(profileService.hasAiApiKey(userId));
+        assertEquals(Boolean.TRUE,
+                QuarkusTransaction.requiringNew().call(() -> User.findByKeycloakId(userId).hasAiApiKey));
+    }
+
+    @Test
+    public void testAlternateProvidersAreKeptOnTheUserRow() {
+        String userId = "vault-alternate-user";
+        QuarkusTransaction.requiringNew().run(() -> {
+            User.delete("keycloakId", userId);
+            new User(userId).persist();
+        });
+        when(kvSecretEngine.readSecret("users/" + userId))
+                .thenReturn(Map.of("ai_api_key", "sk-1", "ai_api_key.openai", "sk-2"));
+
+        // Unset: read from Vault once and recorded
+        assertEquals(java.util.List.of("openai"), profileService.getAiAlternateProviders(userId));
+        assertEquals("openai",
+                QuarkusTransaction.requiringNew().call(() -> User.findByKeycloakId(userId).aiAlternateProviders));
+
+        assertTrue(profileService.saveAiAlternateKeys(userId, Map.of("gemini", "g-1", "openai", "")));
+        clearInvocations(kvSecretEngine);
+
+        assertEquals(java.util.List.of("gemini"), profileService.getAiAlternateProviders(userId));
+        verify(kvSecretEngine, never()).readSecret(anyString());
+    }
 }
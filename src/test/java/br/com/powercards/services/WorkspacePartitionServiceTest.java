@@ -0,0 +1,60 @@
+package br.com.powercards.services;
+
+import br.com.powercards.domain.entities.AnkiMedia;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+public class WorkspacePartitionServiceTest {
+
+    @Inject
+    WorkspacePartitionService partitionService;
+
+    @Test
+    public void testTablesUseMappedNames() {
+        List<WorkspacePartitionService.PartitionedTable> tables = partitionService.tables();
+
+        assertEquals(List.of("notes", "cards", "AnkiMedia"),
+                tables.stream().map(WorkspacePartitionService.PartitionedTable::name).toList());
+        assertEquals("workspace_id, id", tables.get(0).primaryKey());
+        assertEquals("workspace_id, noteId, originalName", tables.get(2).primaryKey());
+    }
+
+    @Test
+    public void testRowsWithoutWorkspaceRefuseConversion() {
+        WorkspacePartitionService.PartitionedTable media = partitionService.tables().get(2);
+        QuarkusTransaction.requiringNew().run(() -> {
+            AnkiMedia.delete("workspaceId is null");
+            // Media of a deleted note: the backfill cannot give it a workspace
+            new AnkiMedia(-1L, "lost.png", "http://minio/anki-media/lost.png").persist();
+        });
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> QuarkusTransaction.requiringNew().run(() -> partitionService.checkWorkspaceAssigned(List.of(media))));
+        assertTrue(e.getMessage().contains("1 rows of AnkiMedia"), e.getMessage());
+
+        QuarkusTransaction.requiringNew().run(() -> AnkiMedia.delete("workspaceId is null"));
+        assertDoesNotThrow(
+                () -> QuarkusTransaction.requiringNew().run(() -> partitionService.checkWorkspaceAssigned(List.of(media))));
+    }
+
+    @Test
+    public void testForeignKeysAreRecreatedOnTheWorkspace() {
+        assertEquals("ALTER TABLE cards ADD CONSTRAINT fk_cards_note FOREIGN KEY (workspace_id, nid)"
+                + " REFERENCES notes (workspace_id, id)",
+                WorkspacePartitionService.partitionedForeignKey("notes",
+                        new WorkspacePartitionService.ForeignKey("fk_cards_note", "cards", "nid", "id", true)));
+
+        // Not droppable silently: a referencing table without a workspace refuses the conversion
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> WorkspacePartitionService.partitionedForeignKey("notes",
+                        new WorkspacePartitionService.ForeignKey("fk_reviews_note", "reviews", "note_id", "id", false)));
+        assertTrue(e.getMessage().contains("fk_reviews_note"));
+    }
+}